@@ -0,0 +1,104 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import lombok.val;
+import software.amazon.awssdk.services.accessanalyzer.model.AnalyzerSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.ArchiveRuleSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.Criterion;
+
+/**
+ * Synthetic, seeded inputs shaped like machine-generated analyzers: each rule has 1 to 20 filters
+ * with a handful of values each.
+ */
+final class BenchmarkData {
+
+  static final int MAX_FILTERS = 20;
+
+  private BenchmarkData() {
+  }
+
+  static List<ArchiveRule> rules(int count, long seed) {
+    val random = new Random(seed);
+    val rules = new ArrayList<ArchiveRule>(count);
+    for (int i = 0; i < count; i++) {
+      rules.add(rule("rule-" + i, 1 + random.nextInt(MAX_FILTERS), random));
+    }
+    return rules;
+  }
+
+  static ArchiveRule rule(String name, int filterCount, Random random) {
+    val filters = new ArrayList<Filter>(filterCount);
+    for (int i = 0; i < filterCount; i++) {
+      val builder = Filter.builder().property("condition.property" + i);
+      switch (random.nextInt(4)) {
+        case 0:
+          builder.eq(values(random));
+          break;
+        case 1:
+          builder.neq(values(random));
+          break;
+        case 2:
+          builder.contains(values(random));
+          break;
+        default:
+          builder.exists(random.nextBoolean());
+      }
+      filters.add(builder.build());
+    }
+    return ArchiveRule.builder().ruleName(name).filter(filters).build();
+  }
+
+  static List<ArchiveRuleSummary> summaries(List<ArchiveRule> rules) {
+    val summaries = new ArrayList<ArchiveRuleSummary>(rules.size());
+    for (val rule : rules) {
+      val filter = new HashMap<String, Criterion>();
+      for (val f : rule.getFilter()) {
+        filter.put(f.getProperty(), Criterion.builder().eq(f.getEq()).neq(f.getNeq())
+            .contains(f.getContains()).exists(f.getExists()).build());
+      }
+      summaries.add(ArchiveRuleSummary.builder().ruleName(rule.getRuleName()).filter(filter)
+          .build());
+    }
+    return summaries;
+  }
+
+  static Set<Tag> tags(int count) {
+    val tags = new HashSet<Tag>(count * 2);
+    for (int i = 0; i < count; i++) {
+      tags.add(Tag.builder().key("tag-key-" + i).value("tag-value-" + i).build());
+    }
+    return tags;
+  }
+
+  static Map<String, String> tagMap(int count) {
+    val tags = new HashMap<String, String>(count * 2);
+    for (int i = 0; i < count; i++) {
+      tags.put("tag-key-" + i, "tag-value-" + i);
+    }
+    return tags;
+  }
+
+  static AnalyzerSummary analyzer(int tagCount) {
+    return AnalyzerSummary.builder()
+        .name("MyAnalyzer")
+        .arn("arn:aws:access-analyzer:us-west-2:111111111111:analyzer/MyAnalyzer")
+        .type("ACCOUNT")
+        .tags(tagMap(tagCount))
+        .build();
+  }
+
+  private static List<String> values(Random random) {
+    val count = 1 + random.nextInt(5);
+    val values = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++) {
+      values.add("arn:aws:iam::" + (100000000000L + random.nextInt(1000000)) + ":root");
+    }
+    return values;
+  }
+}
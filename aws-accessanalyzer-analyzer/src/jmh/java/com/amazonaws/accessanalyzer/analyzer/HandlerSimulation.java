@@ -0,0 +1,277 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import lombok.val;
+import software.amazon.awssdk.services.accessanalyzer.model.Criterion;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.LoggerProxy;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+/**
+ * Drives every handler many times against a {@link SimulatedAccessAnalyzerClient} with realistic
+ * latencies, throttling and failures, and prints per handler the latency percentiles, the
+ * outcomes by {@code HandlerErrorCode} and the API calls by operation.  IN_PROGRESS events are
+ * followed through their callbacks as CloudFormation would, so a latency covers the whole
+ * request.
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec@run-simulation \
+ *     -Dsimulation.args="invocations=5000 throttleRate=0.1 retryMode=callback"
+ * </pre>
+ *
+ * <p>The arguments are {@code name=value} pairs; see {@link #DEFAULTS}.  The latency profiles
+ * per operation are assumptions, not measurements.  Waits are multiplied by {@code timeScale},
+ * so the printed wall-clock latencies are roughly the simulated ones times {@code timeScale},
+ * plus the handlers' own CPU time.
+ */
+public class HandlerSimulation {
+
+  private static final Map<String, String> DEFAULTS = ImmutableMap.<String, String>builder()
+      .put("invocations", "2000")
+      .put("concurrency", "8")
+      .put("seed", "42")
+      .put("timeScale", "0.001")
+      .put("firstUseMillis", "20000")
+      .put("throttleRate", "0.02")
+      .put("errorRate", "0.005")
+      .put("retries", "3")
+      .put("retryMode", "sdk")
+      .put("updateConcurrency", "1")
+      .put("rules", "20")
+      .build();
+
+  private static final int MAX_CALLBACKS = 50;
+
+  private final Map<String, String> options;
+  private final SimulatedAccessAnalyzerClient client;
+  private final Settings settings;
+  private final AmazonWebServicesClientProxy proxy = new PassThroughProxy();
+  private final LoggerProxy logger = new LoggerProxy();
+  private final double timeScale;
+  private final List<ArchiveRule> rulesBefore;
+  private final List<ArchiveRule> rulesAfter;
+
+  private HandlerSimulation(Map<String, String> options) {
+    this.options = options;
+    timeScale = Double.parseDouble(options.get("timeScale"));
+    val seed = Long.parseLong(options.get("seed"));
+    client = new SimulatedAccessAnalyzerClient(
+        new InMemoryAccessAnalyzer("us-west-2", "111111111111"), profile(options, seed));
+    settings = Settings.builder()
+        .retryMode(Settings.RetryMode.valueOf(options.get("retryMode").toUpperCase()))
+        .updateConcurrency(intOption("updateConcurrency"))
+        .build();
+    rulesBefore = BenchmarkData.rules(intOption("rules"), seed);
+    rulesAfter = BenchmarkData.rules(intOption("rules"), seed + 1);
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    val options = new LinkedHashMap<String, String>(DEFAULTS);
+    for (val arg : args) {
+      val equals = arg.indexOf('=');
+      if (equals < 0 || !DEFAULTS.containsKey(arg.substring(0, equals))) {
+        throw new IllegalArgumentException("Expected one of " + DEFAULTS.keySet() + "=value: "
+            + arg);
+      }
+      options.put(arg.substring(0, equals), arg.substring(equals + 1));
+    }
+    System.out.println("Simulating with " + options);
+    new HandlerSimulation(options).run();
+  }
+
+  private void run() throws InterruptedException {
+    val invocations = intOption("invocations");
+    for (int i = 0; i < invocations; i++) {
+      seed("sim-read-" + i);
+      seed("sim-update-" + i);
+      seed("sim-delete-" + i);
+    }
+    // Seeding made no calls, so the first-use latency lands on the first Create
+    simulate("CREATE", invocations, i -> CreateHandler.handleRequestWithClient(client, proxy,
+        request(before("sim-create-" + i), null), null, logger, settings));
+    simulate("READ", invocations, i -> ReadHandler.handleRequestWithClient(client, proxy,
+        request(ResourceModel.builder().arn(arn("sim-read-" + i)).build(), null), null, logger,
+        settings));
+    simulate("UPDATE", invocations, i -> UpdateHandler.handleRequestWithClient(client, proxy,
+        updateRequest("sim-update-" + i), null, logger, settings));
+    simulate("DELETE", invocations, i -> DeleteHandler.handleRequestWithClient(client, proxy,
+        request(ResourceModel.builder().arn(arn("sim-delete-" + i)).build(), null), null, logger,
+        settings));
+    simulate("LIST", invocations, i -> ListHandler.handleRequestWithClient(client, proxy,
+        request(ResourceModel.builder().build(), null), null, logger));
+  }
+
+  /**
+   * Runs {@code invocation} for 0 to {@code count - 1} on {@code concurrency} threads, following
+   * every IN_PROGRESS event through its callbacks.
+   */
+  private void simulate(String handler, int count,
+      IntFunction<ProgressEvent<ResourceModel, CallbackContext>> invocation)
+      throws InterruptedException {
+    val report = new LoadReport(handler);
+    client.resetStats();
+    ExecutorService executor = Executors.newFixedThreadPool(intOption("concurrency"));
+    report.start();
+    for (int i = 0; i < count; i++) {
+      final int index = i;
+      executor.execute(() -> {
+        long start = System.nanoTime();
+        String outcome;
+        int callbacks = 0;
+        try {
+          ProgressEvent<ResourceModel, CallbackContext> event = invocation.apply(index);
+          while (event.getStatus() == OperationStatus.IN_PROGRESS && callbacks < MAX_CALLBACKS) {
+            callbacks++;
+            sleepForCallback(event.getCallbackDelaySeconds());
+            event = callback(handler, index, event.getCallbackContext());
+          }
+          outcome = event.getStatus() == OperationStatus.FAILED
+              ? String.valueOf(event.getErrorCode()) : event.getStatus().name();
+        } catch (RuntimeException ex) {
+          outcome = "threw " + ex.getClass().getSimpleName();
+        }
+        report.record(System.nanoTime() - start, outcome, callbacks);
+      });
+    }
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.HOURS);
+    report.stop();
+    report.print(System.out);
+    System.out.printf("         simulated p50 %.0f ms  p99 %.0f ms (wall / timeScale)%n",
+        report.percentileMillis(0.5) / Math.max(timeScale, 1e-9),
+        report.percentileMillis(0.99) / Math.max(timeScale, 1e-9));
+    val calls = client.calls();
+    val perInvocation = new LinkedHashMap<String, String>();
+    for (val entry : calls.entrySet()) {
+      perInvocation.put(entry.getKey(), String.format("%d (%.2f/request)", entry.getValue(),
+          entry.getValue() / (double) count));
+    }
+    System.out.printf("         calls %s%n         attempts %s  faults %s%n%n", perInvocation,
+        client.attempts(), client.faults());
+  }
+
+  // The callback repeats the request with the context of the IN_PROGRESS event
+  private ProgressEvent<ResourceModel, CallbackContext> callback(String handler, int index,
+      CallbackContext context) {
+    switch (handler) {
+      case "CREATE":
+        return CreateHandler.handleRequestWithClient(client, proxy,
+            request(before("sim-create-" + index), null), context, logger, settings);
+      case "UPDATE":
+        return UpdateHandler.handleRequestWithClient(client, proxy,
+            updateRequest("sim-update-" + index), context, logger, settings);
+      case "DELETE":
+        return DeleteHandler.handleRequestWithClient(client, proxy,
+            request(ResourceModel.builder().arn(arn("sim-delete-" + index)).build(), null),
+            context, logger, settings);
+      default:
+        throw new IllegalStateException(handler + " returned IN_PROGRESS");
+    }
+  }
+
+  private void sleepForCallback(int callbackDelaySeconds) {
+    val millis = (long) (callbackDelaySeconds * 1000 * timeScale);
+    if (millis > 0) {
+      try {
+        Thread.sleep(millis);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(ex);
+      }
+    }
+  }
+
+  private void seed(String name) {
+    val rules = new HashMap<String, Map<String, Criterion>>();
+    for (val summary : BenchmarkData.summaries(rulesBefore)) {
+      rules.put(summary.ruleName(), summary.filter());
+    }
+    client.state().createAnalyzer(name, "ACCOUNT", BenchmarkData.tagMap(5), rules, null);
+  }
+
+  // The analyzer as seeded
+  private ResourceModel before(String name) {
+    return model(name, rulesBefore, BenchmarkData.tags(5));
+  }
+
+  // Every filter changed and two more tags
+  private ResourceModel after(String name) {
+    return model(name, rulesAfter, BenchmarkData.tags(7));
+  }
+
+  private ResourceHandlerRequest<ResourceModel> updateRequest(String name) {
+    val previous = before(name);
+    previous.setArn(arn(name));
+    return request(after(name), previous);
+  }
+
+  private static ResourceModel model(String name, List<ArchiveRule> rules, Set<Tag> tags) {
+    return ResourceModel.builder()
+        .analyzerName(name)
+        .type("ACCOUNT")
+        .tags(tags)
+        .archiveRules(rules)
+        .build();
+  }
+
+  private static ResourceHandlerRequest<ResourceModel> request(ResourceModel model,
+      ResourceModel previous) {
+    return ResourceHandlerRequest.<ResourceModel>builder()
+        .clientRequestToken("token-" + model.getAnalyzerName())
+        .logicalResourceIdentifier("SimulatedAnalyzer")
+        .desiredResourceState(model)
+        .previousResourceState(previous)
+        .build();
+  }
+
+  private static String arn(String name) {
+    return "arn:aws:access-analyzer:us-west-2:111111111111:analyzer/" + name;
+  }
+
+  private int intOption(String name) {
+    return Integer.parseInt(options.get(name));
+  }
+
+  private static SimulatedAccessAnalyzerClient.Profile profile(Map<String, String> options,
+      long seed) {
+    val throttleRate = Double.parseDouble(options.get("throttleRate"));
+    val errorRate = Double.parseDouble(options.get("errorRate"));
+    val read = operation(60, 400, throttleRate, errorRate);
+    val write = operation(150, 1200, throttleRate, errorRate);
+    return SimulatedAccessAnalyzerClient.Profile.builder()
+        .seed(seed)
+        .defaults(write)
+        .operations(ImmutableMap.<String, SimulatedAccessAnalyzerClient.OperationProfile>builder()
+            .put("GetAnalyzer", read)
+            .put("ListAnalyzers", read)
+            .put("ListArchiveRules", read)
+            .put("CreateAnalyzer", operation(400, 3000, throttleRate, errorRate))
+            .put("DeleteAnalyzer", operation(300, 2500, throttleRate, errorRate))
+            .build())
+        .firstUseMillis(Double.parseDouble(options.get("firstUseMillis")))
+        .timeScale(Double.parseDouble(options.get("timeScale")))
+        .retries(Integer.parseInt(options.get("retries")))
+        .build();
+  }
+
+  private static SimulatedAccessAnalyzerClient.OperationProfile operation(double medianMillis,
+      double p99Millis, double throttleRate, double errorRate) {
+    return SimulatedAccessAnalyzerClient.OperationProfile.builder()
+        .medianMillis(medianMillis)
+        .p99Millis(p99Millis)
+        .throttleRate(throttleRate)
+        .errorRate(errorRate)
+        .build();
+  }
+}
@@ -0,0 +1,80 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerResponse;
+
+/**
+ * Warm GetAnalyzer calls against {@link LocalAccessAnalyzerServer} with each
+ * {@link Settings.HttpClientType}.  Sampling gives the p50 and p99 of a call once the container
+ * is warm; {@link HttpClientColdStartBenchmark} covers the first call.  Add
+ * {@code -prof com.amazonaws.accessanalyzer.analyzer.RssProfiler} for the resident memory.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 2, jvmArgsAppend = {"-XX:MaxRAM=256m", "-XX:+UseSerialGC"})
+@State(Scope.Benchmark)
+public class HttpClientBenchmark {
+
+  static final String NAME = "BenchmarkAnalyzer";
+
+  @Param({"WRAPPER", "APACHE", "URL_CONNECTION"})
+  public Settings.HttpClientType httpClient;
+
+  private LocalAccessAnalyzerServer server;
+  private AccessAnalyzerClient client;
+  private GetAnalyzerRequest request;
+
+  @Setup
+  public void setup() throws IOException {
+    server = startServer();
+    client = client(server, httpClient);
+    request = GetAnalyzerRequest.builder().analyzerName(NAME).build();
+  }
+
+  @TearDown
+  public void teardown() {
+    client.close();
+    server.close();
+  }
+
+  @Benchmark
+  public GetAnalyzerResponse getAnalyzer() {
+    return client.getAnalyzer(request);
+  }
+
+  static LocalAccessAnalyzerServer startServer() throws IOException {
+    InMemoryAccessAnalyzer state = new InMemoryAccessAnalyzer("us-west-2", "111111111111");
+    state.createAnalyzer(NAME, "ACCOUNT", BenchmarkData.tagMap(10), null, null);
+    return LocalAccessAnalyzerServer.start(state);
+  }
+
+  static AccessAnalyzerClient client(LocalAccessAnalyzerServer server,
+      Settings.HttpClientType httpClient) {
+    return ClientBuilder
+        .builder(Settings.builder().endpoint(server.endpoint()).httpClient(httpClient).build())
+        .region(Region.US_WEST_2)
+        .credentialsProvider(StaticCredentialsProvider
+            .create(AwsBasicCredentials.create("BENCHMARK_KEY", "BENCHMARK_SECRET")))
+        .build();
+  }
+}
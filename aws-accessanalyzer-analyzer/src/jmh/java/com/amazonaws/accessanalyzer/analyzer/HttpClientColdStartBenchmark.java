@@ -0,0 +1,59 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerResponse;
+
+/**
+ * Time to first response of a fresh JVM with each {@link Settings.HttpClientType}: building the
+ * HTTP and AccessAnalyzer clients and making one GetAnalyzer call, class loading included, as the
+ * first invocation of a new container does.  Every fork measures a single call.  The local
+ * server starts before the measurement and loads some SDK model classes, but none of the HTTP,
+ * marshalling or signing ones.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 20, jvmArgsAppend = {"-XX:MaxRAM=256m", "-XX:+UseSerialGC"})
+@State(Scope.Benchmark)
+public class HttpClientColdStartBenchmark {
+
+  @Param({"WRAPPER", "APACHE", "URL_CONNECTION"})
+  public Settings.HttpClientType httpClient;
+
+  private LocalAccessAnalyzerServer server;
+  private AccessAnalyzerClient client;
+
+  @Setup
+  public void setup() throws IOException {
+    server = HttpClientBenchmark.startServer();
+  }
+
+  @TearDown
+  public void teardown() {
+    client.close();
+    server.close();
+  }
+
+  @Benchmark
+  public GetAnalyzerResponse firstCall() {
+    client = HttpClientBenchmark.client(server, httpClient);
+    return client.getAnalyzer(
+        GetAnalyzerRequest.builder().analyzerName(HttpClientBenchmark.NAME).build());
+  }
+}
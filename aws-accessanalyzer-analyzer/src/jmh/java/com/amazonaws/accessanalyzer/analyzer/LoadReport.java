@@ -0,0 +1,75 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.val;
+
+/**
+ * Latencies and outcomes of many runs of one kind of request, recorded from any number of
+ * threads and printed as percentiles, throughput and a count per outcome.
+ */
+final class LoadReport {
+
+  private final String name;
+  private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+  private final Map<String, AtomicLong> outcomes = new ConcurrentHashMap<>();
+  private final AtomicLong callbacks = new AtomicLong();
+  private volatile long startNanos = System.nanoTime();
+  private volatile long endNanos;
+
+  LoadReport(String name) {
+    this.name = name;
+  }
+
+  void start() {
+    startNanos = System.nanoTime();
+  }
+
+  void stop() {
+    endNanos = System.nanoTime();
+  }
+
+  void record(long latencyNanos, String outcome, int callbackCount) {
+    latencies.add(latencyNanos);
+    outcomes.computeIfAbsent(outcome, key -> new AtomicLong()).incrementAndGet();
+    callbacks.addAndGet(callbackCount);
+  }
+
+  int count() {
+    return latencies.size();
+  }
+
+  /**
+   * The nearest-rank {@code quantile} of the latencies, in milliseconds.
+   */
+  double percentileMillis(double quantile) {
+    val sorted = new ArrayList<Long>(latencies);
+    if (sorted.isEmpty()) {
+      return 0;
+    }
+    Collections.sort(sorted);
+    val rank = (int) Math.ceil(quantile * sorted.size());
+    return sorted.get(Math.max(0, Math.min(sorted.size(), rank) - 1)) / 1e6;
+  }
+
+  Map<String, Long> outcomes() {
+    Map<String, Long> snapshot = new TreeMap<>();
+    outcomes.forEach((outcome, count) -> snapshot.put(outcome, count.get()));
+    return snapshot;
+  }
+
+  void print(PrintStream out) {
+    val seconds = ((endNanos == 0 ? System.nanoTime() : endNanos) - startNanos) / 1e9;
+    out.printf("%-8s %6d requests in %.2f s (%.1f/s)  p50 %.2f ms  p90 %.2f ms  p99 %.2f ms"
+            + "  max %.2f ms%n",
+        name, count(), seconds, count() / Math.max(seconds, 1e-9), percentileMillis(0.5),
+        percentileMillis(0.9), percentileMillis(0.99), percentileMillis(1.0));
+    out.printf("         outcomes %s  callbacks %d%n", outcomes(), callbacks.get());
+  }
+}
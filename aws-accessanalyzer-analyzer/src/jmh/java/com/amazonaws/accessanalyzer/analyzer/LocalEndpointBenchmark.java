@@ -0,0 +1,120 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.Credentials;
+import software.amazon.cloudformation.proxy.LoggerProxy;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+/**
+ * Whole handler invocations through the SDK client against {@link LocalAccessAnalyzerServer}:
+ * marshalling, signing, HTTP and unmarshalling, without the service's own latency.  Run with more
+ * threads ({@code -t}) to see how the handlers behave at high request rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocalEndpointBenchmark {
+
+  private static final String NAME = "BenchmarkAnalyzer";
+
+  @Param({"1", "50"})
+  public int rules;
+
+  private final AtomicLong created = new AtomicLong();
+  private LocalAccessAnalyzerServer server;
+  private AccessAnalyzerClient client;
+  private AmazonWebServicesClientProxy proxy;
+  private LoggerProxy logger;
+  private String arn;
+
+  @Setup
+  public void setup() throws IOException {
+    server = LocalAccessAnalyzerServer
+        .start(new InMemoryAccessAnalyzer("us-west-2", "111111111111"));
+    client = ClientBuilder.builder(Settings.builder().endpoint(server.endpoint()).build())
+        .region(Region.US_WEST_2)
+        .build();
+    logger = new LoggerProxy();
+    proxy = new AmazonWebServicesClientProxy(logger,
+        new Credentials("BENCHMARK_KEY", "BENCHMARK_SECRET", "BENCHMARK_SESSION"),
+        () -> TimeUnit.MINUTES.toMillis(15));
+    val model = model(NAME);
+    check(CreateHandler.handleRequestWithClient(client, proxy, request(model), null, logger));
+    arn = model.getArn();
+  }
+
+  @TearDown
+  public void teardown() {
+    client.close();
+    server.close();
+  }
+
+  @Benchmark
+  public ProgressEvent<ResourceModel, CallbackContext> read() {
+    return check(ReadHandler.handleRequestWithClient(client, proxy,
+        request(ResourceModel.builder().arn(arn).build()), null, logger));
+  }
+
+  @Benchmark
+  public ProgressEvent<ResourceModel, CallbackContext> list() {
+    return check(ListHandler.handleRequestWithClient(client, proxy,
+        request(ResourceModel.builder().build()), null, logger));
+  }
+
+  @Benchmark
+  public ProgressEvent<ResourceModel, CallbackContext> createAndDelete() {
+    val model = model(NAME + "-" + created.incrementAndGet());
+    check(CreateHandler.handleRequestWithClient(client, proxy, request(model), null, logger));
+    return check(DeleteHandler.handleRequestWithClient(client, proxy,
+        request(ResourceModel.builder().arn(model.getArn()).build()), null, logger));
+  }
+
+  private ResourceModel model(String name) {
+    return ResourceModel.builder()
+        .analyzerName(name)
+        .type("ACCOUNT")
+        .tags(BenchmarkData.tags(10))
+        .archiveRules(BenchmarkData.rules(rules, 42))
+        .build();
+  }
+
+  private static ResourceHandlerRequest<ResourceModel> request(ResourceModel model) {
+    return ResourceHandlerRequest.<ResourceModel>builder()
+        .clientRequestToken("BENCHMARK")
+        .logicalResourceIdentifier("BenchmarkAnalyzer")
+        .desiredResourceState(model)
+        .build();
+  }
+
+  // A failing handler would be measured as a very fast one
+  private static ProgressEvent<ResourceModel, CallbackContext> check(
+      ProgressEvent<ResourceModel, CallbackContext> event) {
+    if (event.getStatus() != OperationStatus.SUCCESS) {
+      throw new IllegalStateException(event.getErrorCode() + ": " + event.getMessage());
+    }
+    return event;
+  }
+}
@@ -0,0 +1,77 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The tag and rule diff UpdateHandler runs.  A tenth of the rules are removed, a tenth changed
+ * and a tenth added, which is a large update.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelDiffBenchmark {
+
+  @Param({"1", "50", "5000"})
+  public int rules;
+
+  private List<ArchiveRule> oldRules;
+  private List<ArchiveRule> newRules;
+  private Set<Tag> oldTags;
+  private Set<Tag> newTags;
+
+  @Setup
+  public void setup() {
+    val random = new Random(42);
+    oldRules = BenchmarkData.rules(rules, 42);
+    newRules = new ArrayList<>(rules);
+    val tenth = Math.max(1, rules / 10);
+    for (int i = 0; i < rules; i++) {
+      val rule = oldRules.get(i);
+      if (i < tenth) {
+        continue; // Removed
+      } else if (i < 2 * tenth) {
+        newRules.add(BenchmarkData.rule(rule.getRuleName(), rule.getFilter().size(), random));
+      } else {
+        // Equal but not the same instance, as after deserializing a request
+        newRules.add(ArchiveRule.builder().ruleName(rule.getRuleName())
+            .filter(new ArrayList<>(rule.getFilter())).build());
+      }
+    }
+    for (int i = 0; i < tenth; i++) {
+      newRules.add(BenchmarkData.rule("added-" + i, 1 + random.nextInt(BenchmarkData.MAX_FILTERS),
+          random));
+    }
+    oldTags = BenchmarkData.tags(50);
+    newTags = BenchmarkData.tags(45);
+    newTags.add(Tag.builder().key("tag-key-0").value("changed").build());
+  }
+
+  @Benchmark
+  public ModelDiff.RuleChanges diffRules() {
+    return ModelDiff.diffRules(oldRules, newRules);
+  }
+
+  @Benchmark
+  public ModelDiff.TagChanges diffTags() {
+    return ModelDiff.diffTags(oldTags, newTags);
+  }
+}
@@ -0,0 +1,65 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * Reports the resident memory of the forked JVM after every iteration: {@code rss} now and
+ * {@code rss.peak} since it started, in MB, from {@code /proc/self/status}.  This is what counts
+ * against the memory size of a Lambda function, heap or not.  Reports nothing off Linux.  Use with
+ * {@code -prof com.amazonaws.accessanalyzer.analyzer.RssProfiler}.
+ */
+public class RssProfiler implements InternalProfiler {
+
+  private static final Path STATUS = Paths.get("/proc/self/status");
+
+  @Override
+  public String getDescription() {
+    return "Resident set size of the forked JVM, from /proc/self/status";
+  }
+
+  @Override
+  public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+  }
+
+  @Override
+  public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+      IterationParams iterationParams, IterationResult result) {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(STATUS, StandardCharsets.US_ASCII);
+    } catch (IOException ex) {
+      return Collections.emptyList();
+    }
+    List<Result> results = new ArrayList<>(2);
+    for (String line : lines) {
+      if (line.startsWith("VmRSS:")) {
+        results.add(new ScalarResult("·rss", megabytes(line), "MB", AggregationPolicy.MAX));
+      } else if (line.startsWith("VmHWM:")) {
+        results.add(
+            new ScalarResult("·rss.peak", megabytes(line), "MB", AggregationPolicy.MAX));
+      }
+    }
+    return results;
+  }
+
+  // "VmRSS:     123456 kB"
+  private static double megabytes(String line) {
+    String[] fields = line.trim().split("\\s+");
+    return Long.parseLong(fields[1]) / 1024.0;
+  }
+}
@@ -0,0 +1,341 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import lombok.val;
+import org.json.JSONObject;
+import software.amazon.awssdk.services.accessanalyzer.model.Criterion;
+
+/**
+ * Replays the {@code sam-tests} events through the generated {@code HandlerWrapper} inside one
+ * JVM, the way {@code sam local invoke TestEntrypoint} does one container at a time.  Each event
+ * is run {@code invocations} times on {@code concurrency} threads, and the throughput, latency
+ * percentiles and statuses are printed per event.  IN_PROGRESS responses are followed through
+ * their callbacks.
+ *
+ * <p>The handlers build their clients from the environment, so the events are served by a
+ * {@link LocalAccessAnalyzerServer} on the port of {@code ACCESS_ANALYZER_ENDPOINT}, which
+ * {@code run-replay} sets:
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec@run-replay \
+ *     -Dreplay.args="invocations=500 concurrency=16 events=read,update"
+ * </pre>
+ *
+ * <p>Invocation {@code i} of an event is a variant of it: the client request token and every
+ * analyzer name in an ARN get the suffix {@code -r<i>}.  The analyzers named in {@code existing}
+ * are created for every variant before the first event, with the {@code previousResourceState}
+ * of {@code update.json}, so the read, update and delete events find what the sam tests expect
+ * of the account.
+ */
+public class SamEventReplay {
+
+  private static final Map<String, String> DEFAULTS = ImmutableMap.<String, String>builder()
+      .put("invocations", "100")
+      .put("concurrency", "8")
+      .put("dir", "sam-tests")
+      .put("events", "create,read,list,update,delete,delete-not-found,"
+          + "read-non-existent-analyzer,update-non-existent-analyzer")
+      .put("existing", "MyAnalyzer-RAVyFACj5k8J")
+      .put("callbackDelayScale", "0")
+      .put("verbose", "false")
+      .build();
+
+  // The status each event should end with, as checked by run-sam-tests
+  private static final Map<String, String> EXPECTED = ImmutableMap.<String, String>builder()
+      .put("create", "SUCCESS")
+      .put("read", "SUCCESS")
+      .put("list", "SUCCESS")
+      .put("update", "SUCCESS")
+      .put("delete", "SUCCESS")
+      .put("delete-not-found", "SUCCESS")
+      .put("read-non-existent-analyzer", "FAILED")
+      .put("update-non-existent-analyzer", "FAILED")
+      .build();
+
+  // The account and region of the ARNs in the sam-tests events
+  private static final String REGION = "us-east-1";
+  private static final String ACCOUNT = "196433972733";
+
+  private static final Pattern ANALYZER_ARN_NAME =
+      Pattern.compile("(arn:aws:access-analyzer:[^:\"]*:[^:\"]*:analyzer/[^/\"]+)");
+  private static final int MAX_CALLBACKS = 50;
+
+  private final Map<String, String> options;
+  private final boolean verbose;
+  // A container runs one invocation at a time, so every thread gets its own wrapper
+  private final ThreadLocal<HandlerWrapper> wrappers =
+      ThreadLocal.withInitial(HandlerWrapper::new);
+
+  private SamEventReplay(Map<String, String> options) {
+    this.options = options;
+    verbose = Boolean.parseBoolean(options.get("verbose"));
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    val options = new LinkedHashMap<String, String>(DEFAULTS);
+    for (val arg : args) {
+      val equals = arg.indexOf('=');
+      if (equals < 0 || !DEFAULTS.containsKey(arg.substring(0, equals))) {
+        throw new IllegalArgumentException("Expected one of " + DEFAULTS.keySet() + "=value: "
+            + arg);
+      }
+      options.put(arg.substring(0, equals), arg.substring(equals + 1));
+    }
+    val endpoint = Settings.current().getEndpoint();
+    if (endpoint == null || endpoint.getPort() < 0) {
+      throw new IllegalStateException("Set " + Settings.ENDPOINT_ENV
+          + " to http://localhost:<port>, or run through exec:exec@run-replay");
+    }
+    System.out.println("Replaying with " + options + " against " + endpoint);
+    try (LocalAccessAnalyzerServer server = LocalAccessAnalyzerServer
+        .start(new InMemoryAccessAnalyzer(REGION, ACCOUNT), endpoint.getPort())) {
+      new SamEventReplay(options).run(server.state());
+    }
+  }
+
+  private void run(InMemoryAccessAnalyzer state) throws IOException, InterruptedException {
+    val dir = Paths.get(options.get("dir"));
+    val events = new LinkedHashMap<String, String>();
+    for (val name : options.get("events").split(",")) {
+      val json = new JSONObject(new String(Files.readAllBytes(dir.resolve(name.trim() + ".json")),
+          StandardCharsets.UTF_8));
+      // The sam tests fill these in with update-creds; the local server doesn't check them
+      if (json.optJSONObject("credentials") == null
+          || json.getJSONObject("credentials").length() == 0) {
+        json.put("credentials", new JSONObject()
+            .put("accessKeyId", "REPLAY_KEY")
+            .put("secretAccessKey", "REPLAY_SECRET")
+            .put("sessionToken", "REPLAY_SESSION"));
+      }
+      events.put(name.trim(), json.toString());
+    }
+    seed(state, dir);
+    val total = new LoadReport("total");
+    total.start();
+    for (val event : events.entrySet()) {
+      replay(event.getKey(), event.getValue(), total);
+    }
+    total.stop();
+    total.print(System.out);
+  }
+
+  private void seed(InMemoryAccessAnalyzer state, Path dir) throws IOException {
+    val update = new JSONObject(new String(Files.readAllBytes(dir.resolve("update.json")),
+        StandardCharsets.UTF_8));
+    val model = new ObjectMapper().readValue(
+        update.getJSONObject("request").getJSONObject("previousResourceState").toString(),
+        ResourceModel.class);
+    val invocations = intOption("invocations");
+    for (val name : options.get("existing").split(",")) {
+      if (name.trim().isEmpty()) {
+        continue;
+      }
+      for (int i = 0; i < invocations; i++) {
+        createAnalyzer(state, name.trim() + suffix(i), model);
+      }
+    }
+  }
+
+  private static void createAnalyzer(InMemoryAccessAnalyzer state, String name,
+      ResourceModel model) {
+    val tags = new HashMap<String, String>();
+    if (model.getTags() != null) {
+      for (val tag : model.getTags()) {
+        tags.put(tag.getKey(), tag.getValue());
+      }
+    }
+    val rules = new HashMap<String, Map<String, Criterion>>();
+    if (model.getArchiveRules() != null) {
+      for (val summary : BenchmarkData.summaries(model.getArchiveRules())) {
+        rules.put(summary.ruleName(), summary.filter());
+      }
+    }
+    state.createAnalyzer(name, model.getType(), tags, rules, null);
+  }
+
+  private void replay(String name, String template, LoadReport total)
+      throws InterruptedException {
+    val report = new LoadReport(name);
+    val invocations = intOption("invocations");
+    ExecutorService executor = Executors.newFixedThreadPool(intOption("concurrency"));
+    report.start();
+    for (int i = 0; i < invocations; i++) {
+      final String event = variant(template, i);
+      executor.execute(() -> {
+        long start = System.nanoTime();
+        String outcome;
+        int callbacks = 0;
+        try {
+          JSONObject response = invoke(event);
+          while ("IN_PROGRESS".equals(response.optString("status"))
+              && callbacks < MAX_CALLBACKS) {
+            callbacks++;
+            sleepForCallback(response.optInt("callbackDelaySeconds"));
+            response = invoke(new JSONObject(event)
+                .put("callbackContext", response.opt("callbackContext")).toString());
+          }
+          outcome = "FAILED".equals(response.optString("status"))
+              ? "FAILED " + response.optString("errorCode") : response.optString("status");
+        } catch (IOException | RuntimeException ex) {
+          outcome = "threw " + ex.getClass().getSimpleName();
+        }
+        long latency = System.nanoTime() - start;
+        report.record(latency, outcome, callbacks);
+        total.record(latency, outcome, callbacks);
+      });
+    }
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.HOURS);
+    report.stop();
+    report.print(System.out);
+    val expected = EXPECTED.get(name);
+    if (expected != null) {
+      long unexpected = 0;
+      for (val outcome : report.outcomes().entrySet()) {
+        if (!outcome.getKey().startsWith(expected)) {
+          unexpected += outcome.getValue();
+        }
+      }
+      System.out.printf("         expected %s: %s%n%n", expected,
+          unexpected == 0 ? "OK" : unexpected + " UNEXPECTED");
+    } else {
+      System.out.println();
+    }
+  }
+
+  // One call of the test entry point, as sam local invoke TestEntrypoint makes it
+  private JSONObject invoke(String event) throws IOException {
+    val out = new ByteArrayOutputStream();
+    wrappers.get().testEntrypoint(
+        new ByteArrayInputStream(event.getBytes(StandardCharsets.UTF_8)), out,
+        new ReplayContext(verbose));
+    return new JSONObject(new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  private void sleepForCallback(int callbackDelaySeconds) {
+    val millis = (long) (callbackDelaySeconds * 1000 * Double.parseDouble(
+        options.get("callbackDelayScale")));
+    if (millis > 0) {
+      try {
+        Thread.sleep(millis);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(ex);
+      }
+    }
+  }
+
+  private static String variant(String event, int variant) {
+    val json = new JSONObject(
+        ANALYZER_ARN_NAME.matcher(event).replaceAll("$1" + suffix(variant)));
+    val request = json.getJSONObject("request");
+    request.put("clientRequestToken", request.optString("clientRequestToken") + suffix(variant));
+    return json.toString();
+  }
+
+  private static String suffix(int variant) {
+    return "-r" + variant;
+  }
+
+  private int intOption(String name) {
+    return Integer.parseInt(options.get(name));
+  }
+
+  /**
+   * The parts of a Lambda context the wrapper uses: the remaining time and the log.
+   */
+  private static final class ReplayContext implements Context {
+
+    private final LambdaLogger logger;
+
+    private ReplayContext(boolean verbose) {
+      logger = new LambdaLogger() {
+        @Override
+        public void log(String message) {
+          if (verbose) {
+            System.err.println(message);
+          }
+        }
+
+        @Override
+        public void log(byte[] message) {
+          log(new String(message, StandardCharsets.UTF_8));
+        }
+      };
+    }
+
+    @Override
+    public String getAwsRequestId() {
+      return "replay";
+    }
+
+    @Override
+    public String getLogGroupName() {
+      return "replay";
+    }
+
+    @Override
+    public String getLogStreamName() {
+      return "replay";
+    }
+
+    @Override
+    public String getFunctionName() {
+      return "TestEntrypoint";
+    }
+
+    @Override
+    public String getFunctionVersion() {
+      return "$LATEST";
+    }
+
+    @Override
+    public String getInvokedFunctionArn() {
+      return "arn:aws:lambda:" + REGION + ":" + ACCOUNT + ":function:TestEntrypoint";
+    }
+
+    @Override
+    public CognitoIdentity getIdentity() {
+      return null;
+    }
+
+    @Override
+    public ClientContext getClientContext() {
+      return null;
+    }
+
+    @Override
+    public int getRemainingTimeInMillis() {
+      return (int) TimeUnit.MINUTES.toMillis(15);
+    }
+
+    @Override
+    public int getMemoryLimitInMB() {
+      return 256;
+    }
+
+    @Override
+    public LambdaLogger getLogger() {
+      return logger;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.cloudformation.proxy.HandlerRequest;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.cloudformation.resource.Serializer;
+
+/**
+ * What the wrapper spends parsing a request and writing the response of one invocation, with the
+ * serializer it uses.  The request carries the model twice, as desired and previous state, like
+ * an UPDATE.  See {@link SerializationColdStartBenchmark} for the first invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+  @Param({"5", "50"})
+  public int tags;
+
+  @Param({"1", "200"})
+  public int rules;
+
+  private final Serializer serializer = new Serializer();
+  private String request;
+  private ProgressEvent<ResourceModel, CallbackContext> response;
+
+  @Setup
+  public void setup() throws IOException {
+    val model = ResourceModel.builder()
+        .analyzerName("BenchmarkAnalyzer")
+        .arn("arn:aws:access-analyzer:us-west-2:111111111111:analyzer/BenchmarkAnalyzer")
+        .type("ACCOUNT")
+        .tags(BenchmarkData.tags(tags))
+        .archiveRules(BenchmarkData.rules(rules, 42))
+        .build();
+    request = serializer.serialize(SerializerWarmUp.request(model));
+    response = ProgressEvent.defaultSuccessHandler(model);
+  }
+
+  @Benchmark
+  public HandlerRequest<ResourceModel, CallbackContext> parseRequest() throws IOException {
+    return serializer.deserialize(request, SerializerWarmUp.REQUEST_TYPE);
+  }
+
+  @Benchmark
+  public String writeResponse() throws IOException {
+    return serializer.serialize(response);
+  }
+}
@@ -0,0 +1,62 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.cloudformation.resource.Serializer;
+
+/**
+ * The first request parse and response write of a fresh JVM, once per fork, with and without
+ * {@link SerializerWarmUp} having run at container initialization.  The difference is what the
+ * warm-up takes off the first invocation; run with {@code -prof cl} to see the classes it loads
+ * ahead of time.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+@State(Scope.Benchmark)
+public class SerializationColdStartBenchmark {
+
+  @Param({"false", "true"})
+  public boolean warmUp;
+
+  private Serializer serializer;
+  private String request;
+  private ResourceModel model;
+
+  @Setup
+  public void setup() {
+    if (warmUp) {
+      SerializerWarmUp.ensure(Settings.builder().build());
+    }
+    // Built by hand so that the setup itself doesn't introspect the model
+    serializer = new Serializer();
+    request = "{\"action\":\"UPDATE\",\"requestData\":{\"logicalResourceId\":\"Benchmark\","
+        + "\"resourceProperties\":{\"Type\":\"ACCOUNT\",\"Tags\":[{\"Key\":\"k\","
+        + "\"Value\":\"v\"}],\"ArchiveRules\":[{\"RuleName\":\"r\",\"Filter\":[{\"Property\":"
+        + "\"resource\",\"Eq\":[\"a\"]},{\"Property\":\"principal.AWS\",\"Exists\":true}]}]}}}";
+    model = ResourceModel.builder().analyzerName("Benchmark").type("ACCOUNT").build();
+  }
+
+  @Benchmark
+  public void firstRequest(Blackhole blackhole) throws IOException {
+    val parsed = serializer.<Object>deserialize(request, SerializerWarmUp.REQUEST_TYPE);
+    blackhole.consume(parsed);
+    blackhole.consume(serializer.serialize(ProgressEvent.defaultSuccessHandler(model)));
+  }
+}
@@ -0,0 +1,80 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.accessanalyzer.model.AnalyzerSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.ArchiveRuleSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.InlineArchiveRule;
+
+/**
+ * The conversions between the CFN model and the SDK model.  Run with {@code -prof gc} to get
+ * bytes allocated per operation alongside the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UtilBenchmark {
+
+  @Param({"1", "50", "5000"})
+  public int rules;
+
+  // Analyzers carry at most 50 tags
+  @Param({"1", "50"})
+  public int tags;
+
+  private List<ArchiveRule> archiveRules;
+  private List<ArchiveRuleSummary> summaries;
+  private Set<Tag> tagSet;
+  private Map<String, String> tagMap;
+  private AnalyzerSummary analyzer;
+
+  @Setup
+  public void setup() {
+    archiveRules = BenchmarkData.rules(rules, 42);
+    summaries = BenchmarkData.summaries(archiveRules);
+    tagSet = BenchmarkData.tags(tags);
+    tagMap = BenchmarkData.tagMap(tags);
+    analyzer = BenchmarkData.analyzer(tags);
+  }
+
+  @Benchmark
+  public List<InlineArchiveRule> inlineArchiveRuleFromArchiveRule() {
+    return Util.inlineArchiveRules(archiveRules);
+  }
+
+  @Benchmark
+  public List<ArchiveRule> archiveRuleFromSummary() {
+    return Util.archiveRulesFromSummaries(summaries);
+  }
+
+  @Benchmark
+  public Map<String, String> tagsToMap() {
+    return Util.tagsToMap(tagSet);
+  }
+
+  @Benchmark
+  public Set<Tag> mapToTags() {
+    return Util.mapToTags(tagMap);
+  }
+
+  @Benchmark
+  public ResourceModel analyzerSummaryToModel() {
+    return Util.analyzerSummaryToModel(analyzer);
+  }
+}
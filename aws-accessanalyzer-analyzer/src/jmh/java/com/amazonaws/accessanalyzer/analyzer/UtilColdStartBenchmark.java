@@ -0,0 +1,65 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.services.accessanalyzer.model.AnalyzerSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.ArchiveRuleSummary;
+
+/**
+ * The first conversions of a fresh JVM, as in the first invocation of a new Lambda container:
+ * class loading, linking and interpretation included.  Every fork measures a single call, so
+ * the result is the spread of cold latencies over the forks.  Compare it with
+ * {@link UtilBenchmark} for the warm cost.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+@State(Scope.Benchmark)
+public class UtilColdStartBenchmark {
+
+  // A typical analyzer rather than the extremes UtilBenchmark covers
+  private static final int RULES = 10;
+  private static final int TAGS = 10;
+
+  private List<ArchiveRule> archiveRules;
+  private List<ArchiveRuleSummary> summaries;
+  private Set<Tag> tagSet;
+  private Map<String, String> tagMap;
+  private AnalyzerSummary analyzer;
+
+  @Setup
+  public void setup() {
+    archiveRules = BenchmarkData.rules(RULES, 42);
+    summaries = BenchmarkData.summaries(archiveRules);
+    tagSet = BenchmarkData.tags(TAGS);
+    tagMap = BenchmarkData.tagMap(TAGS);
+    analyzer = BenchmarkData.analyzer(TAGS);
+  }
+
+  /**
+   * What Create, Read and List convert on their first invocation.
+   */
+  @Benchmark
+  public void firstConversions(Blackhole blackhole) {
+    blackhole.consume(Util.inlineArchiveRules(archiveRules));
+    blackhole.consume(Util.tagsToMap(tagSet));
+    blackhole.consume(Util.archiveRulesFromSummaries(summaries));
+    blackhole.consume(Util.mapToTags(tagMap));
+    blackhole.consume(Util.analyzerSummaryToModel(analyzer));
+  }
+}
@@ -0,0 +1,171 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import lombok.Value;
+import lombok.val;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import software.amazon.awssdk.arns.Arn;
+import software.amazon.cloudformation.proxy.Logger;
+
+/**
+ * The analyzer models this container last read or wrote, so that a Read right after a Create or
+ * Update, or the repeated Reads of drift detection, skip GetAnalyzer and ListArchiveRules.
+ * Entries live for {@link Settings#getCacheTtlSeconds()}.  Update and Delete always drop the
+ * entry of the analyzer they change; {@link Settings#getCachedActions()} decides which handlers
+ * fill and consult it.
+ *
+ * <p>Changes made outside this resource provider aren't seen until the entry expires, so drift
+ * detection may report them up to one TTL late.
+ */
+class AnalyzerCache {
+
+  private static final String CACHE_NAME = "Analyzer";
+
+  @Value
+  static class Key {
+
+    String account;
+    String region;
+    String arn;
+  }
+
+  private static class GlobalHolder {
+
+    private static final AnalyzerCache GLOBAL = new AnalyzerCache(Settings.current());
+  }
+
+  private final BoundedTtlCache<Key, ResourceModel> cache;
+  private BoundedTtlCache.Stats flushed = new BoundedTtlCache.Stats(0, 0, 0, 0);
+
+  AnalyzerCache(Settings settings) {
+    this(new BoundedTtlCache<>(settings.getCacheSize(),
+        TimeUnit.SECONDS.toMillis(settings.getCacheTtlSeconds())));
+  }
+
+  AnalyzerCache(BoundedTtlCache<Key, ResourceModel> cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * The cache the handlers share, sized from {@link Settings#current()}.
+   */
+  static AnalyzerCache global() {
+    return GlobalHolder.GLOBAL;
+  }
+
+  /**
+   * Null if {@code arn} isn't an ARN, which makes the analyzer uncacheable.
+   */
+  static Key key(String arn) {
+    if (arn == null) {
+      return null;
+    }
+    try {
+      val parsed = Arn.fromString(arn);
+      return new Key(parsed.accountId().orElse(""), parsed.region().orElse(""), arn);
+    } catch (IllegalArgumentException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * A copy of the cached model of {@code arn}, or null.
+   */
+  ResourceModel get(String arn) {
+    val key = key(arn);
+    if (key == null) {
+      return null;
+    }
+    val model = cache.get(key);
+    return model == null ? null : copy(model);
+  }
+
+  /**
+   * Caches {@code model} as Read would return it, with canonical rules.  It must hold the
+   * analyzer's full state.
+   */
+  void put(ResourceModel model) {
+    val key = key(model.getArn());
+    if (key != null) {
+      cache.put(key, ResourceModel.builder()
+          .analyzerName(model.getAnalyzerName())
+          .type(model.getType())
+          .arn(model.getArn())
+          .tags(new HashSet<>(Util.resourceTags(model)))
+          .archiveRules(CanonicalRules.canonical(Util.resourceRules(model)))
+          .build());
+    }
+  }
+
+  void invalidate(String arn) {
+    val key = key(arn);
+    if (key != null) {
+      cache.invalidate(key);
+    }
+  }
+
+  void clear() {
+    cache.clear();
+  }
+
+  BoundedTtlCache.Stats stats() {
+    return cache.stats();
+  }
+
+  /**
+   * Logs the hits, misses and evictions since the last flush as an Embedded Metric Format line
+   * in the {@link ApiMetrics#NAMESPACE} namespace.
+   */
+  synchronized void flush(Logger logger) {
+    val stats = cache.stats();
+    val hits = stats.getHits() - flushed.getHits();
+    val misses = stats.getMisses() - flushed.getMisses();
+    val evictions = stats.getEvictions() - flushed.getEvictions();
+    flushed = stats;
+    if (hits == 0 && misses == 0 && evictions == 0) {
+      return;
+    }
+    logger.log(emfLine(hits, misses, evictions, stats.getSize(), System.currentTimeMillis()));
+  }
+
+  static String emfLine(long hits, long misses, long evictions, int size, long timestamp) {
+    val metrics = new JSONArray()
+        .put(metric("CacheHits"))
+        .put(metric("CacheMisses"))
+        .put(metric("CacheEvictions"))
+        .put(metric("CacheSize"));
+    val directive = new JSONObject()
+        .put("Namespace", ApiMetrics.NAMESPACE)
+        .put("Dimensions", new JSONArray().put(new JSONArray().put("Cache")))
+        .put("Metrics", metrics);
+    return new JSONObject()
+        .put("_aws", new JSONObject()
+            .put("Timestamp", timestamp)
+            .put("CloudWatchMetrics", new JSONArray().put(directive)))
+        .put("ResourceType", ResourceModel.TYPE_NAME)
+        .put("Cache", CACHE_NAME)
+        .put("CacheHits", hits)
+        .put("CacheMisses", misses)
+        .put("CacheEvictions", evictions)
+        .put("CacheSize", size)
+        .toString();
+  }
+
+  private static JSONObject metric(String name) {
+    return new JSONObject().put("Name", name).put("Unit", "Count");
+  }
+
+  // Callers may change the models they are given or handed back
+  private static ResourceModel copy(ResourceModel model) {
+    return ResourceModel.builder()
+        .analyzerName(model.getAnalyzerName())
+        .type(model.getType())
+        .arn(model.getArn())
+        .tags(new HashSet<>(Util.resourceTags(model)))
+        .archiveRules(new ArrayList<>(Util.resourceRules(model)))
+        .build();
+  }
+}
@@ -0,0 +1,225 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+import lombok.Value;
+import lombok.val;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import software.amazon.cloudformation.proxy.Logger;
+
+/**
+ * Collects one {@link ApiCall} per AccessAnalyzer call and writes them out as CloudWatch Embedded
+ * Metric Format lines, one line per operation.  CloudWatch turns the lines into metrics when they
+ * are ingested, so emitting them costs no extra network calls.
+ *
+ * <p>Each invocation collects into its own instance, from {@link #open} until it is closed.  The
+ * clients built by {@link ClientBuilder} record into the instance of the thread that makes the
+ * call, and {@link BoundedExecutor} carries it over to the threads it runs an invocation's calls
+ * on.  Calls made outside an invocation, such as those of the inventory or of a warm-up, are
+ * not collected, and invocations running side by side in one JVM keep their calls apart.
+ */
+class ApiMetrics {
+
+  static final String NAMESPACE = "AccessAnalyzerResourceProvider";
+
+  // EMF takes at most 100 values per metric in one line
+  static final int MAX_VALUES = 100;
+
+  // The instance of the invocation running on this thread
+  private static final ThreadLocal<ApiMetrics> CURRENT = new ThreadLocal<>();
+
+  @Value
+  static class ApiCall {
+
+    String operation;
+    double latencyMillis;
+    List<Double> attemptMillis;
+    long requestBytes;
+    long responseBytes;
+    String error; // Null if the call succeeded
+  }
+
+  private final ConcurrentLinkedQueue<ApiCall> calls = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Starts collecting the calls made on this thread into a new instance, until {@link #close}.
+   */
+  static ApiMetrics open() {
+    val metrics = new ApiMetrics();
+    CURRENT.set(metrics);
+    return metrics;
+  }
+
+  /**
+   * The instance of the invocation running on this thread, or null outside an invocation.
+   */
+  static ApiMetrics current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * {@code task}, run with the instance of this thread as its own, wherever it runs.
+   */
+  static Runnable propagate(Runnable task) {
+    val metrics = CURRENT.get();
+    return metrics == null ? task : new Scoped<Void>(metrics, task, null);
+  }
+
+  /**
+   * {@code call}, run with the instance of this thread as its own, wherever it runs.
+   */
+  static <T> Supplier<T> propagate(Supplier<T> call) {
+    val metrics = CURRENT.get();
+    return metrics == null ? call : new Scoped<T>(metrics, null, call);
+  }
+
+  /**
+   * Stops collecting the calls made on this thread.  What was collected can still be flushed.
+   */
+  void close() {
+    if (CURRENT.get() == this) {
+      CURRENT.remove();
+    }
+  }
+
+  void record(ApiCall call) {
+    calls.add(call);
+  }
+
+  List<ApiCall> drain() {
+    val drained = new ArrayList<ApiCall>();
+    ApiCall call;
+    while ((call = calls.poll()) != null) {
+      drained.add(call);
+    }
+    return drained;
+  }
+
+  /**
+   * Logs the calls recorded since the last flush.
+   */
+  void flush(Logger logger) {
+    val drained = drain();
+    if (drained.isEmpty()) {
+      return;
+    }
+    for (val line : emfLines(drained, System.currentTimeMillis())) {
+      logger.log(line);
+    }
+  }
+
+  static List<String> emfLines(List<ApiCall> calls, long timestamp) {
+    val byOperation = new LinkedHashMap<String, List<ApiCall>>();
+    for (val call : calls) {
+      byOperation.computeIfAbsent(call.getOperation(), operation -> new ArrayList<>()).add(call);
+    }
+    val lines = new ArrayList<String>();
+    for (val operationCalls : byOperation.values()) {
+      // Split so that no metric, attempt latencies included, has more than MAX_VALUES values
+      List<ApiCall> chunk = new ArrayList<>();
+      int attempts = 0;
+      for (val call : operationCalls) {
+        val callAttempts = Math.max(1, call.getAttemptMillis().size());
+        if (!chunk.isEmpty() && (chunk.size() == MAX_VALUES
+            || attempts + callAttempts > MAX_VALUES)) {
+          lines.add(emfLine(chunk, timestamp));
+          chunk = new ArrayList<>();
+          attempts = 0;
+        }
+        chunk.add(call);
+        attempts += callAttempts;
+      }
+      lines.add(emfLine(chunk, timestamp));
+    }
+    return lines;
+  }
+
+  private static String emfLine(List<ApiCall> calls, long timestamp) {
+    val latency = new JSONArray();
+    val attempts = new JSONArray();
+    val attemptLatency = new JSONArray();
+    val requestBytes = new JSONArray();
+    val responseBytes = new JSONArray();
+    val errors = new JSONArray();
+    for (val call : calls) {
+      latency.put(call.getLatencyMillis());
+      attempts.put(call.getAttemptMillis().size());
+      for (val millis : call.getAttemptMillis()) {
+        attemptLatency.put(millis.doubleValue());
+      }
+      requestBytes.put(call.getRequestBytes());
+      responseBytes.put(call.getResponseBytes());
+      errors.put(call.getError() == null ? 0 : 1);
+    }
+    val metrics = new JSONArray()
+        .put(metric("Latency", "Milliseconds"))
+        .put(metric("Attempts", "Count"))
+        .put(metric("AttemptLatency", "Milliseconds"))
+        .put(metric("RequestBytes", "Bytes"))
+        .put(metric("ResponseBytes", "Bytes"))
+        .put(metric("Errors", "Count"));
+    val directive = new JSONObject()
+        .put("Namespace", NAMESPACE)
+        .put("Dimensions", new JSONArray().put(new JSONArray().put("Operation")))
+        .put("Metrics", metrics);
+    return new JSONObject()
+        .put("_aws", new JSONObject()
+            .put("Timestamp", timestamp)
+            .put("CloudWatchMetrics", new JSONArray().put(directive)))
+        .put("ResourceType", ResourceModel.TYPE_NAME)
+        .put("Operation", calls.get(0).getOperation())
+        .put("Latency", latency)
+        .put("Attempts", attempts)
+        .put("AttemptLatency", attemptLatency)
+        .put("RequestBytes", requestBytes)
+        .put("ResponseBytes", responseBytes)
+        .put("Errors", errors)
+        .toString();
+  }
+
+  private static JSONObject metric(String name, String unit) {
+    return new JSONObject().put("Name", name).put("Unit", unit);
+  }
+
+  // A task or call that runs as part of the invocation of metrics, on a thread of a pool
+  private static final class Scoped<T> implements Runnable, Supplier<T> {
+
+    private final ApiMetrics metrics;
+    private final Runnable task;
+    private final Supplier<T> call;
+
+    private Scoped(ApiMetrics metrics, Runnable task, Supplier<T> call) {
+      this.metrics = metrics;
+      this.task = task;
+      this.call = call;
+    }
+
+    @Override
+    public void run() {
+      get();
+    }
+
+    @Override
+    public T get() {
+      val previous = CURRENT.get();
+      CURRENT.set(metrics);
+      try {
+        if (task != null) {
+          task.run();
+          return null;
+        }
+        return call.get();
+      } finally {
+        if (previous == null) {
+          CURRENT.remove();
+        } else {
+          CURRENT.set(previous);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.val;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.core.sync.RequestBody;
+
+/**
+ * Times every AccessAnalyzer call and each of its attempts, and measures the request and response
+ * bodies, recording one {@link ApiMetrics.ApiCall} per call.  Without an {@link ApiMetrics} of
+ * its own it records into {@link ApiMetrics#current()}, and drops calls made outside an
+ * invocation.
+ */
+class ApiMetricsInterceptor implements ExecutionInterceptor {
+
+  private static final ExecutionAttribute<CallTimer> TIMER =
+      new ExecutionAttribute<>("AccessAnalyzerCallTimer");
+
+  private final ApiMetrics metrics; // Null for the invocation's
+
+  ApiMetricsInterceptor() {
+    this(null);
+  }
+
+  ApiMetricsInterceptor(ApiMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  // An execution runs on one thread at a time, so this needs no locking
+  private static final class CallTimer {
+
+    private final long start = System.nanoTime();
+    private final List<Double> attemptMillis = new ArrayList<>();
+    private long attemptStart = -1;
+    private long requestBytes;
+    private long responseBytes;
+
+    // An attempt that timed out never sees afterTransmission, so it is closed here, which
+    // counts the backoff before the next attempt as part of it
+    private void endAttempt(long now) {
+      if (attemptStart >= 0) {
+        attemptMillis.add(millis(now - attemptStart));
+        attemptStart = -1;
+      }
+    }
+  }
+
+  @Override
+  public void beforeExecution(Context.BeforeExecution context,
+      ExecutionAttributes executionAttributes) {
+    executionAttributes.putAttribute(TIMER, new CallTimer());
+  }
+
+  @Override
+  public void afterMarshalling(Context.AfterMarshalling context,
+      ExecutionAttributes executionAttributes) {
+    val timer = executionAttributes.getAttribute(TIMER);
+    if (timer != null) {
+      timer.requestBytes = context.requestBody().map(RequestBody::contentLength).orElse(0L);
+    }
+  }
+
+  @Override
+  public void beforeTransmission(Context.BeforeTransmission context,
+      ExecutionAttributes executionAttributes) {
+    val timer = executionAttributes.getAttribute(TIMER);
+    if (timer != null) {
+      val now = System.nanoTime();
+      timer.endAttempt(now);
+      timer.attemptStart = now;
+    }
+  }
+
+  @Override
+  public void afterTransmission(Context.AfterTransmission context,
+      ExecutionAttributes executionAttributes) {
+    val timer = executionAttributes.getAttribute(TIMER);
+    if (timer != null) {
+      timer.endAttempt(System.nanoTime());
+      timer.responseBytes = context.httpResponse().firstMatchingHeader("Content-Length")
+          .map(Long::parseLong).orElse(0L);
+    }
+  }
+
+  @Override
+  public void afterExecution(Context.AfterExecution context,
+      ExecutionAttributes executionAttributes) {
+    record(executionAttributes, null);
+  }
+
+  @Override
+  public void onExecutionFailure(Context.FailedExecution context,
+      ExecutionAttributes executionAttributes) {
+    record(executionAttributes, context.exception().getClass().getSimpleName());
+  }
+
+  private void record(ExecutionAttributes executionAttributes, String error) {
+    val timer = executionAttributes.getAttribute(TIMER);
+    // A sync client runs the interceptors on the thread that makes the call
+    val target = metrics != null ? metrics : ApiMetrics.current();
+    if (timer == null || target == null) {
+      return;
+    }
+    val now = System.nanoTime();
+    timer.endAttempt(now);
+    target.record(new ApiMetrics.ApiCall(
+        executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME),
+        millis(now - timer.start),
+        timer.attemptMillis,
+        timer.requestBytes,
+        timer.responseBytes,
+        error));
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
@@ -0,0 +1,163 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import lombok.val;
+
+/**
+ * Runs API calls for one invocation with at most {@code concurrency} in flight.  With a
+ * concurrency of 1 every task runs on the calling thread, in submission order.
+ *
+ * <p>Tasks run as part of the invocation that submitted them, as far as {@link ApiMetrics} is
+ * concerned.
+ *
+ * <p>The first task to fail stops any task that has not started yet, and its exception is
+ * rethrown unchanged so handlers can keep mapping exceptions to {@code HandlerErrorCode}s.  It is
+ * rethrown only once every task already started has finished, so no call outlives the invocation.
+ */
+class BoundedExecutor {
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  // Shared by all invocations in the container.  Daemon threads, so an abandoned call can't
+  // keep the JVM alive.
+  private static final ExecutorService POOL = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "access-analyzer-" + THREAD_COUNT.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final Semaphore permits;
+  private final List<CompletableFuture<Void>> started = new ArrayList<>();
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  private BoundedExecutor(Semaphore permits) {
+    this.permits = permits;
+  }
+
+  static BoundedExecutor withConcurrency(int concurrency) {
+    return new BoundedExecutor(concurrency > 1 ? new Semaphore(concurrency) : null);
+  }
+
+  /**
+   * Starts {@code call} on the shared pool.  Unlike {@link #submit}, nothing bounds it.
+   */
+  static <T> CompletableFuture<T> supplyAsync(Supplier<T> call) {
+    return CompletableFuture.supplyAsync(ApiMetrics.propagate(call), POOL);
+  }
+
+  /**
+   * Waits for {@code future}, rethrowing its failure unchanged.
+   */
+  static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException ex) {
+      val cause = ex.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Starts {@code task}, blocking while {@code concurrency} tasks are already running.
+   */
+  CompletableFuture<Void> submit(Runnable task) {
+    CompletableFuture<Void> future;
+    if (permits == null) {
+      future = new CompletableFuture<>();
+      try {
+        runTask(task);
+        future.complete(null);
+      } catch (RuntimeException | Error ex) {
+        future.completeExceptionally(ex);
+      }
+    } else {
+      permits.acquireUninterruptibly();
+      future = CompletableFuture.runAsync(ApiMetrics.propagate(() -> {
+        try {
+          runTask(task);
+        } finally {
+          permits.release();
+        }
+      }), POOL);
+    }
+    synchronized (started) {
+      started.add(future);
+    }
+    return future;
+  }
+
+  /**
+   * Runs {@code tasks} and waits for all of them to finish.
+   */
+  void runAll(Collection<Runnable> tasks) {
+    val futures = new ArrayList<CompletableFuture<Void>>(tasks.size());
+    for (val task : tasks) {
+      futures.add(submit(task));
+    }
+    await(futures);
+  }
+
+  /**
+   * Waits for everything submitted so far.
+   */
+  void awaitAll() {
+    List<CompletableFuture<Void>> futures;
+    synchronized (started) {
+      futures = new ArrayList<>(started);
+    }
+    await(futures);
+  }
+
+  private void runTask(Runnable task) {
+    if (failure.get() != null) {
+      return; // An earlier task failed, so don't start new work
+    }
+    try {
+      task.run();
+    } catch (RuntimeException | Error ex) {
+      failure.compareAndSet(null, ex);
+      throw ex;
+    }
+  }
+
+  private void await(List<CompletableFuture<Void>> futures) {
+    joinQuietly(futures);
+    val ex = failure.get();
+    if (ex != null) {
+      // Tasks submitted before these, like the tag calls of an update, may still be running
+      List<CompletableFuture<Void>> all;
+      synchronized (started) {
+        all = new ArrayList<>(started);
+      }
+      joinQuietly(all);
+    }
+    if (ex instanceof RuntimeException) {
+      throw (RuntimeException) ex;
+    } else if (ex instanceof Error) {
+      throw (Error) ex;
+    }
+  }
+
+  private static void joinQuietly(List<CompletableFuture<Void>> futures) {
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException ex) {
+      // Reported by await, as the first failure rather than whichever one join saw
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * A least recently used map whose entries also expire a fixed time after they were put.  All
+ * operations are synchronized; the cache is small and the handlers touch it once or twice per
+ * invocation.
+ */
+class BoundedTtlCache<K, V> {
+
+  @Value
+  static class Stats {
+
+    long hits;
+    long misses;
+    long evictions; // Pushed out by newer entries or expired
+    int size;
+  }
+
+  private static final class Entry<V> {
+
+    private final V value;
+    private final long expiresAt;
+
+    private Entry(V value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final int maxSize;
+  private final long ttlMillis;
+  private final LongSupplier clock;
+  private final LinkedHashMap<K, Entry<V>> entries;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  BoundedTtlCache(int maxSize, long ttlMillis) {
+    this(maxSize, ttlMillis, System::currentTimeMillis);
+  }
+
+  BoundedTtlCache(int maxSize, long ttlMillis, LongSupplier clock) {
+    this.maxSize = maxSize;
+    this.ttlMillis = ttlMillis;
+    this.clock = clock;
+    this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+        if (size() > BoundedTtlCache.this.maxSize) {
+          evictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * The live value for {@code key}, or null on a miss.
+   */
+  synchronized V get(K key) {
+    val entry = entries.get(key);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    if (clock.getAsLong() >= entry.expiresAt) {
+      entries.remove(key);
+      evictions++;
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.value;
+  }
+
+  synchronized void put(K key, V value) {
+    if (maxSize <= 0 || ttlMillis <= 0) {
+      return;
+    }
+    entries.put(key, new Entry<>(value, clock.getAsLong() + ttlMillis));
+  }
+
+  synchronized void invalidate(K key) {
+    entries.remove(key);
+  }
+
+  synchronized void clear() {
+    entries.clear();
+  }
+
+  synchronized Stats stats() {
+    return new Stats(hits, misses, evictions, entries.size());
+  }
+}
@@ -1,12 +1,40 @@
 package com.amazonaws.accessanalyzer.analyzer;
 
+import java.util.List;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
 @NoArgsConstructor
-@Builder
+@AllArgsConstructor
+@Builder(toBuilder = true)
 public class CallbackContext {
 
+  // Callbacks so far for transient failures, see CallbackRetry
+  private int retryAttempt;
+  private int backoffSeconds;
+
+  // The calls an update makes and the indices of those already made, so that a callback
+  // resumes where the last invocation stopped.  See UpdatePlan.
+  private List<UpdateStep> updatePlan;
+  private List<Integer> completedSteps;
+
+  public enum UpdateAction {
+    UNTAG, TAG, DELETE_RULE, CREATE_RULE, UPDATE_RULE
+  }
+
+  /**
+   * One call of an update.  Only names are kept, the tag values and rule filters come from the
+   * desired model, so the context stays small.
+   */
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class UpdateStep {
+
+    private UpdateAction action;
+    private List<String> names; // The tag keys, or the archive rule name
+  }
 }
@@ -0,0 +1,123 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.val;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.core.retry.RetryPolicyContext;
+import software.amazon.awssdk.core.retry.conditions.RetryCondition;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.GetArchiveRuleRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.InternalServerException;
+import software.amazon.awssdk.services.accessanalyzer.model.ListAnalyzersRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.ListArchiveRulesRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.ThrottlingException;
+import software.amazon.cloudformation.proxy.Logger;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+
+/**
+ * With {@link Settings.RetryMode#CALLBACK}, a throttled or failed mutating call is not retried by
+ * the SDK, which would sleep inside the invocation.  The handler returns IN_PROGRESS instead, and
+ * CloudFormation invokes it again after a jittered exponential backoff.  The attempt number and
+ * backoff travel in the {@link CallbackContext}.
+ *
+ * <p>The wrapper sleeps inside the same invocation for callback delays under a minute, while time
+ * remains, which would bill the backoff just like the SDK retries.  So every delay is at least
+ * {@link #MIN_DELAY_SECONDS}, which the wrapper always schedules as a new invocation.
+ *
+ * <p>Read and List must finish in one invocation, so the calls they make keep the SDK retries.
+ */
+class CallbackRetry {
+
+  // The shortest delay the wrapper doesn't spend asleep in the invocation
+  static final int MIN_DELAY_SECONDS = 60;
+  static final int BASE_DELAY_SECONDS = 60;
+  static final int MAX_DELAY_SECONDS = 300;
+
+  private static final int SDK_RETRIES = 3;
+
+  private CallbackRetry() {
+  }
+
+  static RetryPolicy retryPolicy(Settings settings) {
+    val builder = RetryPolicy.builder().numRetries(SDK_RETRIES);
+    if (settings.getRetryMode() == Settings.RetryMode.CALLBACK) {
+      builder.retryCondition(CallbackRetry::sdkShouldRetry);
+    }
+    return builder.build();
+  }
+
+  private static boolean sdkShouldRetry(RetryPolicyContext context) {
+    return isRead(context.originalRequest())
+        && RetryCondition.defaultRetryCondition().shouldRetry(context);
+  }
+
+  private static boolean isRead(SdkRequest request) {
+    return request instanceof GetAnalyzerRequest
+        || request instanceof ListAnalyzersRequest
+        || request instanceof ListArchiveRulesRequest
+        || request instanceof GetArchiveRuleRequest
+        || request instanceof ListTagsForResourceRequest;
+  }
+
+  /**
+   * Throttling, 5xx responses and client-side failures such as timeouts.
+   */
+  static boolean isTransient(Throwable ex) {
+    if (ex instanceof ThrottlingException || ex instanceof InternalServerException) {
+      return true;
+    }
+    if (ex instanceof SdkServiceException) {
+      val serviceException = (SdkServiceException) ex;
+      return serviceException.isThrottlingException() || serviceException.statusCode() >= 500;
+    }
+    return ex instanceof SdkClientException;
+  }
+
+  /**
+   * True if this invocation is a callback after a transient failure, so earlier attempts may
+   * already have made some of the changes.
+   */
+  static boolean isRetry(CallbackContext context) {
+    return context != null && context.getRetryAttempt() > 0;
+  }
+
+  /**
+   * The IN_PROGRESS event that retries the invocation after a backoff, or null if {@code ex}
+   * should be reported: callback retries are off, {@code ex} is not transient, or the retries
+   * are used up.
+   */
+  static ProgressEvent<ResourceModel, CallbackContext> retryLater(Settings settings,
+      ResourceModel model, CallbackContext context, Throwable ex, Logger logger) {
+    if (settings.getRetryMode() != Settings.RetryMode.CALLBACK || !isTransient(ex)) {
+      return null;
+    }
+    val log = HandlerLogger.of(logger);
+    val attempt = context == null ? 0 : context.getRetryAttempt();
+    if (attempt >= settings.getCallbackRetries()) {
+      log.error(() -> String.format("%s giving up after %d callback retries: %s",
+          ResourceModel.TYPE_NAME, attempt, ex.toString()));
+      return null;
+    }
+    val backoff = backoffSeconds(attempt);
+    // Equal jitter: at least half the backoff, so retries still spread out under throttling
+    val delay = Math.max(MIN_DELAY_SECONDS,
+        backoff / 2 + ThreadLocalRandom.current().nextInt(backoff / 2 + 1));
+    log.info(() -> String.format(
+        "%s transient failure, calling back in %d s (retry %d of %d): %s",
+        ResourceModel.TYPE_NAME, delay, attempt + 1, settings.getCallbackRetries(),
+        ex.toString()));
+    val next = (context == null ? CallbackContext.builder() : context.toBuilder())
+        .retryAttempt(attempt + 1)
+        .backoffSeconds(backoff)
+        .build();
+    return ProgressEvent.defaultInProgressHandler(next, delay, model);
+  }
+
+  static int backoffSeconds(int attempt) {
+    return Math.min(MAX_DELAY_SECONDS, BASE_DELAY_SECONDS << Math.min(attempt, 10));
+  }
+}
@@ -0,0 +1,89 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import lombok.val;
+
+/**
+ * The schema declares archive rules, filters and filter values with {@code insertionOrder:
+ * false}, so their order carries no meaning, and the service hands back empty value lists where
+ * a template has none.  The canonical form sorts rules by name, filters by property and values
+ * as sets, and drops empty value lists, so two rules that mean the same compare equal.
+ */
+class CanonicalRules {
+
+  private static final Comparator<String> NULLS_FIRST =
+      Comparator.nullsFirst(Comparator.naturalOrder());
+  private static final Comparator<ArchiveRule> BY_NAME =
+      Comparator.comparing(Util::ruleName, NULLS_FIRST);
+  private static final Comparator<Filter> BY_PROPERTY =
+      Comparator.comparing(Filter::getProperty, NULLS_FIRST);
+
+  private CanonicalRules() {
+  }
+
+  static List<ArchiveRule> canonical(Collection<ArchiveRule> rules) {
+    val canonical = new ArrayList<ArchiveRule>(rules.size());
+    for (val rule : rules) {
+      canonical.add(canonical(rule));
+    }
+    canonical.sort(BY_NAME);
+    return canonical;
+  }
+
+  /**
+   * Sorts canonical rules, such as those read from the service, in place.
+   */
+  static List<ArchiveRule> sortByName(List<ArchiveRule> rules) {
+    rules.sort(BY_NAME);
+    return rules;
+  }
+
+  static ArchiveRule canonical(ArchiveRule rule) {
+    val filters = new ArrayList<Filter>(rule.getFilter() == null ? 0 : rule.getFilter().size());
+    if (rule.getFilter() != null) {
+      for (val f : rule.getFilter()) {
+        filters.add(filter(f.getProperty(), f.getEq(), f.getNeq(), f.getContains(),
+            f.getExists()));
+      }
+    }
+    return rule(Util.ruleName(rule), filters);
+  }
+
+  /**
+   * A rule made of canonical filters, which this sorts in place.
+   */
+  static ArchiveRule rule(String name, List<Filter> filters) {
+    filters.sort(BY_PROPERTY);
+    return ArchiveRule.builder().ruleName(name).filter(filters).build();
+  }
+
+  static Filter filter(String property, Collection<String> eq, Collection<String> neq,
+      Collection<String> contains, Boolean exists) {
+    return Filter.builder()
+        .property(property)
+        .eq(values(eq))
+        .neq(values(neq))
+        .contains(values(contains))
+        .exists(exists)
+        .build();
+  }
+
+  /**
+   * True if the rules mean the same, whatever the order of their filters and values.
+   */
+  static boolean equivalent(ArchiveRule a, ArchiveRule b) {
+    return a.equals(b) || canonical(a).equals(canonical(b));
+  }
+
+  // Null for no values, so that a template without Eq matches a service reply with an empty one
+  private static List<String> values(Collection<String> values) {
+    if (values == null || values.isEmpty()) {
+      return null;
+    }
+    return new ArrayList<>(new TreeSet<>(values));
+  }
+}
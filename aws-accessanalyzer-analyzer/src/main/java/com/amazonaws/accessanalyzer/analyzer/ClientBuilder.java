@@ -1,32 +1,181 @@
 package com.amazonaws.accessanalyzer.analyzer;
 
 import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import lombok.val;
 import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
-import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
-import software.amazon.cloudformation.LambdaWrapper;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClientBuilder;
+import software.amazon.cloudformation.proxy.Logger;
 
 class ClientBuilder {
 
+  // The client is shared by every invocation served by this container.  Building it means
+  // building the override configuration, retry policy, signer and interceptor chain, so we only
+  // pay for that once per container instead of once per invocation.
+  private static final Object LOCK = new Object();
+  private static volatile SharedClient sharedClient;
+  private static long generations;
+  // Builds the shared client.  Tests replace it so they don't depend on the region of whoever
+  // runs them.
+  private static volatile Supplier<AccessAnalyzerClient> clientFactory = ClientBuilder::getClient;
+
+  private static final class SharedClient {
+
+    private final AccessAnalyzerClient client;
+    private final long generation;
+    private final AtomicLong invocations = new AtomicLong();
+    // Invocations using the client, and whether it has been replaced.  Guarded by LOCK: the
+    // client is closed once it is discarded and the last of them has released it.
+    private int users;
+    private boolean discarded;
+
+    private SharedClient(AccessAnalyzerClient client, long generation) {
+      this.client = client;
+      this.generation = generation;
+    }
+  }
+
+  static AccessAnalyzerClient getClient() {
+    return builder(Settings.current()).build();
+  }
+
   // The CFN handler timeout is 60s:
   //   - https://docs.aws.amazon.com/cloudformation-cli/latest/userguide/resource-type-walkthrough.html
   //   - https://sage.amazon.com/questions/767822
   // AccessAnalyzer regularly has long latencies (20s or higher) when used for the first time:
   //   - https://code.amazon.com/reviews/CR-16244839/revisions/1#/comments
   // We'll use 3 19s timeouts, which should handle any initial-use latency and be within the CFN limit
-  static AccessAnalyzerClient getClient() {
-    return AccessAnalyzerClient
+  static AccessAnalyzerClientBuilder builder(Settings settings) {
+    val builder = AccessAnalyzerClient
         .builder()
         .overrideConfiguration(
             ClientOverrideConfiguration
                 .builder()
                 .apiCallAttemptTimeout(Duration.ofSeconds(19))
                 .apiCallTimeout(Duration.ofSeconds(59))
-                .retryPolicy(RetryPolicy.builder().numRetries(3).build())
+                // With callback retries, only reads are retried here
+                .retryPolicy(CallbackRetry.retryPolicy(settings))
+                .addExecutionInterceptor(new ApiMetricsInterceptor())
                 .build())
-        // It is safe to close this client, which will not close the static http client
+        // It is safe to close this client, which will not close the shared http client
         //   - https://docs.aws.amazon.com/sdk-for-java/v2/developer-guide/client-configuration-http.html
-        .httpClient(LambdaWrapper.HTTP_CLIENT)
-        .build();
+        .httpClient(HttpClients.get(settings));
+    if (settings.getEndpoint() != null) {
+      builder.endpointOverride(settings.getEndpoint());
+    }
+    return builder;
+  }
+
+  /**
+   * Runs {@code body} with the container-wide client, building it on first use.  If a client
+   * failure escapes {@code body}, an {@link SdkClientException} or the
+   * {@link IllegalStateException} of a closed client, the client is discarded and rebuilt by the
+   * next invocation, since we can no longer trust its state.  Other invocations still using it
+   * keep it until they finish, like the leases of a {@link RegionalClientPool}.  The metrics of the calls it made and of the analyzer cache are
+   * written to the wrapper's logger on the way out, at any log level, followed by the summary of
+   * a {@link HandlerLogger}.
+   */
+  static <T> T withSharedClient(Logger logger, Function<AccessAnalyzerClient, T> body) {
+    val handlerLogger = HandlerLogger.of(logger);
+    val metrics = ApiMetrics.open();
+    val shared = acquire();
+    try {
+      return body.apply(shared.client);
+    } catch (SdkClientException | IllegalStateException ex) {
+      handlerLogger.failed();
+      discard(shared, logger);
+      throw ex;
+    } catch (RuntimeException | Error ex) {
+      handlerLogger.failed();
+      throw ex;
+    } finally {
+      release(shared);
+      metrics.close();
+      metrics.flush(handlerLogger.sink());
+      AnalyzerCache.global().flush(handlerLogger.sink());
+      handlerLogger.flush();
+    }
+  }
+
+  /**
+   * Discards the container-wide client so the next invocation builds a fresh one, closing it once
+   * no invocation is using it.  Use this after errors that leave the client unusable.
+   */
+  static void resetClient(Logger logger) {
+    val shared = sharedClient;
+    if (shared != null) {
+      discard(shared, logger);
+    }
+  }
+
+  /**
+   * Replaces what builds the container-wide client, and closes the current one so the next
+   * invocation uses {@code factory}.
+   */
+  static void setClientFactory(Supplier<AccessAnalyzerClient> factory, Logger logger) {
+    clientFactory = factory;
+    resetClient(logger);
+  }
+
+  /**
+   * The number of invocations served by the current client, or 0 if none has been built.
+   */
+  static long invocationsServed() {
+    val shared = sharedClient;
+    return shared == null ? 0 : shared.invocations.get();
+  }
+
+  /**
+   * Counts the clients built by this container, including the current one.
+   */
+  static long clientGeneration() {
+    val shared = sharedClient;
+    return shared == null ? 0 : shared.generation;
+  }
+
+  private static SharedClient acquire() {
+    SharedClient shared;
+    synchronized (LOCK) {
+      shared = sharedClient;
+      if (shared == null) {
+        shared = new SharedClient(clientFactory.get(), ++generations);
+        sharedClient = shared;
+      }
+      shared.users++;
+    }
+    shared.invocations.incrementAndGet();
+    return shared;
+  }
+
+  private static void release(SharedClient shared) {
+    boolean close;
+    synchronized (LOCK) {
+      shared.users--;
+      close = shared.discarded && shared.users == 0;
+    }
+    if (close) {
+      shared.client.close();
+    }
+  }
+
+  private static void discard(SharedClient shared, Logger logger) {
+    boolean close;
+    synchronized (LOCK) {
+      if (sharedClient != shared) {
+        return; // Someone else already replaced it
+      }
+      sharedClient = null;
+      shared.discarded = true;
+      close = shared.users == 0;
+    }
+    logger.log(String.format("Discarding AccessAnalyzer client #%d after %d invocations",
+        shared.generation, shared.invocations.get()));
+    if (close) {
+      shared.client.close();
+    }
   }
 }
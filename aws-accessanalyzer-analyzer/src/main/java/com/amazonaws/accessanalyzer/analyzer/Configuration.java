@@ -1,12 +1,26 @@
 package com.amazonaws.accessanalyzer.analyzer;
 
-import java.util.Map;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
 class Configuration extends BaseConfiguration {
 
+    private static final String SCHEMA_FILENAME = "aws-accessanalyzer-analyzer.json";
+
+    // The wrapper asks for the schema on every invocation, so it is read and parsed once per
+    // container.  Callers must not modify it.
+    private static class SchemaHolder {
+
+        private static final JSONObject SCHEMA = new JSONObject(new JSONTokener(
+            Configuration.class.getClassLoader().getResourceAsStream(SCHEMA_FILENAME)));
+    }
+
     public Configuration() {
-        super("aws-accessanalyzer-analyzer.json");
+        super(SCHEMA_FILENAME);
+    }
+
+    @Override
+    public JSONObject resourceSchemaJSONObject() {
+        return SchemaHolder.SCHEMA;
     }
 }
@@ -7,6 +7,7 @@ import lombok.val;
 import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
 import software.amazon.awssdk.services.accessanalyzer.model.CreateAnalyzerRequest;
 import software.amazon.awssdk.services.accessanalyzer.model.ServiceQuotaExceededException;
+import software.amazon.cloudformation.Action;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
@@ -19,13 +20,17 @@ public class CreateHandler extends BaseHandler<CallbackContext> {
 
   private static final int ANALYZER_NAME_MAX_LENGTH = 255;
 
+  static {
+    SerializerWarmUp.ensure(Settings.current());
+  }
+
   @Override
   public ProgressEvent<ResourceModel, CallbackContext> handleRequest(
       AmazonWebServicesClientProxy proxy, ResourceHandlerRequest<ResourceModel> request,
       CallbackContext callbackContext, Logger logger) {
-    try (val client = ClientBuilder.getClient()) {
-      return handleRequestWithClient(client, proxy, request, callbackContext, logger);
-    }
+    val handlerLogger = HandlerLogger.forInvocation(logger, Action.CREATE, Settings.current());
+    return ClientBuilder.withSharedClient(handlerLogger,
+        client -> handleRequestWithClient(client, proxy, request, callbackContext, handlerLogger));
   }
 
   @SuppressWarnings("WeakerAccess")
@@ -33,50 +38,80 @@ public class CreateHandler extends BaseHandler<CallbackContext> {
   static ProgressEvent<ResourceModel, CallbackContext> handleRequestWithClient(
       AccessAnalyzerClient client, AmazonWebServicesClientProxy proxy,
       ResourceHandlerRequest<ResourceModel> request,
-      @SuppressWarnings("unused") CallbackContext callbackContext, Logger logger) {
+      CallbackContext callbackContext, Logger logger) {
+    return handleRequestWithClient(client, proxy, request, callbackContext, logger,
+        Settings.current());
+  }
+
+  @VisibleForTesting
+  static ProgressEvent<ResourceModel, CallbackContext> handleRequestWithClient(
+      AccessAnalyzerClient client, AmazonWebServicesClientProxy proxy,
+      ResourceHandlerRequest<ResourceModel> request,
+      CallbackContext callbackContext, Logger logger, Settings settings) {
+    val log = HandlerLogger.of(logger);
     val model = request.getDesiredResourceState();
-    String name = model.getAnalyzerName();
-    if (StringUtils.isNullOrEmpty(name)) {
-      name = IdentifierUtils
+    if (StringUtils.isNullOrEmpty(model.getAnalyzerName())) {
+      model.setAnalyzerName(IdentifierUtils
           .generateResourceIdentifier(request.getLogicalResourceIdentifier(),
               request.getClientRequestToken(),
-              ANALYZER_NAME_MAX_LENGTH);
-      model.setAnalyzerName(name);
-      logger.log("No name in request.  Invented name: " + name);
+              ANALYZER_NAME_MAX_LENGTH));
+      log.info(() -> "No name in request.  Invented name: " + model.getAnalyzerName());
+    }
+    val name = model.getAnalyzerName();
+    val rules = Util.inlineArchiveRules(Util.resourceRules(model));
+    val tags = Util.tagsToMap(Util.resourceTags(model));
+    String fingerprint = null;
+    if (settings.isRulesFingerprint() && RuleFingerprint.fits(tags.size())) {
+      fingerprint = RuleFingerprint.of(Util.resourceRules(model));
+      tags.put(RuleFingerprint.TAG_KEY, fingerprint);
     }
-    val rules = Util.map(Util.resourceRules(model), Util::inlineArchiveRuleFromArchiveRule);
     val createRequest = CreateAnalyzerRequest.builder()
         .analyzerName(name)
         .archiveRules(rules)
-        .tags(Util.tagsToMap(Util.resourceTags(model)))
-        .type(model.getType())
-        .build();
+        .tags(tags)
+        .type(model.getType());
+    if (settings.getRetryMode() == Settings.RetryMode.CALLBACK) {
+      // The same token on every callback, so a create that timed out but went through is
+      // returned instead of failing with a conflict
+      createRequest.clientToken(request.getClientRequestToken());
+    }
     try {
-      val result = proxy.injectCredentialsAndInvokeV2(createRequest, client::createAnalyzer);
+      val result = proxy
+          .injectCredentialsAndInvokeV2(createRequest.build(), client::createAnalyzer);
       val arn = result.arn();
       if (arn == null) {
-        logger.log(String.format("ERROR: Impossible.  Null ARN from create: %s", name));
+        log.error(() -> String.format("ERROR: Impossible.  Null ARN from create: %s", name));
         return ProgressEvent
             .failed(request.getDesiredResourceState(), null, HandlerErrorCode.InternalFailure,
                 String.format("Error creating %s", name));
       }
       model.setArn(result.arn());
-      logger.log(String.format("%s [%s] Created Successfully", ResourceModel.TYPE_NAME, name));
+      if (fingerprint != null) {
+        RuleFingerprint.global().remember(arn, fingerprint, Util.resourceRules(model));
+      }
+      if (settings.getCachedActions().contains(Action.CREATE)) {
+        AnalyzerCache.global().put(model);
+      }
+      log.info(() -> String.format("%s [%s] Created Successfully", ResourceModel.TYPE_NAME, name));
       return ProgressEvent.defaultSuccessHandler(model);
     } catch (ServiceQuotaExceededException ex) {
-      logger.log(
+      log.error(() ->
           String.format("%s [%s] Too many analyzers", ResourceModel.TYPE_NAME, name));
       return ProgressEvent.defaultFailureHandler(ex, HandlerErrorCode.ServiceLimitExceeded);
     } catch (AmazonServiceException ex) {
       if (ex.getStatusCode() == Util.SERVICE_VALIDATION_STATUS_CODE) {
-        logger.log(String.format("%s [%s] Create Failed due to a service validation error",
+        log.error(() -> String.format("%s [%s] Create Failed due to a service validation error",
             ResourceModel.TYPE_NAME, name));
         return ProgressEvent.defaultFailureHandler(ex, HandlerErrorCode.InvalidRequest);
       }
-      logger.log(String.format("%s [%s] Created Failed", ResourceModel.TYPE_NAME, name));
+      log.error(() -> String.format("%s [%s] Created Failed", ResourceModel.TYPE_NAME, name));
       return ProgressEvent.defaultFailureHandler(ex, HandlerErrorCode.ServiceInternalError);
     } catch (Exception ex) {
-      logger.log(String.format("%s [%s] Created Failed", ResourceModel.TYPE_NAME, name));
+      val retry = CallbackRetry.retryLater(settings, model, callbackContext, ex, log);
+      if (retry != null) {
+        return retry;
+      }
+      log.error(() -> String.format("%s [%s] Created Failed", ResourceModel.TYPE_NAME, name));
       return ProgressEvent.defaultFailureHandler(ex, HandlerErrorCode.ServiceInternalError);
     }
   }
@@ -14,6 +14,7 @@ import software.amazon.awssdk.services.accessanalyzer.model.ResourceNotFoundExce
 import software.amazon.awssdk.services.accessanalyzer.model.ServiceQuotaExceededException;
 import software.amazon.awssdk.services.accessanalyzer.model.ThrottlingException;
 import software.amazon.awssdk.services.accessanalyzer.model.ValidationException;
+import software.amazon.cloudformation.Action;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
@@ -22,73 +23,110 @@ import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 
 public class DeleteHandler extends BaseHandler<CallbackContext> {
 
+  static {
+    SerializerWarmUp.ensure(Settings.current());
+  }
+
   @Override
   public ProgressEvent<ResourceModel, CallbackContext> handleRequest(
       AmazonWebServicesClientProxy proxy, ResourceHandlerRequest<ResourceModel> request,
       CallbackContext callbackContext, Logger logger) {
-    try (val client = ClientBuilder.getClient()) {
-      return handleRequestWithClient(client, proxy, request, callbackContext, logger);
-    }
+    val handlerLogger = HandlerLogger.forInvocation(logger, Action.DELETE, Settings.current());
+    return ClientBuilder.withSharedClient(handlerLogger,
+        client -> handleRequestWithClient(client, proxy, request, callbackContext, handlerLogger));
   }
 
-  @SuppressWarnings("DuplicatedCode") // TODO: Abstract the ARN/Name logic
   static ProgressEvent<ResourceModel, CallbackContext> handleRequestWithClient(
       AccessAnalyzerClient client, AmazonWebServicesClientProxy proxy,
       ResourceHandlerRequest<ResourceModel> request,
       CallbackContext callbackContext, Logger logger) {
+    return handleRequestWithClient(client, proxy, request, callbackContext, logger,
+        Settings.current());
+  }
+
+  @SuppressWarnings("DuplicatedCode") // TODO: Abstract the ARN/Name logic
+  static ProgressEvent<ResourceModel, CallbackContext> handleRequestWithClient(
+      AccessAnalyzerClient client, AmazonWebServicesClientProxy proxy,
+      ResourceHandlerRequest<ResourceModel> request,
+      CallbackContext callbackContext, Logger logger, Settings settings) {
+    val log = HandlerLogger.of(logger);
     val model = request.getDesiredResourceState();
     val arn = model.getArn();
     if (arn == null) {
-      logger.log("Impossible: Null arn in current state of analyzer");
+      log.error(() -> "Impossible: Null arn in current state of analyzer");
       return ProgressEvent
           .failed(request.getDesiredResourceState(), null, HandlerErrorCode.InternalFailure,
               "Internal error");
     }
     // CFN is inconsistent about returning the AnalyzerName used in the CREATE call
     val name = Optional.ofNullable(model.getAnalyzerName()).orElse(Util.arnToAnalyzerName(arn));
+    AnalyzerCache.global().invalidate(arn);
+    RuleFingerprint.global().forget(arn);
     try {
       val deleteRequest = DeleteAnalyzerRequest.builder().analyzerName(name).build();
       proxy.injectCredentialsAndInvokeV2(deleteRequest, client::deleteAnalyzer);
-      logger.log(String.format("%s [%s] Deleted Successfully", ResourceModel.TYPE_NAME, name));
+      log.info(() -> String.format("%s [%s] Deleted Successfully", ResourceModel.TYPE_NAME, name));
       return ProgressEvent.defaultSuccessHandler(ResourceModel.builder().build());
     } catch (AccessDeniedException ex) {
-      logError(logger, name, ex);
+      logError(log, name, ex);
       return ProgressEvent.failed(model, null, HandlerErrorCode.AccessDenied, "Access denied");
     } catch (ConflictException | ValidationException ex) {
-      logError(logger, name, ex);
+      logError(log, name, ex);
       return ProgressEvent.failed(model, null, HandlerErrorCode.InvalidRequest, "Invalid request");
     } catch (InternalServerException ex) {
-      logError(logger, name, ex);
+      logError(log, name, ex);
+      val retry = CallbackRetry.retryLater(settings, model, callbackContext, ex, log);
+      if (retry != null) {
+        return retry;
+      }
       return ProgressEvent
           .failed(model, null, HandlerErrorCode.ServiceInternalError, "Internal error");
     } catch (ResourceNotFoundException ex) {
-      logError(logger, name, ex);
+      logError(log, name, ex);
+      if (CallbackRetry.isRetry(callbackContext)) {
+        // An earlier attempt deleted it before failing
+        log.info(() -> String.format("%s [%s] Already deleted", ResourceModel.TYPE_NAME, name));
+        return ProgressEvent.defaultSuccessHandler(ResourceModel.builder().build());
+      }
       return ProgressEvent.failed(model, null, HandlerErrorCode.NotFound,
           String.format("No analyzer named %s", name));
     } catch (ServiceQuotaExceededException ex) {
-      logError(logger, name, ex);
-      logger.log(
+      logError(log, name, ex);
+      log.error(() ->
           "Impossible: got a limit-exceeded exception when deleting an analyzer: " + ex.toString());
       return ProgressEvent.defaultFailureHandler(ex, HandlerErrorCode.ServiceLimitExceeded);
     } catch (ThrottlingException ex) {
-      logError(logger, name, ex);
+      logError(log, name, ex);
+      val retry = CallbackRetry.retryLater(settings, model, callbackContext, ex, log);
+      if (retry != null) {
+        return retry;
+      }
       return ProgressEvent.failed(model, null, HandlerErrorCode.Throttling, "Throttled");
     } catch (AccessAnalyzerException ex) {
-      logError(logger, name, ex, "Impossible: unhandled AccessAnalyzerException subtype");
+      logError(log, name, ex, "Impossible: unhandled AccessAnalyzerException subtype");
+      val retry = CallbackRetry.retryLater(settings, model, callbackContext, ex, log);
+      if (retry != null) {
+        return retry;
+      }
       return ProgressEvent.defaultFailureHandler(ex, HandlerErrorCode.ServiceInternalError);
     } catch (RuntimeException ex) {
-      logError(logger, name, ex, "Unhandled RuntimeException");
+      logError(log, name, ex, "Unhandled RuntimeException");
+      val retry = CallbackRetry.retryLater(settings, model, callbackContext, ex, log);
+      if (retry != null) {
+        return retry;
+      }
       return ProgressEvent.defaultFailureHandler(ex, HandlerErrorCode.ServiceInternalError);
     }
   }
 
-  private static void logError(Logger logger, String analyzerName, Exception exn) {
-    logger.log(String.format("Exception while deleting %s named %s: %s", TYPE_NAME, analyzerName,
-        exn.toString()));
+  private static void logError(HandlerLogger log, String analyzerName, Exception exn) {
+    log.error(() -> String.format("Exception while deleting %s named %s: %s", TYPE_NAME,
+        analyzerName, exn.toString()));
   }
 
-  private static void logError(Logger logger, String analyzerName, Exception exn, String message) {
-    logger.log(String
+  private static void logError(HandlerLogger log, String analyzerName, Exception exn,
+      String message) {
+    log.error(() -> String
         .format("Exception while deleting %s named %s: %s: %s", TYPE_NAME, analyzerName,
             exn.toString(), message));
   }
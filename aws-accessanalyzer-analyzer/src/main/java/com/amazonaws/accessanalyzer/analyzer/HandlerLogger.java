@@ -0,0 +1,203 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import lombok.val;
+import org.json.JSONObject;
+import software.amazon.cloudformation.Action;
+import software.amazon.cloudformation.proxy.Logger;
+
+/**
+ * Level-gated logging over the wrapper's {@link Logger}, with messages built only when they are
+ * written.  A buffered logger, one per invocation, keeps the messages below the level and the
+ * per-item messages such as one per archive rule in memory, and {@link #flush()} writes one
+ * summary line with the count of each item event and the first few of its messages.  If the
+ * invocation logged an error or threw, the buffered messages are written in full before the
+ * summary, so a failure still comes with everything that led up to it.
+ *
+ * <p>Handlers get a buffered logger from {@link #forInvocation}.  {@link #of} wraps any other
+ * {@link Logger}, for example a test's, in one that writes enabled messages straight away and
+ * drops the rest.
+ */
+class HandlerLogger implements Logger {
+
+  // Bounds the memory of an invocation that logs far more than expected
+  static final int MAX_BUFFERED = 10_000;
+
+  enum Level {
+    DEBUG, INFO, ERROR
+  }
+
+  private final Logger sink;
+  private final Level level;
+  private final int samplesPerEvent;
+  private final Action action; // Null if unbuffered
+  private final long startMillis = System.currentTimeMillis();
+
+  private final List<Supplier<String>> buffer = new ArrayList<>();
+  private final Map<String, Integer> events = new LinkedHashMap<>();
+  private final Map<String, List<String>> samples = new LinkedHashMap<>();
+  private int dropped;
+  private boolean failed;
+  private boolean flushed;
+
+  private HandlerLogger(Logger sink, Level level, int samplesPerEvent, Action action) {
+    this.sink = sink;
+    this.level = level;
+    this.samplesPerEvent = samplesPerEvent;
+    this.action = action;
+  }
+
+  /**
+   * A buffered logger for one invocation of the {@code action} handler.
+   */
+  static HandlerLogger forInvocation(Logger sink, Action action, Settings settings) {
+    return new HandlerLogger(sink, settings.getLogLevel(), settings.getLogSamplesPerEvent(),
+        action);
+  }
+
+  /**
+   * {@code logger} itself if it is a HandlerLogger, or an unbuffered one writing to it.
+   */
+  static HandlerLogger of(Logger logger) {
+    if (logger instanceof HandlerLogger) {
+      return (HandlerLogger) logger;
+    }
+    val settings = Settings.current();
+    return new HandlerLogger(logger, settings.getLogLevel(), settings.getLogSamplesPerEvent(),
+        null);
+  }
+
+  /**
+   * The wrapper's logger, for lines that are data rather than messages, such as Embedded Metric
+   * Format metrics, and must be written whatever the level.
+   */
+  Logger sink() {
+    return sink;
+  }
+
+  boolean isEnabled(Level messageLevel) {
+    return messageLevel.compareTo(level) >= 0;
+  }
+
+  /**
+   * Writes {@code message} at INFO, for callers that only know {@link Logger}.
+   */
+  @Override
+  public void log(String message) {
+    write(Level.INFO, message);
+  }
+
+  void debug(Supplier<String> message) {
+    write(Level.DEBUG, message);
+  }
+
+  void info(Supplier<String> message) {
+    write(Level.INFO, message);
+  }
+
+  /**
+   * Writes {@code message} straight away and has {@link #flush()} write the buffer in full.
+   */
+  void error(Supplier<String> message) {
+    synchronized (this) {
+      failed = true;
+    }
+    sink.log(message.get());
+  }
+
+  /**
+   * A DEBUG message about one of many items of the same kind, e.g. one archive rule of an update.
+   * The summary counts them per {@code event} and keeps the first few.
+   */
+  void item(String event, Supplier<String> message) {
+    if (isEnabled(Level.DEBUG)) {
+      sink.log(message.get());
+      return;
+    }
+    synchronized (this) {
+      val count = events.getOrDefault(event, 0) + 1;
+      events.put(event, count);
+      if (count <= samplesPerEvent) {
+        samples.computeIfAbsent(event, e -> new ArrayList<>()).add(message.get());
+      }
+      buffer(message);
+    }
+  }
+
+  /**
+   * Has {@link #flush()} write the buffer in full, for a failure that escaped the handler.
+   */
+  synchronized void failed() {
+    failed = true;
+  }
+
+  /**
+   * Writes the buffer if the invocation failed, then the summary line.  Only the first flush
+   * writes anything, and an unbuffered logger has nothing to flush.
+   */
+  void flush() {
+    List<Supplier<String>> messages;
+    JSONObject summary;
+    synchronized (this) {
+      if (action == null || flushed) {
+        return;
+      }
+      flushed = true;
+      messages = failed ? new ArrayList<>(buffer) : new ArrayList<>();
+      summary = summary(System.currentTimeMillis());
+      buffer.clear();
+    }
+    for (val message : messages) {
+      sink.log(message.get());
+    }
+    sink.log(summary.toString());
+  }
+
+  // Callers hold the lock
+  private JSONObject summary(long nowMillis) {
+    return new JSONObject()
+        .put("handler", action.name())
+        .put("failed", failed)
+        .put("durationMillis", nowMillis - startMillis)
+        .put("events", new JSONObject(events))
+        .put("samples", new JSONObject(samples))
+        .put("buffered", buffer.size())
+        .put("dropped", dropped);
+  }
+
+  private void write(Level messageLevel, String message) {
+    if (isEnabled(messageLevel)) {
+      sink.log(message);
+    } else {
+      synchronized (this) {
+        buffer(() -> message);
+      }
+    }
+  }
+
+  private void write(Level messageLevel, Supplier<String> message) {
+    if (isEnabled(messageLevel)) {
+      sink.log(message.get());
+    } else {
+      synchronized (this) {
+        buffer(message);
+      }
+    }
+  }
+
+  // Callers hold the lock
+  private void buffer(Supplier<String> message) {
+    if (action == null) {
+      return;
+    }
+    if (buffer.size() < MAX_BUFFERED) {
+      buffer.add(message);
+    } else {
+      dropped++;
+    }
+  }
+}
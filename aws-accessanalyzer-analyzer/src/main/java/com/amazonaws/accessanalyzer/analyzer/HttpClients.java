@@ -0,0 +1,67 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import lombok.val;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.cloudformation.LambdaWrapper;
+
+/**
+ * The HTTP transports {@link ClientBuilder} can give the AccessAnalyzer clients, chosen with
+ * {@link Settings#getHttpClient()}.  Each one is built the first time it is asked for and then
+ * shared by every client in the container, regional ones included.  Closing an AccessAnalyzer
+ * client does not close an HTTP client it was handed, so these live as long as the container.
+ *
+ * <p>{@code HttpClientBenchmark} and {@code HttpClientColdStartBenchmark} compare them.
+ */
+class HttpClients {
+
+  // Below the 19s attempt timeout, so a stuck socket fails the attempt rather than the call
+  private static final Duration CONNECTION_TIMEOUT = Duration.ofSeconds(2);
+  private static final Duration SOCKET_TIMEOUT = Duration.ofSeconds(18);
+
+  private static final Map<Settings.HttpClientType, SdkHttpClient> CLIENTS =
+      new EnumMap<>(Settings.HttpClientType.class);
+
+  private HttpClients() {
+  }
+
+  static SdkHttpClient get(Settings settings) {
+    val type = settings.getHttpClient();
+    if (type == Settings.HttpClientType.WRAPPER) {
+      return LambdaWrapper.HTTP_CLIENT;
+    }
+    synchronized (CLIENTS) {
+      SdkHttpClient client = CLIENTS.get(type);
+      if (client == null) {
+        client = build(type, settings);
+        CLIENTS.put(type, client);
+      }
+      return client;
+    }
+  }
+
+  private static SdkHttpClient build(Settings.HttpClientType type, Settings settings) {
+    switch (type) {
+      case APACHE:
+        return ApacheHttpClient.builder()
+            // An update's own calls, plus the GetAnalyzer Read runs next to ListArchiveRules
+            .maxConnections(settings.getUpdateConcurrency() + 2)
+            .connectionTimeout(CONNECTION_TIMEOUT)
+            .socketTimeout(SOCKET_TIMEOUT)
+            // The reaper is a thread that a frozen container can't run anyway
+            .useIdleConnectionReaper(false)
+            .build();
+      case URL_CONNECTION:
+        return UrlConnectionHttpClient.builder()
+            .connectionTimeout(CONNECTION_TIMEOUT)
+            .socketTimeout(SOCKET_TIMEOUT)
+            .build();
+      default:
+        throw new IllegalArgumentException("Unknown HTTP client " + type);
+    }
+  }
+}
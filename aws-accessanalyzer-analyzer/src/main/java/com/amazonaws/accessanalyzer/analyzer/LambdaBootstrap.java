@@ -0,0 +1,236 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import lombok.val;
+import org.json.JSONObject;
+
+/**
+ * The entry point of the JVM in the container image of {@code template-cds.yml}.  It is a Lambda
+ * custom runtime: it takes invocations from the runtime API and hands them to the generated
+ * {@link HandlerWrapper}, as the java8 runtime does for the jar.  {@code _HANDLER} picks the
+ * wrapper method, so one image serves both functions of the template.
+ *
+ * <p>{@code --event <file>} runs one invocation from a file and prints the response instead,
+ * which is how {@code compare-startup} times the jar.  {@code CdsTraining} calls
+ * {@link #invokeLocal} the same way.
+ */
+public class LambdaBootstrap {
+
+  private static final String RUNTIME_API = "/2018-06-01/runtime";
+  private static final String TEST_ENTRYPOINT = "::testEntrypoint";
+
+  public static void main(String[] args) throws IOException {
+    val test = String.valueOf(System.getenv("_HANDLER")).endsWith(TEST_ENTRYPOINT);
+    if (args.length == 2 && "--event".equals(args[0])) {
+      byte[] response;
+      try (InputStream in = Files.newInputStream(Paths.get(args[1]))) {
+        // The response goes to standard output, so the logs go to standard error
+        response = invokeLocal(new HandlerWrapper(), test, in, System.err);
+      }
+      System.out.println(new String(response, StandardCharsets.UTF_8));
+      return;
+    }
+
+    val api = "http://" + System.getenv("AWS_LAMBDA_RUNTIME_API") + RUNTIME_API;
+    RequestStreamHandler handler;
+    try {
+      handler = handler(new HandlerWrapper(), test);
+    } catch (RuntimeException | Error ex) {
+      post(api + "/init/error", error(ex));
+      throw ex;
+    }
+    serve(api, handler);
+  }
+
+  /**
+   * Takes invocations from the runtime API at {@code api} and hands them to {@code handler} for
+   * as long as the process runs.  A failed invocation is reported to the API, and the next one
+   * is taken.
+   */
+  static void serve(String api, RequestStreamHandler handler) throws IOException {
+    while (true) {
+      val next = (HttpURLConnection) new URL(api + "/invocation/next").openConnection();
+      val event = read(next.getInputStream());
+      val requestId = next.getHeaderField("Lambda-Runtime-Aws-Request-Id");
+      val context = new RuntimeContext(requestId,
+          next.getHeaderField("Lambda-Runtime-Invoked-Function-Arn"),
+          Long.parseLong(next.getHeaderField("Lambda-Runtime-Deadline-Ms")), System.out);
+      val out = new ByteArrayOutputStream();
+      try {
+        handler.handleRequest(new ByteArrayInputStream(event), out, context);
+        post(api + "/invocation/" + requestId + "/response", out.toByteArray());
+      } catch (IOException | RuntimeException ex) {
+        post(api + "/invocation/" + requestId + "/error", error(ex));
+      }
+    }
+  }
+
+  /**
+   * One invocation of {@code event} outside the runtime API, with no deadline and the logs
+   * written to {@code log}.  The response.
+   */
+  static byte[] invokeLocal(HandlerWrapper wrapper, boolean test, InputStream event,
+      PrintStream log) throws IOException {
+    val out = new ByteArrayOutputStream();
+    handler(wrapper, test).handleRequest(event, out, new RuntimeContext("local", null, 0, log));
+    return out.toByteArray();
+  }
+
+  private static RequestStreamHandler handler(HandlerWrapper wrapper, boolean test) {
+    return test ? new TestEntrypoint(wrapper) : wrapper;
+  }
+
+  /**
+   * The wrapper's entry point for contract tests, which takes the credentials from the event.
+   */
+  private static final class TestEntrypoint implements RequestStreamHandler {
+
+    private final HandlerWrapper wrapper;
+
+    private TestEntrypoint(HandlerWrapper wrapper) {
+      this.wrapper = wrapper;
+    }
+
+    @Override
+    public void handleRequest(InputStream in, OutputStream out, Context context)
+        throws IOException {
+      wrapper.testEntrypoint(in, out, context);
+    }
+  }
+
+  private static void post(String url, byte[] body) throws IOException {
+    val connection = (HttpURLConnection) new URL(url).openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    connection.setFixedLengthStreamingMode(body.length);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(body);
+    }
+    // Reading the status completes the exchange and frees the connection for the next one
+    connection.getResponseCode();
+    read(connection.getInputStream());
+  }
+
+  private static byte[] read(InputStream in) throws IOException {
+    try (InputStream input = in) {
+      val out = new ByteArrayOutputStream();
+      val buffer = new byte[8192];
+      int count;
+      while ((count = input.read(buffer)) > 0) {
+        out.write(buffer, 0, count);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  private static byte[] error(Throwable ex) {
+    return new JSONObject()
+        .put("errorMessage", String.valueOf(ex.getMessage()))
+        .put("errorType", ex.getClass().getName())
+        .toString()
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * The Lambda context of one invocation, from the headers of the runtime API.
+   */
+  private static final class RuntimeContext implements Context {
+
+    private final String requestId;
+    private final String functionArn;
+    private final long deadlineMillis; // 0 for no deadline
+    private final LambdaLogger logger;
+
+    private RuntimeContext(String requestId, String functionArn, long deadlineMillis,
+        PrintStream stream) {
+      this.requestId = requestId;
+      this.functionArn = functionArn;
+      this.deadlineMillis = deadlineMillis;
+      logger = new LambdaLogger() {
+        @Override
+        public void log(String message) {
+          stream.println(message);
+        }
+
+        @Override
+        public void log(byte[] message) {
+          log(new String(message, StandardCharsets.UTF_8));
+        }
+      };
+    }
+
+    @Override
+    public String getAwsRequestId() {
+      return requestId;
+    }
+
+    @Override
+    public String getLogGroupName() {
+      return System.getenv("AWS_LAMBDA_LOG_GROUP_NAME");
+    }
+
+    @Override
+    public String getLogStreamName() {
+      return System.getenv("AWS_LAMBDA_LOG_STREAM_NAME");
+    }
+
+    @Override
+    public String getFunctionName() {
+      return System.getenv("AWS_LAMBDA_FUNCTION_NAME");
+    }
+
+    @Override
+    public String getFunctionVersion() {
+      return System.getenv("AWS_LAMBDA_FUNCTION_VERSION");
+    }
+
+    @Override
+    public String getInvokedFunctionArn() {
+      return functionArn;
+    }
+
+    @Override
+    public CognitoIdentity getIdentity() {
+      return null;
+    }
+
+    @Override
+    public ClientContext getClientContext() {
+      return null;
+    }
+
+    @Override
+    public int getRemainingTimeInMillis() {
+      if (deadlineMillis == 0) {
+        return Integer.MAX_VALUE;
+      }
+      return (int) Math.max(0, deadlineMillis - System.currentTimeMillis());
+    }
+
+    @Override
+    public int getMemoryLimitInMB() {
+      val memory = System.getenv("AWS_LAMBDA_FUNCTION_MEMORY_SIZE");
+      return memory == null ? 0 : Integer.parseInt(memory);
+    }
+
+    @Override
+    public LambdaLogger getLogger() {
+      return logger;
+    }
+  }
+}
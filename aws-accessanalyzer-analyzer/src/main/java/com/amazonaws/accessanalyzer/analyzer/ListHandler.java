@@ -1,12 +1,11 @@
 package com.amazonaws.accessanalyzer.analyzer;
 
 import com.google.common.annotations.VisibleForTesting;
-import java.util.Collections;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
 import lombok.val;
 import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
 import software.amazon.awssdk.services.accessanalyzer.model.ListAnalyzersRequest;
+import software.amazon.cloudformation.Action;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
@@ -18,13 +17,17 @@ public class ListHandler extends BaseHandler<CallbackContext> {
 
   private static final int MAX_RESULTS = 100;
 
+  static {
+    SerializerWarmUp.ensure(Settings.current());
+  }
+
   @Override
   public ProgressEvent<ResourceModel, CallbackContext> handleRequest(
       AmazonWebServicesClientProxy proxy, ResourceHandlerRequest<ResourceModel> request,
       CallbackContext callbackContext, Logger logger) {
-    try (val client = ClientBuilder.getClient()) {
-      return handleRequestWithClient(client, proxy, request, callbackContext, logger);
-    }
+    val handlerLogger = HandlerLogger.forInvocation(logger, Action.LIST, Settings.current());
+    return ClientBuilder.withSharedClient(handlerLogger,
+        client -> handleRequestWithClient(client, proxy, request, callbackContext, handlerLogger));
   }
 
   @SuppressWarnings("WeakerAccess")
@@ -38,17 +41,21 @@ public class ListHandler extends BaseHandler<CallbackContext> {
         .nextToken(request.getNextToken())
         .build();
     try {
-      val result = proxy
-          .injectCredentialsAndInvokeIterableV2(listRequest, client::listAnalyzersPaginator);
-      val analyzers = result.stream().flatMap(v -> v.analyzers().stream())
-          .collect(Collectors.toList());
-      val models = Util.map(analyzers, Util::analyzerSummaryToModel);
+      // One page per call; CFN hands nextToken back to us for the next page
+      val result = proxy.injectCredentialsAndInvokeV2(listRequest, client::listAnalyzers);
+      val analyzers = result.analyzers();
+      val models = new ArrayList<ResourceModel>(analyzers.size());
+      for (val analyzer : analyzers) {
+        models.add(Util.analyzerSummaryToModel(analyzer));
+      }
       return ProgressEvent.<ResourceModel, CallbackContext>builder()
           .resourceModels(models)
+          .nextToken(result.nextToken())
           .status(OperationStatus.SUCCESS)
           .build();
     } catch (Exception ex) {
-      logger.log(String.format("%s List failed", ResourceModel.TYPE_NAME));
+      HandlerLogger.of(logger)
+          .error(() -> String.format("%s List failed", ResourceModel.TYPE_NAME));
       return ProgressEvent.defaultFailureHandler(ex, HandlerErrorCode.ServiceInternalError);
     }
     // TODO: Handle more exceptions
@@ -0,0 +1,102 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * Works out which tags and archive rules change between two models.  Both diffs index the old
+ * model by tag key or rule name, so they are linear in the number of tags and rules.  Results
+ * keep the order of the model they came from.
+ */
+class ModelDiff {
+
+  private ModelDiff() {
+  }
+
+  @Value
+  static class TagChanges {
+
+    List<String> keysToRemove;
+    List<Tag> tagsToAdd;
+
+    boolean isEmpty() {
+      return keysToRemove.isEmpty() && tagsToAdd.isEmpty();
+    }
+  }
+
+  @Value
+  static class RuleChanges {
+
+    List<String> namesToRemove;
+    List<ArchiveRule> rulesToAdd;
+    List<ArchiveRule> rulesToUpdate;
+
+    boolean isEmpty() {
+      return namesToRemove.isEmpty() && rulesToAdd.isEmpty() && rulesToUpdate.isEmpty();
+    }
+  }
+
+  /**
+   * New or changed tags are added, which overwrites the old value of a changed tag.  Tags whose
+   * key is gone are removed.
+   */
+  static TagChanges diffTags(Collection<Tag> oldTags, Collection<Tag> newTags) {
+    val oldValues = Maps.<String, String>newHashMapWithExpectedSize(oldTags.size());
+    for (val tag : oldTags) {
+      oldValues.put(tag.getKey(), tag.getValue());
+    }
+    val newKeys = Sets.<String>newHashSetWithExpectedSize(newTags.size());
+    val tagsToAdd = new ArrayList<Tag>();
+    for (val tag : newTags) {
+      newKeys.add(tag.getKey());
+      if (!oldValues.containsKey(tag.getKey())
+          || !Objects.equals(oldValues.get(tag.getKey()), tag.getValue())) {
+        tagsToAdd.add(tag);
+      }
+    }
+    val keysToRemove = Sets.<String>newLinkedHashSetWithExpectedSize(oldTags.size());
+    for (val tag : oldTags) {
+      if (!newKeys.contains(tag.getKey())) {
+        keysToRemove.add(tag.getKey());
+      }
+    }
+    return new TagChanges(new ArrayList<>(keysToRemove), tagsToAdd);
+  }
+
+  /**
+   * Rules are matched by name.  A rule is updated when its old and new versions differ in more
+   * than the order of their filters and values, see {@link CanonicalRules}.
+   */
+  static RuleChanges diffRules(Collection<ArchiveRule> oldRules,
+      Collection<ArchiveRule> newRules) {
+    val oldByName = Maps.<String, ArchiveRule>newHashMapWithExpectedSize(oldRules.size());
+    for (val rule : oldRules) {
+      oldByName.put(Util.ruleName(rule), rule);
+    }
+    val newNames = Sets.<String>newHashSetWithExpectedSize(newRules.size());
+    val rulesToAdd = new ArrayList<ArchiveRule>();
+    val rulesToUpdate = new ArrayList<ArchiveRule>();
+    for (val rule : newRules) {
+      val name = Util.ruleName(rule);
+      newNames.add(name);
+      if (!oldByName.containsKey(name)) {
+        rulesToAdd.add(rule);
+      } else if (!CanonicalRules.equivalent(rule, oldByName.get(name))) {
+        rulesToUpdate.add(rule);
+      }
+    }
+    val namesToRemove = Sets.<String>newLinkedHashSetWithExpectedSize(oldRules.size());
+    for (val rule : oldRules) {
+      if (!newNames.contains(Util.ruleName(rule))) {
+        namesToRemove.add(Util.ruleName(rule));
+      }
+    }
+    return new RuleChanges(new ArrayList<>(namesToRemove), rulesToAdd, rulesToUpdate);
+  }
+}
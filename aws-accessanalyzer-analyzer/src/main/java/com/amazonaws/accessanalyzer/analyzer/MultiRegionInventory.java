@@ -0,0 +1,161 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.Value;
+import lombok.val;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.Credentials;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
+import software.amazon.cloudformation.proxy.Logger;
+import software.amazon.cloudformation.proxy.LoggerProxy;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+/**
+ * Lists the analyzers of several regions in parallel by paging through {@link ListHandler} once
+ * per region.  A region that fails is reported, and the others are still listed.
+ *
+ * <p>CloudFormation lists one region at a time, so no handler uses this.  {@link #main} runs it
+ * from the jar:
+ *
+ * <pre>
+ * java -cp target/aws-accessanalyzer-analyzer-handler-1.0-SNAPSHOT.jar \
+ *     com.amazonaws.accessanalyzer.analyzer.MultiRegionInventory us-east-1 eu-west-1
+ * </pre>
+ */
+class MultiRegionInventory {
+
+  @Value
+  static class RegionalModel {
+
+    String region;
+    ResourceModel model;
+  }
+
+  @Value
+  static class RegionReport {
+
+    String region;
+    long latencyMillis;
+    int analyzers;
+    HandlerErrorCode errorCode; // Null if the region was listed
+    String message;
+
+    boolean isSuccess() {
+      return errorCode == null;
+    }
+  }
+
+  // Each region leases its client for as long as it pages, so the pool can't close it meanwhile
+  private final RegionalClientPool clients;
+  private final List<String> regions;
+
+  MultiRegionInventory(RegionalClientPool clients, List<String> regions) {
+    this.clients = clients;
+    this.regions = regions;
+  }
+
+  /**
+   * Prints the ARN of every analyzer in the regions of {@code args}, or of
+   * {@link Settings#getInventoryRegions()} if there are none, then a line per region.  It uses
+   * the default credentials, which must be temporary ones: the proxy signs with a session token.
+   * Exits with 1 if a region failed.
+   */
+  public static void main(String[] args) {
+    val settings = Settings.current();
+    val regions = args.length > 0 ? Arrays.asList(args) : settings.getInventoryRegions();
+    if (regions.isEmpty()) {
+      throw new IllegalArgumentException("Name the regions to list, or set "
+          + Settings.INVENTORY_REGIONS_ENV);
+    }
+    val credentials = DefaultCredentialsProvider.create().resolveCredentials();
+    if (!(credentials instanceof AwsSessionCredentials)) {
+      throw new IllegalStateException("Needs temporary credentials, e.g. from a role or SSO");
+    }
+    val proxy = new AmazonWebServicesClientProxy(new LoggerProxy(),
+        new Credentials(credentials.accessKeyId(), credentials.secretAccessKey(),
+            ((AwsSessionCredentials) credentials).sessionToken()),
+        () -> TimeUnit.MINUTES.toMillis(15));
+    Logger logger = System.err::println;
+    val inventory = new MultiRegionInventory(RegionalClientPool.global(), regions);
+    List<RegionReport> reports = inventory.list(proxy, logger,
+        analyzer -> System.out.println(analyzer.getModel().getArn()));
+    boolean failed = false;
+    for (val report : reports) {
+      System.out.printf("%s: %s, %d analyzers in %d ms%n", report.getRegion(),
+          report.isSuccess() ? "listed" : report.getErrorCode() + " " + report.getMessage(),
+          report.getAnalyzers(), report.getLatencyMillis());
+      failed |= !report.isSuccess();
+    }
+    if (failed) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Hands each analyzer to {@code sink} as soon as its page arrives.  Calls to {@code sink} are
+   * serialized, so it does not need to be thread safe.
+   *
+   * @return one report per region, in the order the regions were configured
+   */
+  List<RegionReport> list(AmazonWebServicesClientProxy proxy, Logger logger,
+      Consumer<RegionalModel> sink) {
+    val reports = new RegionReport[regions.size()];
+    val executor = BoundedExecutor.withConcurrency(regions.size());
+    for (int i = 0; i < regions.size(); i++) {
+      val index = i;
+      executor.submit(() -> reports[index] = listRegion(regions.get(index), proxy, logger, sink));
+    }
+    executor.awaitAll();
+    return new ArrayList<>(Arrays.asList(reports));
+  }
+
+  private RegionReport listRegion(String region, AmazonWebServicesClientProxy proxy,
+      Logger logger, Consumer<RegionalModel> sink) {
+    val start = System.nanoTime();
+    int count = 0;
+    try (RegionalClientPool.Lease lease = clients.lease(region)) {
+      val client = lease.client();
+      String nextToken = null;
+      do {
+        val request = ResourceHandlerRequest.<ResourceModel>builder()
+            .desiredResourceState(ResourceModel.builder().build())
+            .nextToken(nextToken)
+            .build();
+        val page = ListHandler.handleRequestWithClient(client, proxy, request, null, logger);
+        if (page.getStatus() != OperationStatus.SUCCESS) {
+          return report(region, start, count, page.getErrorCode(), page.getMessage(), logger);
+        }
+        for (val model : page.getResourceModels()) {
+          synchronized (sink) {
+            sink.accept(new RegionalModel(region, model));
+          }
+          count++;
+        }
+        nextToken = page.getNextToken();
+      } while (nextToken != null);
+    } catch (RuntimeException ex) {
+      return report(region, start, count, HandlerErrorCode.InternalFailure, ex.toString(), logger);
+    }
+    return report(region, start, count, null, null, logger);
+  }
+
+  private static RegionReport report(String region, long start, int count,
+      HandlerErrorCode errorCode, String message, Logger logger) {
+    val latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    if (errorCode == null) {
+      logger.log(String.format("%s inventory of %s: %d analyzers in %d ms",
+          ResourceModel.TYPE_NAME, region, count, latency));
+    } else {
+      logger.log(String.format("%s inventory of %s failed after %d ms: %s %s",
+          ResourceModel.TYPE_NAME, region, latency, errorCode, message));
+    }
+    return new RegionReport(region, latency, count, errorCode, message);
+  }
+}
@@ -2,7 +2,10 @@ package com.amazonaws.accessanalyzer.analyzer;
 
 import com.google.common.annotations.VisibleForTesting;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.val;
 import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
 import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerRequest;
@@ -10,6 +13,7 @@ import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerResponse;
 import software.amazon.awssdk.services.accessanalyzer.model.ListArchiveRulesRequest;
 import software.amazon.awssdk.services.accessanalyzer.model.ListArchiveRulesResponse;
 import software.amazon.awssdk.services.accessanalyzer.model.ResourceNotFoundException;
+import software.amazon.cloudformation.Action;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
@@ -21,54 +25,98 @@ public class ReadHandler extends BaseHandler<CallbackContext> {
   @VisibleForTesting
   static String NO_ANALYZER_MESSAGE_PREFIX = "No analyzer named ";
 
+  static {
+    SerializerWarmUp.ensure(Settings.current());
+  }
+
   @Override
   public ProgressEvent<ResourceModel, CallbackContext> handleRequest(
       AmazonWebServicesClientProxy proxy, ResourceHandlerRequest<ResourceModel> request,
       CallbackContext callbackContext, Logger logger) {
-    try (val client = ClientBuilder.getClient()) {
-      return handleRequestWithClient(client, proxy, request, callbackContext, logger);
-    }
+    val handlerLogger = HandlerLogger.forInvocation(logger, Action.READ, Settings.current());
+    return ClientBuilder.withSharedClient(handlerLogger,
+        client -> handleRequestWithClient(client, proxy, request, callbackContext, handlerLogger));
+  }
+
+  @SuppressWarnings("WeakerAccess")
+  @VisibleForTesting
+  static ProgressEvent<ResourceModel, CallbackContext> handleRequestWithClient(
+      AccessAnalyzerClient client, AmazonWebServicesClientProxy proxy,
+      ResourceHandlerRequest<ResourceModel> request,
+      CallbackContext callbackContext, Logger logger) {
+    return handleRequestWithClient(client, proxy, request, callbackContext, logger,
+        Settings.current());
   }
 
-  @SuppressWarnings({"DuplicatedCode", "WeakerAccess"})
+  @SuppressWarnings("DuplicatedCode")
   @VisibleForTesting
   static ProgressEvent<ResourceModel, CallbackContext> handleRequestWithClient(
       AccessAnalyzerClient client, AmazonWebServicesClientProxy proxy,
       ResourceHandlerRequest<ResourceModel> request,
-      @SuppressWarnings("unused") CallbackContext callbackContext, Logger logger) {
+      @SuppressWarnings("unused") CallbackContext callbackContext, Logger logger,
+      Settings settings) {
+    val log = HandlerLogger.of(logger);
     val model = request.getDesiredResourceState();
     val arn = model.getArn();
     if (arn == null) {
-      logger.log("Impossible: Null arn in current state of analyzer");
+      log.error(() -> "Impossible: Null arn in current state of analyzer");
       return ProgressEvent
           .failed(request.getDesiredResourceState(), null, HandlerErrorCode.InternalFailure,
               "Internal error");
     }
+    val useCache = settings.getCachedActions().contains(Action.READ);
+    if (useCache) {
+      val cached = AnalyzerCache.global().get(arn);
+      if (cached != null) {
+        log.debug(() -> String.format("%s [%s] Read from cache", ResourceModel.TYPE_NAME,
+            cached.getAnalyzerName()));
+        return ProgressEvent.defaultSuccessHandler(cached);
+      }
+    }
     // CFN is inconsistent about returning the AnalyzerName used in the CREATE call
     val name = Optional.ofNullable(model.getAnalyzerName()).orElse(Util.arnToAnalyzerName(arn));
     val getAnalyzerRequest = GetAnalyzerRequest.builder().analyzerName(name).build();
+    val fingerprints = settings.isRulesFingerprint() ? RuleFingerprint.global() : null;
     GetAnalyzerResponse getAnalyzerResponse;
-    ListArchiveRulesRequest listArchiveRulesRequest = ListArchiveRulesRequest.builder()
-        .analyzerName(name).build();
-    val archiveRules = new ArrayList<ArchiveRule>();
+    List<ArchiveRule> archiveRules;
     try {
-      ListArchiveRulesResponse listArchiveRulesResponse;
-      getAnalyzerResponse = proxy
-          .injectCredentialsAndInvokeV2(getAnalyzerRequest, client::getAnalyzer);
-      do {
-        listArchiveRulesResponse = proxy
-            .injectCredentialsAndInvokeV2(listArchiveRulesRequest, client::listArchiveRules);
-        archiveRules.addAll(
-            Util.map(listArchiveRulesResponse.archiveRules(), Util::archiveRuleFromSummary));
-        listArchiveRulesRequest = ListArchiveRulesRequest.builder().analyzerName(name)
-            .nextToken(listArchiveRulesResponse.nextToken()).build();
-      } while (listArchiveRulesResponse.nextToken() != null);
+      if (fingerprints != null && fingerprints.hasSnapshot(arn)) {
+        // The fingerprint tag tells whether the rules we know are current, so GetAnalyzer goes
+        // first and ListArchiveRules only runs if they aren't
+        getAnalyzerResponse = proxy
+            .injectCredentialsAndInvokeV2(getAnalyzerRequest, client::getAnalyzer);
+        archiveRules = fingerprints.rules(arn, getAnalyzerResponse.analyzer().tags());
+        if (archiveRules == null) {
+          archiveRules = listArchiveRules(client, proxy, name);
+          fingerprints
+              .rememberIfCurrent(arn, getAnalyzerResponse.analyzer().tags(), archiveRules);
+        } else {
+          log.debug(() -> String.format("%s [%s] Archive rules match their fingerprint",
+              ResourceModel.TYPE_NAME, name));
+        }
+      } else {
+        // GetAnalyzer runs while this thread pages through the archive rules
+        CompletableFuture<GetAnalyzerResponse> getAnalyzerFuture = BoundedExecutor.supplyAsync(
+            () -> proxy.injectCredentialsAndInvokeV2(getAnalyzerRequest, client::getAnalyzer));
+        try {
+          archiveRules = listArchiveRules(client, proxy, name);
+        } catch (RuntimeException ex) {
+          throw preferNotFound(getAnalyzerFuture, ex);
+        }
+        getAnalyzerResponse = BoundedExecutor.join(getAnalyzerFuture);
+        if (fingerprints != null) {
+          fingerprints
+              .rememberIfCurrent(arn, getAnalyzerResponse.analyzer().tags(), archiveRules);
+        }
+      }
     } catch (ResourceNotFoundException ex) {
+      AnalyzerCache.global().invalidate(arn);
+      RuleFingerprint.global().forget(arn);
       val msg = NO_ANALYZER_MESSAGE_PREFIX + name;
-      logger.log(msg);
+      log.info(() -> msg);
       return ProgressEvent.failed(model, null, HandlerErrorCode.NotFound, msg);
     } catch (Exception ex) {
-      logger.log(String.format("%s [%s] Get analyzer failed", ResourceModel.TYPE_NAME, name));
+      log.error(() -> String.format("%s [%s] Get analyzer failed", ResourceModel.TYPE_NAME, name));
       return ProgressEvent.defaultFailureHandler(ex, HandlerErrorCode.ServiceInternalError);
     }
     // TODO: Handle more errors
@@ -78,9 +126,52 @@ public class ReadHandler extends BaseHandler<CallbackContext> {
         .analyzerName(name)
         .type(summary.typeAsString())
         .arn(summary.arn())
-        .tags(Util.mapToTags(summary.tags()))
+        .tags(Util.analyzerTags(summary.tags()))
         .archiveRules(archiveRules)
         .build();
+    if (useCache) {
+      AnalyzerCache.global().put(resultModel);
+    }
     return ProgressEvent.defaultSuccessHandler(resultModel);
   }
+
+  static List<ArchiveRule> listArchiveRules(AccessAnalyzerClient client,
+      AmazonWebServicesClientProxy proxy, String name) {
+    return listArchiveRules(client, proxy, name, new AtomicInteger());
+  }
+
+  /**
+   * All archive rules of analyzer {@code name}, in canonical form.  Counts the pages in
+   * {@code pages}.
+   */
+  static List<ArchiveRule> listArchiveRules(AccessAnalyzerClient client,
+      AmazonWebServicesClientProxy proxy, String name, AtomicInteger pages) {
+    val archiveRules = new ArrayList<ArchiveRule>();
+    ListArchiveRulesRequest listArchiveRulesRequest = ListArchiveRulesRequest.builder()
+        .analyzerName(name).build();
+    ListArchiveRulesResponse listArchiveRulesResponse;
+    do {
+      listArchiveRulesResponse = proxy
+          .injectCredentialsAndInvokeV2(listArchiveRulesRequest, client::listArchiveRules);
+      pages.incrementAndGet();
+      archiveRules.addAll(
+          Util.archiveRulesFromSummaries(listArchiveRulesResponse.archiveRules()));
+      listArchiveRulesRequest = ListArchiveRulesRequest.builder().analyzerName(name)
+          .nextToken(listArchiveRulesResponse.nextToken()).build();
+    } while (listArchiveRulesResponse.nextToken() != null);
+    return CanonicalRules.sortByName(archiveRules);
+  }
+
+  // A missing analyzer explains any ListArchiveRules failure, so report that instead
+  static RuntimeException preferNotFound(
+      CompletableFuture<GetAnalyzerResponse> getAnalyzer, RuntimeException listFailure) {
+    try {
+      BoundedExecutor.join(getAnalyzer);
+    } catch (ResourceNotFoundException ex) {
+      return ex;
+    } catch (RuntimeException ex) {
+      // Report the ListArchiveRules failure
+    }
+    return listFailure;
+  }
 }
@@ -0,0 +1,201 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import lombok.Value;
+import lombok.val;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClientBuilder;
+
+/**
+ * AccessAnalyzer clients keyed by region and endpoint, for work that spans many regions in one
+ * process.  A client is used through a {@link Lease}, and the pool keeps at most {@code maxSize}
+ * of them: the least recently used one is dropped to make room, but only closed once its last
+ * lease is released, so a region that is still paging through results keeps its client.  While
+ * more regions than that are leased at once, the pool holds more open clients than
+ * {@code maxSize}.
+ */
+class RegionalClientPool implements AutoCloseable {
+
+  @Value
+  static class Key {
+
+    String region;
+    URI endpoint; // Null for the regional endpoint
+  }
+
+  @Value
+  static class Stats {
+
+    long hits;
+    long misses;
+    long evictions;
+    int size;
+  }
+
+  /**
+   * A client taken from the pool.  Closing the lease gives the client back; the pool closes it.
+   */
+  final class Lease implements AutoCloseable {
+
+    private final Entry entry;
+    private boolean released;
+
+    private Lease(Entry entry) {
+      this.entry = entry;
+    }
+
+    AccessAnalyzerClient client() {
+      return entry.client;
+    }
+
+    @Override
+    public void close() {
+      boolean closing;
+      synchronized (RegionalClientPool.this) {
+        if (released) {
+          return;
+        }
+        released = true;
+        closing = --entry.leases == 0 && entry.evicted;
+      }
+      if (closing) {
+        entry.client.close();
+      }
+    }
+  }
+
+  // Guarded by the pool
+  private static final class Entry {
+
+    private final AccessAnalyzerClient client;
+    private int leases;
+    private boolean evicted;
+
+    Entry(AccessAnalyzerClient client) {
+      this.client = client;
+    }
+  }
+
+  private static class GlobalHolder {
+
+    private static final RegionalClientPool GLOBAL = fromSettings(Settings.current());
+  }
+
+  private final int maxSize;
+  private final Function<Key, AccessAnalyzerClient> factory;
+  private final LinkedHashMap<Key, Entry> clients;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  RegionalClientPool(int maxSize, Function<Key, AccessAnalyzerClient> factory) {
+    this.maxSize = maxSize;
+    this.factory = factory;
+    this.clients = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+        if (size() > RegionalClientPool.this.maxSize) {
+          evictions++;
+          val entry = eldest.getValue();
+          entry.evicted = true;
+          if (entry.leases == 0) {
+            entry.client.close();
+          }
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  static RegionalClientPool fromSettings(Settings settings) {
+    Function<Key, AccessAnalyzerClient> factory = key -> {
+      AccessAnalyzerClientBuilder builder = ClientBuilder.builder(settings)
+          .region(Region.of(key.getRegion()));
+      if (key.getEndpoint() != null) {
+        builder.endpointOverride(key.getEndpoint());
+      }
+      return builder.build();
+    };
+    return new RegionalClientPool(settings.getClientPoolSize(), factory);
+  }
+
+  /**
+   * The pool shared by this container, sized from {@link Settings#current()}.
+   */
+  static RegionalClientPool global() {
+    return GlobalHolder.GLOBAL;
+  }
+
+  /**
+   * The client for {@code region} at the endpoint from the settings, until the lease is closed.
+   */
+  Lease lease(String region) {
+    return lease(region, null);
+  }
+
+  Lease lease(String region, URI endpoint) {
+    val key = new Key(region, endpoint);
+    synchronized (this) {
+      val entry = clients.get(key);
+      if (entry != null) {
+        hits++;
+        return take(entry);
+      }
+      misses++;
+    }
+    // Building a client takes a while, so other regions aren't held up meanwhile
+    val built = new Entry(factory.apply(key));
+    Lease lease;
+    synchronized (this) {
+      val raced = clients.get(key);
+      if (raced == null) {
+        // Leased before it goes in, so putting it can't evict it
+        lease = take(built);
+        clients.put(key, built);
+        return lease;
+      }
+      lease = take(raced);
+    }
+    built.client.close();
+    return lease;
+  }
+
+  // Called with the pool locked
+  private Lease take(Entry entry) {
+    entry.leases++;
+    return new Lease(entry);
+  }
+
+  synchronized Stats stats() {
+    return new Stats(hits, misses, evictions, clients.size());
+  }
+
+  /**
+   * Closes every pooled client, or for a leased one, leaves it to the last lease to close.  The
+   * pool can still be used afterwards.
+   */
+  @Override
+  public void close() {
+    val closing = new ArrayList<AccessAnalyzerClient>();
+    synchronized (this) {
+      for (val entry : clients.values()) {
+        entry.evicted = true;
+        if (entry.leases == 0) {
+          closing.add(entry.client);
+        }
+      }
+      clients.clear();
+    }
+    for (val client : closing) {
+      client.close();
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * A SHA-256 of an analyzer's archive rules, stored in the reserved {@link #TAG_KEY} tag by Create
+ * and Update.  Read gets the tag from GetAnalyzer anyway, so when it matches the rules this
+ * container last wrote or listed for the analyzer, Read returns those and skips
+ * ListArchiveRules.
+ *
+ * <p>Update removes the tag before it changes the first rule and tags the new fingerprint once
+ * every rule is in, so a snapshot of the old rules stops matching as soon as they start to
+ * change.  The tag only changes when the rules are changed through CloudFormation.  Rules changed in
+ * the console or the API keep the old tag, so Read doesn't see that drift until the container
+ * forgets its snapshot.
+ */
+class RuleFingerprint {
+
+  static final String TAG_KEY = "accessanalyzer-cfn:archive-rules-sha256";
+
+  // TagResource rejects more tags than this, so the fingerprint needs a free slot
+  static final int MAX_TAGS = 50;
+
+  private static final long SNAPSHOT_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+  // A container serves the few analyzers of one account and region, and each snapshot holds a
+  // whole rule list, so this doesn't follow the analyzer cache's size
+  private static final int MAX_SNAPSHOTS = 64;
+
+  @Value
+  private static class Snapshot {
+
+    String fingerprint;
+    List<ArchiveRule> rules;
+  }
+
+  private static class GlobalHolder {
+
+    private static final RuleFingerprint GLOBAL = new RuleFingerprint(
+        new BoundedTtlCache<>(MAX_SNAPSHOTS, SNAPSHOT_TTL_MILLIS));
+  }
+
+  private final BoundedTtlCache<String, Snapshot> snapshots;
+
+  private RuleFingerprint(BoundedTtlCache<String, Snapshot> snapshots) {
+    this.snapshots = snapshots;
+  }
+
+  /**
+   * The snapshots the handlers share.
+   */
+  static RuleFingerprint global() {
+    return GlobalHolder.GLOBAL;
+  }
+
+  /**
+   * Hex SHA-256 of the {@link CanonicalRules canonical} form of the rules.
+   */
+  static String of(Collection<ArchiveRule> rules) {
+    val canonical = new StringBuilder();
+    for (val rule : CanonicalRules.canonical(rules)) {
+      append(canonical, Util.ruleName(rule));
+      canonical.append(rule.getFilter().size()).append('[');
+      for (val filter : rule.getFilter()) {
+        append(canonical, filter.getProperty());
+        appendValues(canonical, filter.getEq());
+        appendValues(canonical, filter.getNeq());
+        appendValues(canonical, filter.getContains());
+        canonical.append(filter.getExists()).append(';');
+      }
+      canonical.append(']');
+    }
+    return sha256(canonical.toString());
+  }
+
+  /**
+   * True if the fingerprint tag fits next to {@code userTags} user tags.
+   */
+  static boolean fits(int userTags) {
+    return userTags < MAX_TAGS;
+  }
+
+  void remember(String arn, String fingerprint, Collection<ArchiveRule> rules) {
+    snapshots.put(arn, new Snapshot(fingerprint, CanonicalRules.canonical(rules)));
+  }
+
+  /**
+   * Remembers {@code rules} as listed by Read if they are the ones the analyzer's fingerprint
+   * tag describes.
+   */
+  void rememberIfCurrent(String arn, Map<String, String> tags, Collection<ArchiveRule> rules) {
+    val tagged = tags == null ? null : tags.get(TAG_KEY);
+    if (tagged == null) {
+      return;
+    }
+    val fingerprint = of(rules);
+    if (fingerprint.equals(tagged)) {
+      remember(arn, fingerprint, rules);
+    }
+  }
+
+  boolean hasSnapshot(String arn) {
+    return snapshots.get(arn) != null;
+  }
+
+  /**
+   * A copy of the remembered rules of {@code arn} if they match its fingerprint tag, else null.
+   */
+  List<ArchiveRule> rules(String arn, Map<String, String> tags) {
+    val snapshot = snapshots.get(arn);
+    if (snapshot == null || tags == null
+        || !snapshot.getFingerprint().equals(tags.get(TAG_KEY))) {
+      return null;
+    }
+    return new ArrayList<>(snapshot.getRules());
+  }
+
+  void forget(String arn) {
+    snapshots.invalidate(arn);
+  }
+
+  private static void appendValues(StringBuilder canonical, List<String> values) {
+    if (values == null) {
+      canonical.append("0(");
+    } else {
+      canonical.append(values.size()).append('(');
+      for (val value : values) {
+        append(canonical, value);
+      }
+    }
+    canonical.append(')');
+  }
+
+  // Length-prefixed, so no choice of names or values makes two rule sets look alike
+  private static void append(StringBuilder canonical, String value) {
+    if (value == null) {
+      canonical.append("-1:");
+    } else {
+      canonical.append(value.length()).append(':').append(value);
+    }
+  }
+
+  private static String sha256(String value) {
+    try {
+      val digest = MessageDigest.getInstance("SHA-256")
+          .digest(value.getBytes(StandardCharsets.UTF_8));
+      val hex = new StringBuilder(digest.length * 2);
+      for (val b : digest) {
+        hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException("Every JVM has SHA-256", ex);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.val;
+import software.amazon.cloudformation.Action;
+import software.amazon.cloudformation.proxy.HandlerRequest;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.cloudformation.proxy.RequestData;
+import software.amazon.cloudformation.resource.Serializer;
+
+/**
+ * Runs one request and one response for this resource type through the wrapper's
+ * {@link Serializer} while the wrapper builds its handlers, before the first invocation.
+ * Jackson introspects {@link ResourceModel}, {@link ArchiveRule}, {@link Filter} and {@link Tag}
+ * by reflection the first time it meets them and caches what it found, so this moves that cost
+ * and the class loading that comes with it from the first request to container initialization.
+ *
+ * <p>The wrapper is generated and owns its serializer, so this warms it up rather than replacing
+ * it.  {@code SerializationBenchmark} and {@code SerializationColdStartBenchmark} measure both
+ * paths.
+ */
+class SerializerWarmUp {
+
+  // What the wrapper deserializes every request into
+  static final TypeReference<HandlerRequest<ResourceModel, CallbackContext>> REQUEST_TYPE =
+      new TypeReference<HandlerRequest<ResourceModel, CallbackContext>>() {
+      };
+
+  private static final AtomicBoolean DONE = new AtomicBoolean();
+
+  private SerializerWarmUp() {
+  }
+
+  /**
+   * Warms up the serializer once per container unless {@link Settings#isSerializerWarmUp()} is
+   * off.  True if this call did it.
+   */
+  static boolean ensure(Settings settings) {
+    if (!settings.isSerializerWarmUp() || !DONE.compareAndSet(false, true)) {
+      return false;
+    }
+    try {
+      roundTrip(new Serializer(), sampleModel());
+    } catch (IOException | RuntimeException ex) {
+      // Only ever a lost optimization: the first request pays for the introspection instead
+    }
+    return true;
+  }
+
+  /**
+   * Serializes a request for {@code model} the way CloudFormation sends it, deserializes it as
+   * the wrapper does, and serializes a response with the result.
+   */
+  static ResourceModel roundTrip(Serializer serializer, ResourceModel model) throws IOException {
+    HandlerRequest<ResourceModel, CallbackContext> parsed =
+        serializer.deserialize(serializer.serialize(request(model)), REQUEST_TYPE);
+    val desired = parsed.getRequestData().getResourceProperties();
+    serializer.serialize(ProgressEvent.<ResourceModel, CallbackContext>defaultSuccessHandler(
+        desired));
+    return desired;
+  }
+
+  /**
+   * An UPDATE request from {@code model} to itself.
+   */
+  static HandlerRequest<ResourceModel, CallbackContext> request(ResourceModel model) {
+    val requestData = new RequestData<ResourceModel>();
+    requestData.setLogicalResourceId("WarmUp");
+    requestData.setResourceProperties(model);
+    requestData.setPreviousResourceProperties(model);
+    val request = new HandlerRequest<ResourceModel, CallbackContext>();
+    request.setAction(Action.UPDATE);
+    request.setRequestData(requestData);
+    return request;
+  }
+
+  /**
+   * A small model that still reaches every property of every model class.
+   */
+  static ResourceModel sampleModel() {
+    return ResourceModel.builder()
+        .analyzerName("WarmUp")
+        .arn("arn:aws:access-analyzer:us-east-1:111111111111:analyzer/WarmUp")
+        .type("ACCOUNT")
+        .tags(ImmutableSet.of(Tag.builder().key("key").value("value").build()))
+        .archiveRules(ImmutableList.of(ArchiveRule.builder()
+            .ruleName("WarmUp")
+            .filter(ImmutableList.of(
+                Filter.builder().property("resourceType").eq(ImmutableList.of("a")).build(),
+                Filter.builder().property("resource").neq(ImmutableList.of("b")).build(),
+                Filter.builder().property("principal.AWS").contains(ImmutableList.of("c"))
+                    .build(),
+                Filter.builder().property("condition.aws:PrincipalArn").exists(true).build()))
+            .build()))
+        .build();
+  }
+}
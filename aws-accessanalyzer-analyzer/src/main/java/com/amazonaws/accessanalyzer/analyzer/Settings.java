@@ -0,0 +1,319 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.Builder;
+import lombok.Value;
+import software.amazon.cloudformation.Action;
+
+/**
+ * Tunables for the handlers.  They are read once per container from the environment of the
+ * handler function; tests build their own with {@link #builder()}.
+ */
+@Value
+@Builder(toBuilder = true)
+class Settings {
+
+  static final String UPDATE_CONCURRENCY_ENV = "ACCESS_ANALYZER_UPDATE_CONCURRENCY";
+  static final String INVENTORY_REGIONS_ENV = "ACCESS_ANALYZER_INVENTORY_REGIONS";
+  static final String ENDPOINT_ENV = "ACCESS_ANALYZER_ENDPOINT";
+  static final String RETRY_MODE_ENV = "ACCESS_ANALYZER_RETRY_MODE";
+  static final String CALLBACK_RETRIES_ENV = "ACCESS_ANALYZER_CALLBACK_RETRIES";
+  static final String UPDATE_STEPS_ENV = "ACCESS_ANALYZER_UPDATE_STEPS_PER_INVOCATION";
+  static final String CACHED_ACTIONS_ENV = "ACCESS_ANALYZER_CACHE_ACTIONS";
+  static final String CACHE_TTL_ENV = "ACCESS_ANALYZER_CACHE_TTL_SECONDS";
+  static final String CACHE_SIZE_ENV = "ACCESS_ANALYZER_CACHE_SIZE";
+  static final String RULES_FINGERPRINT_ENV = "ACCESS_ANALYZER_RULES_FINGERPRINT";
+  static final String RECONCILE_UPDATES_ENV = "ACCESS_ANALYZER_RECONCILE_UPDATES";
+  static final String CLIENT_POOL_SIZE_ENV = "ACCESS_ANALYZER_CLIENT_POOL_SIZE";
+  static final String HTTP_CLIENT_ENV = "ACCESS_ANALYZER_HTTP_CLIENT";
+  static final String LOG_LEVEL_ENV = "ACCESS_ANALYZER_LOG_LEVEL";
+  static final String LOG_SAMPLES_ENV = "ACCESS_ANALYZER_LOG_SAMPLES";
+  static final String SERIALIZER_WARM_UP_ENV = "ACCESS_ANALYZER_SERIALIZER_WARM_UP";
+
+  enum RetryMode {
+    /**
+     * The SDK retries throttled and failed calls itself, sleeping inside the invocation.
+     */
+    SDK,
+    /**
+     * Create, Update and Delete hand throttled and failed calls back to CloudFormation as
+     * IN_PROGRESS with a callback delay of at least a minute, so the backoff is spent between
+     * invocations.  See {@link CallbackRetry}.
+     */
+    CALLBACK
+  }
+
+  /**
+   * The HTTP transport of the AccessAnalyzer clients.  See {@link HttpClients}.
+   */
+  enum HttpClientType {
+    /**
+     * The Apache client the wrapper already built for its own CloudWatch and CloudFormation calls.
+     */
+    WRAPPER,
+    /**
+     * A separate Apache client sized for {@link #updateConcurrency}, without the background
+     * thread that reaps idle connections.
+     */
+    APACHE,
+    /**
+     * The JDK's HttpURLConnection.  Fewer classes to load than Apache, but no connection pool of
+     * its own beyond the JDK's keep-alive cache.
+     */
+    URL_CONNECTION
+  }
+
+  /**
+   * The most API calls UpdateHandler makes at once.  1 keeps the calls sequential.
+   */
+  @Builder.Default
+  int updateConcurrency = 1;
+
+  /**
+   * The regions {@link MultiRegionInventory} lists, e.g. {@code us-east-1,eu-west-1}.
+   */
+  @Builder.Default
+  List<String> inventoryRegions = Collections.emptyList();
+
+  /**
+   * The most regional clients {@link RegionalClientPool} keeps open.
+   */
+  @Builder.Default
+  int clientPoolSize = 16;
+
+  /**
+   * Sends every AccessAnalyzer call here instead of to the regional endpoint, e.g. a local
+   * stand-in for performance runs.  Null uses the regional endpoint.
+   */
+  URI endpoint;
+
+  @Builder.Default
+  HttpClientType httpClient = HttpClientType.WRAPPER;
+
+  @Builder.Default
+  RetryMode retryMode = RetryMode.SDK;
+
+  /**
+   * How many times a handler comes back through a callback before the failure is reported.
+   */
+  @Builder.Default
+  int callbackRetries = 5;
+
+  /**
+   * The most tag and archive rule calls one UpdateHandler invocation makes.  A larger update
+   * returns IN_PROGRESS and carries on from where it stopped in a callback.
+   */
+  @Builder.Default
+  int updateStepsPerInvocation = 100;
+
+  /**
+   * The handlers that use {@link AnalyzerCache}: READ consults and fills it, CREATE and UPDATE
+   * fill it.  Empty turns the cache off.
+   */
+  @Builder.Default
+  Set<Action> cachedActions = Collections.emptySet();
+
+  @Builder.Default
+  int cacheTtlSeconds = 60;
+
+  /**
+   * The most analyzers {@link AnalyzerCache} holds, least recently used first out.
+   */
+  @Builder.Default
+  int cacheSize = 256;
+
+  /**
+   * Create and Update tag the analyzer with a hash of its archive rules, which lets Read skip
+   * ListArchiveRules.  See {@link RuleFingerprint}.
+   */
+  boolean rulesFingerprint;
+
+  /**
+   * UpdateHandler diffs the desired model against the live analyzer instead of the previous
+   * model, at the cost of reading the analyzer first.
+   */
+  boolean reconcileUpdates;
+
+  /**
+   * Messages below this level are only written if the invocation fails.  See
+   * {@link HandlerLogger}.
+   */
+  @Builder.Default
+  HandlerLogger.Level logLevel = HandlerLogger.Level.INFO;
+
+  /**
+   * How many messages of each per-item event, such as deleting an archive rule, the summary line
+   * of an invocation keeps.
+   */
+  @Builder.Default
+  int logSamplesPerEvent = 3;
+
+  /**
+   * The handlers run a sample request and response through the wrapper's serializer while the
+   * container starts.  See {@link SerializerWarmUp}.
+   */
+  @Builder.Default
+  boolean serializerWarmUp = true;
+
+  private static class EnvironmentHolder {
+
+    private static final Settings SETTINGS = fromEnvironment(System.getenv());
+  }
+
+  static Settings current() {
+    return EnvironmentHolder.SETTINGS;
+  }
+
+  static Settings fromEnvironment(Map<String, String> env) {
+    SettingsBuilder builder = Settings.builder();
+    Integer updateConcurrency = positiveInt(env.get(UPDATE_CONCURRENCY_ENV));
+    if (updateConcurrency != null) {
+      builder.updateConcurrency(updateConcurrency);
+    }
+    List<String> inventoryRegions = stringList(env.get(INVENTORY_REGIONS_ENV));
+    if (!inventoryRegions.isEmpty()) {
+      builder.inventoryRegions(inventoryRegions);
+    }
+    Integer clientPoolSize = positiveInt(env.get(CLIENT_POOL_SIZE_ENV));
+    if (clientPoolSize != null) {
+      builder.clientPoolSize(clientPoolSize);
+    }
+    builder.endpoint(absoluteUri(env.get(ENDPOINT_ENV)));
+    HttpClientType httpClient = httpClientType(env.get(HTTP_CLIENT_ENV));
+    if (httpClient != null) {
+      builder.httpClient(httpClient);
+    }
+    RetryMode retryMode = retryMode(env.get(RETRY_MODE_ENV));
+    if (retryMode != null) {
+      builder.retryMode(retryMode);
+    }
+    Integer callbackRetries = positiveInt(env.get(CALLBACK_RETRIES_ENV));
+    if (callbackRetries != null) {
+      builder.callbackRetries(callbackRetries);
+    }
+    Integer updateSteps = positiveInt(env.get(UPDATE_STEPS_ENV));
+    if (updateSteps != null) {
+      builder.updateStepsPerInvocation(updateSteps);
+    }
+    Set<Action> cachedActions = actions(env.get(CACHED_ACTIONS_ENV));
+    if (!cachedActions.isEmpty()) {
+      builder.cachedActions(cachedActions);
+    }
+    Integer cacheTtl = positiveInt(env.get(CACHE_TTL_ENV));
+    if (cacheTtl != null) {
+      builder.cacheTtlSeconds(cacheTtl);
+    }
+    builder.rulesFingerprint(Boolean.parseBoolean(env.get(RULES_FINGERPRINT_ENV)));
+    builder.reconcileUpdates(Boolean.parseBoolean(env.get(RECONCILE_UPDATES_ENV)));
+    Integer cacheSize = positiveInt(env.get(CACHE_SIZE_ENV));
+    if (cacheSize != null) {
+      builder.cacheSize(cacheSize);
+    }
+    HandlerLogger.Level logLevel = logLevel(env.get(LOG_LEVEL_ENV));
+    if (logLevel != null) {
+      builder.logLevel(logLevel);
+    }
+    Integer logSamples = positiveInt(env.get(LOG_SAMPLES_ENV));
+    if (logSamples != null) {
+      builder.logSamplesPerEvent(logSamples);
+    }
+    String serializerWarmUp = env.get(SERIALIZER_WARM_UP_ENV);
+    if (serializerWarmUp != null) {
+      builder.serializerWarmUp(Boolean.parseBoolean(serializerWarmUp));
+    }
+    return builder.build();
+  }
+
+  // Bad values fall back to the default rather than failing every invocation
+  private static Integer positiveInt(String value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      int parsed = Integer.parseInt(value.trim());
+      return parsed > 0 ? parsed : null;
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  private static RetryMode retryMode(String value) {
+    if (value == null) {
+      return null;
+    }
+    for (RetryMode mode : RetryMode.values()) {
+      if (mode.name().equalsIgnoreCase(value.trim())) {
+        return mode;
+      }
+    }
+    return null;
+  }
+
+  // Accepts url-connection as well as url_connection
+  private static HttpClientType httpClientType(String value) {
+    if (value == null) {
+      return null;
+    }
+    for (HttpClientType type : HttpClientType.values()) {
+      if (type.name().equalsIgnoreCase(value.trim().replace('-', '_'))) {
+        return type;
+      }
+    }
+    return null;
+  }
+
+  private static HandlerLogger.Level logLevel(String value) {
+    if (value == null) {
+      return null;
+    }
+    for (HandlerLogger.Level level : HandlerLogger.Level.values()) {
+      if (level.name().equalsIgnoreCase(value.trim())) {
+        return level;
+      }
+    }
+    return null;
+  }
+
+  private static Set<Action> actions(String value) {
+    Set<Action> actions = EnumSet.noneOf(Action.class);
+    for (String item : stringList(value)) {
+      for (Action action : Action.values()) {
+        if (action.name().equalsIgnoreCase(item)) {
+          actions.add(action);
+        }
+      }
+    }
+    return actions;
+  }
+
+  private static URI absoluteUri(String value) {
+    if (value == null || value.trim().isEmpty()) {
+      return null;
+    }
+    try {
+      URI uri = new URI(value.trim());
+      return uri.isAbsolute() ? uri : null;
+    } catch (URISyntaxException ex) {
+      return null;
+    }
+  }
+
+  private static List<String> stringList(String value) {
+    List<String> values = new ArrayList<>();
+    if (value != null) {
+      for (String item : value.split(",")) {
+        if (!item.trim().isEmpty()) {
+          values.add(item.trim());
+        }
+      }
+    }
+    return values;
+  }
+}
@@ -1,20 +1,33 @@
 package com.amazonaws.accessanalyzer.analyzer;
 
 import com.amazonaws.AmazonServiceException;
+import com.amazonaws.accessanalyzer.analyzer.CallbackContext.UpdateAction;
+import com.amazonaws.accessanalyzer.analyzer.CallbackContext.UpdateStep;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Maps;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.val;
 import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
+import software.amazon.awssdk.services.accessanalyzer.model.ConflictException;
 import software.amazon.awssdk.services.accessanalyzer.model.CreateArchiveRuleRequest;
 import software.amazon.awssdk.services.accessanalyzer.model.DeleteArchiveRuleRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerResponse;
 import software.amazon.awssdk.services.accessanalyzer.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.accessanalyzer.model.ServiceQuotaExceededException;
 import software.amazon.awssdk.services.accessanalyzer.model.TagResourceRequest;
 import software.amazon.awssdk.services.accessanalyzer.model.UntagResourceRequest;
 import software.amazon.awssdk.services.accessanalyzer.model.UpdateArchiveRuleRequest;
+import software.amazon.cloudformation.Action;
+import software.amazon.cloudformation.exceptions.CfnInternalFailureException;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
@@ -23,13 +36,23 @@ import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 
 public class UpdateHandler extends BaseHandler<CallbackContext> {
 
+  // A slice that finished calls back with no delay, which the wrapper serves by calling the
+  // handler again in the same invocation while time remains.  That is intended: the checkpoint
+  // bounds the work between two calls of the handler, not the length of the invocation, and
+  // nothing is slept.  Only out of time does the wrapper schedule a new invocation.
+  static final int CHECKPOINT_DELAY_SECONDS = 0;
+
+  static {
+    SerializerWarmUp.ensure(Settings.current());
+  }
+
   @Override
   public ProgressEvent<ResourceModel, CallbackContext> handleRequest(
       AmazonWebServicesClientProxy proxy, ResourceHandlerRequest<ResourceModel> request,
       CallbackContext callbackContext, Logger logger) {
-    try (val client = ClientBuilder.getClient()) {
-      return handleRequestWithClient(client, proxy, request, callbackContext, logger);
-    }
+    val handlerLogger = HandlerLogger.forInvocation(logger, Action.UPDATE, Settings.current());
+    return ClientBuilder.withSharedClient(handlerLogger,
+        client -> handleRequestWithClient(client, proxy, request, callbackContext, handlerLogger));
   }
 
   @SuppressWarnings("WeakerAccess")
@@ -37,13 +60,23 @@ public class UpdateHandler extends BaseHandler<CallbackContext> {
   static ProgressEvent<ResourceModel, CallbackContext> handleRequestWithClient(
       AccessAnalyzerClient client, AmazonWebServicesClientProxy proxy,
       ResourceHandlerRequest<ResourceModel> request,
-      @SuppressWarnings("unused") CallbackContext callbackContext, Logger logger) {
+      CallbackContext callbackContext, Logger logger) {
+    return handleRequestWithClient(client, proxy, request, callbackContext, logger,
+        Settings.current());
+  }
+
+  @VisibleForTesting
+  static ProgressEvent<ResourceModel, CallbackContext> handleRequestWithClient(
+      AccessAnalyzerClient client, AmazonWebServicesClientProxy proxy,
+      ResourceHandlerRequest<ResourceModel> request,
+      CallbackContext callbackContext, Logger logger, Settings settings) {
+    val log = HandlerLogger.of(logger);
     val oldModel = request.getPreviousResourceState();
     val newModel = request.getDesiredResourceState();
 
     val arn = oldModel.getArn();
     if (arn == null) {
-      logger.log("Impossible: Null arn in current state of analyzer");
+      log.error(() -> "Impossible: Null arn in current state of analyzer");
       return ProgressEvent
           .failed(request.getDesiredResourceState(), null, HandlerErrorCode.InternalFailure,
               "Internal error");
@@ -58,7 +91,7 @@ public class UpdateHandler extends BaseHandler<CallbackContext> {
 
     // AnalyzerName can't be changed, but if the user doesn't supply it use the existing name
     if (newModel.getAnalyzerName() == null) {
-      logger.log("Setting new analyzer name to " + name);
+      log.debug(() -> "Setting new analyzer name to " + name);
       newModel.setAnalyzerName(name);
     }
 
@@ -76,98 +109,295 @@ public class UpdateHandler extends BaseHandler<CallbackContext> {
                   name));
     }
 
-    // Tags
-    val oldTags = Util.resourceTags(oldModel);
-    val oldTagKeys = Util.setMap(oldTags, Tag::getKey);
-    val newTags = Util.resourceTags(newModel);
-    val newTagKeys = Util.setMap(newTags, Tag::getKey);
-    val tagKeysToRemove = new ArrayList<String>(Sets.difference(oldTagKeys, newTagKeys));
-    tagKeysToRemove.sort(Comparator.naturalOrder()); // Stable order for testing
-    val tagsToAdd = Util.filter(newTags, newTag -> oldTags.stream().noneMatch(newTag::equals));
-    tagsToAdd.sort(Comparator.comparing(Tag::getKey)); // Stable order for testing
-
-    // Rules
-    val oldRules = Util.resourceRules(oldModel);
-    val oldRuleNames = Util.setMap(oldRules, Util::ruleName);
-    val newRules = Util.resourceRules(newModel);
-    val newRuleNames = Util.setMap(newRules, Util::ruleName);
-    val ruleNamesToRemove = new ArrayList<String>(Sets.difference(oldRuleNames, newRuleNames));
-    ruleNamesToRemove.sort(Comparator.naturalOrder()); // Stable order for testing
-    val rulesToAdd = new ArrayList<ArchiveRule>();
-    val rulesToUpdate = new ArrayList<ArchiveRule>();
-    for (val newRule : Util.resourceRules(newModel)) {
-      if (oldRules.stream().noneMatch(newRule::equals)) {
-        if (oldRuleNames.contains(Util.ruleName(newRule))) {
-          rulesToUpdate.add(newRule);
-        } else {
-          rulesToAdd.add(newRule);
-        }
-      }
+    // Whatever happens below, the cached state is out of date
+    AnalyzerCache.global().invalidate(arn);
+
+    // A callback resumes the plan of the invocation that started the update
+    val context = callbackContext == null ? new CallbackContext() : callbackContext;
+    List<UpdateStep> plan = context.getUpdatePlan();
+    Set<Integer> completed = ConcurrentHashMap.newKeySet();
+    if (context.getCompletedSteps() != null) {
+      completed.addAll(context.getCompletedSteps());
+    }
+    val tags = Maps.<String, String>newHashMapWithExpectedSize(
+        Util.resourceTags(newModel).size());
+    for (val tag : Util.resourceTags(newModel)) {
+      tags.put(tag.getKey(), tag.getValue());
+    }
+    val rules = Maps.<String, ArchiveRule>newHashMapWithExpectedSize(
+        Util.resourceRules(newModel).size());
+    for (val rule : Util.resourceRules(newModel)) {
+      rules.put(Util.ruleName(rule), rule);
     }
-    rulesToAdd.sort(Comparator.comparing(Util::ruleName)); // Stable order for testing
-    rulesToUpdate.sort(Comparator.comparing(Util::ruleName)); // Stable order for testing
 
+    // After a callback retry some of the changes may already have been made
+    val retry = CallbackRetry.isRetry(context);
+    val executor = BoundedExecutor.withConcurrency(settings.getUpdateConcurrency());
     try {
-      if (!tagKeysToRemove.isEmpty()) {
-        logger
-            .log(String
-                .format("Deleting %d tags for analyzer %s", tagKeysToRemove.size(), name));
-        val deleteTagsRequest = UntagResourceRequest.builder().resourceArn(arn)
-            .tagKeys(tagKeysToRemove).build();
-        proxy.injectCredentialsAndInvokeV2(deleteTagsRequest, client::untagResource);
+      if (plan == null) {
+        val tagChanges = ModelDiff
+            .diffTags(Util.resourceTags(oldModel), Util.resourceTags(newModel));
+        val ruleChanges = ModelDiff
+            .diffRules(Util.resourceRules(oldModel), Util.resourceRules(newModel));
+        plan = UpdatePlan.of(tagChanges, ruleChanges);
+        if (settings.isReconcileUpdates()) {
+          plan = reconcile(client, proxy, name, newModel, plan, log);
+        }
+      }
+      val changesRules = UpdatePlan.changesRules(plan);
+      if (changesRules) {
+        RuleFingerprint.global().forget(arn);
+      }
+      val slice = UpdatePlan.nextSlice(plan, completed, settings.getUpdateStepsPerInvocation());
+      if (dropsFingerprint(settings, plan, slice, completed, changesRules, tags.size())) {
+        untagAnalyzer(client, proxy, arn, name,
+            Collections.singletonList(RuleFingerprint.TAG_KEY), log);
+      }
+      val deletes = new ArrayList<Runnable>();
+      val createsAndUpdates = new ArrayList<Runnable>();
+      for (val index : slice) {
+        val step = plan.get(index);
+        Runnable call = () -> {
+          runStep(client, proxy, arn, name, step, tags, rules, retry, log);
+          completed.add(index);
+        };
+        if (UpdatePlan.isTagStep(step)) {
+          // Tags and rules are independent, so the tag calls run alongside the rule calls
+          executor.submit(call);
+        } else if (step.getAction() == UpdateAction.DELETE_RULE) {
+          deletes.add(call);
+        } else {
+          createsAndUpdates.add(call);
+        }
+      }
+      // Deletes go first so that creating rules can't push us over the archive rule quota
+      executor.runAll(deletes);
+      executor.runAll(createsAndUpdates);
+      executor.awaitAll();
+      if (completed.size() < plan.size()) {
+        val done = completed.size();
+        val total = plan.size();
+        log.info(() -> String.format("%s [%s] Updated %d of %d steps, continuing in a callback",
+            ResourceModel.TYPE_NAME, name, done, total));
+        // A finished slice starts the retry count over
+        val next = progress(context, plan, completed).toBuilder()
+            .retryAttempt(0)
+            .backoffSeconds(0)
+            .build();
+        return ProgressEvent.defaultInProgressHandler(next, CHECKPOINT_DELAY_SECONDS, newModel);
       }
-      if (!tagsToAdd.isEmpty()) {
-        logger.log(String.format("Adding %d tags for analyzer %s", tagsToAdd.size(), name));
-        val addTagsRequest = TagResourceRequest.builder().resourceArn(arn)
-            .tags(Util.tagsToMap(tagsToAdd)).build();
-        proxy.injectCredentialsAndInvokeV2(addTagsRequest, client::tagResource);
+      if (settings.isRulesFingerprint() && changesRules) {
+        updateFingerprint(client, proxy, arn, name, Util.resourceRules(newModel),
+            tags.size(), log);
       }
-      ruleNamesToRemove.forEach(ruleName -> {
-        logger.log(String.format("Deleting archive rule %s for analyzer %s", ruleName, name));
-        val deleteRuleRequest = DeleteArchiveRuleRequest.builder().analyzerName(name)
-            .ruleName(ruleName).build();
-        proxy.injectCredentialsAndInvokeV2(deleteRuleRequest, client::deleteArchiveRule);
-      });
-      rulesToAdd.forEach(rule -> {
-        logger.log(
-            String.format("Adding archive rule %s for analyzer %s", Util.ruleName(rule), name));
-        val inline = Util.inlineArchiveRuleFromArchiveRule(rule);
-        val createRuleRequest = CreateArchiveRuleRequest.builder().analyzerName(name)
-            .ruleName(inline.ruleName()).filter(inline.filter()).build();
-        proxy.injectCredentialsAndInvokeV2(createRuleRequest, client::createArchiveRule);
-      });
-      rulesToUpdate.forEach(rule -> {
-        logger.log(
-            String.format("Updating archive rule %s for analyzer %s", Util.ruleName(rule), name));
-        val inline = Util.inlineArchiveRuleFromArchiveRule(rule);
-        val updateRuleRequest = UpdateArchiveRuleRequest.builder().analyzerName(name)
-            .ruleName(inline.ruleName()).filter(inline.filter()).build();
-        proxy.injectCredentialsAndInvokeV2(updateRuleRequest, client::updateArchiveRule);
-      });
-      logger.log(String.format("%s [%s] Updated Successfully", ResourceModel.TYPE_NAME, name));
+      if (settings.getCachedActions().contains(Action.UPDATE)) {
+        AnalyzerCache.global().put(newModel);
+      }
+      log.info(() -> String.format("%s [%s] Updated Successfully", ResourceModel.TYPE_NAME, name));
       return ProgressEvent.defaultSuccessHandler(newModel);
     } catch (ResourceNotFoundException ex) {
-      logger.log(
+      log.error(() ->
           String.format("%s [%s] not found and must be created", ResourceModel.TYPE_NAME, name));
       return ProgressEvent
           .failed(request.getDesiredResourceState(), null, HandlerErrorCode.NotFound, String
               .format("%s [%s] not found and must be created", ResourceModel.TYPE_NAME, name));
     } catch (ServiceQuotaExceededException ex) {
-      logger.log(
+      log.error(() ->
           String.format("%s [%s] too many tags or archive rules", ResourceModel.TYPE_NAME, name));
       return ProgressEvent.defaultFailureHandler(ex, HandlerErrorCode.ServiceLimitExceeded);
     } catch (AmazonServiceException ex) {
       if (ex.getStatusCode() == Util.SERVICE_VALIDATION_STATUS_CODE) {
-        logger.log(String.format("%s [%s] Update Failed due to a service validation error",
+        log.error(() -> String.format("%s [%s] Update Failed due to a service validation error",
             ResourceModel.TYPE_NAME, name));
         return ProgressEvent.defaultFailureHandler(ex, HandlerErrorCode.InvalidRequest);
       }
-      logger.log(String.format("%s [%s] Updated Failed", ResourceModel.TYPE_NAME, name));
+      log.error(() -> String.format("%s [%s] Updated Failed", ResourceModel.TYPE_NAME, name));
       return ProgressEvent.defaultFailureHandler(ex, HandlerErrorCode.ServiceInternalError);
     } catch (Exception ex) {
-      logger.log(String.format("%s [%s] Updated Failed", ResourceModel.TYPE_NAME, name));
+      val retryLater = CallbackRetry
+          .retryLater(settings, newModel, progress(context, plan, completed), ex, log);
+      if (retryLater != null) {
+        return retryLater;
+      }
+      log.error(() -> String.format("%s [%s] Updated Failed", ResourceModel.TYPE_NAME, name));
       return ProgressEvent.defaultFailureHandler(ex, HandlerErrorCode.ServiceInternalError);
     }
     // TODO: Handle more exceptions
   }
+
+  /**
+   * Plans the update against the analyzer as it is rather than as the previous model says it is,
+   * which may be out of date after drift or an update that failed half way.  Costs a GetAnalyzer
+   * and the ListArchiveRules pages.
+   */
+  private static List<UpdateStep> reconcile(AccessAnalyzerClient client,
+      AmazonWebServicesClientProxy proxy, String name, ResourceModel newModel,
+      List<UpdateStep> previousPlan, HandlerLogger log) {
+    val getAnalyzerRequest = GetAnalyzerRequest.builder().analyzerName(name).build();
+    // GetAnalyzer runs while this thread pages through the archive rules
+    CompletableFuture<GetAnalyzerResponse> getAnalyzerFuture = BoundedExecutor.supplyAsync(
+        () -> proxy.injectCredentialsAndInvokeV2(getAnalyzerRequest, client::getAnalyzer));
+    val pages = new AtomicInteger();
+    List<ArchiveRule> liveRules;
+    try {
+      liveRules = ReadHandler.listArchiveRules(client, proxy, name, pages);
+    } catch (RuntimeException ex) {
+      throw ReadHandler.preferNotFound(getAnalyzerFuture, ex);
+    }
+    val liveTags = Util.analyzerTags(BoundedExecutor.join(getAnalyzerFuture).analyzer().tags());
+    val plan = UpdatePlan.of(ModelDiff.diffTags(liveTags, Util.resourceTags(newModel)),
+        ModelDiff.diffRules(liveRules, Util.resourceRules(newModel)));
+    log.info(() -> String.format(
+        "%s [%s] Reconciled with the live analyzer in %d reads: %d calls instead of %d, %d saved",
+        ResourceModel.TYPE_NAME, name, 1 + pages.get(), UpdatePlan.calls(plan),
+        UpdatePlan.calls(previousPlan),
+        UpdatePlan.calls(previousPlan) - UpdatePlan.calls(plan)));
+    return plan;
+  }
+
+  /**
+   * The context that resumes {@code plan} after the steps in {@code completed}.
+   */
+  private static CallbackContext progress(CallbackContext context, List<UpdateStep> plan,
+      Set<Integer> completed) {
+    val completedSteps = new ArrayList<Integer>(completed);
+    Collections.sort(completedSteps);
+    return context.toBuilder().updatePlan(plan).completedSteps(completedSteps).build();
+  }
+
+  private static void runStep(AccessAnalyzerClient client, AmazonWebServicesClientProxy proxy,
+      String arn, String name, UpdateStep step, Map<String, String> tags,
+      Map<String, ArchiveRule> rules, boolean retry, HandlerLogger log) {
+    switch (step.getAction()) {
+      case UNTAG:
+        untagAnalyzer(client, proxy, arn, name, step.getNames(), log);
+        break;
+      case TAG:
+        Map<String, String> tagsToAdd =
+            Maps.<String, String>newHashMapWithExpectedSize(step.getNames().size());
+        for (val key : step.getNames()) {
+          tagsToAdd.put(key, tags.get(key));
+        }
+        tagAnalyzer(client, proxy, arn, name, tagsToAdd, log);
+        break;
+      case DELETE_RULE:
+        deleteRule(client, proxy, name, step.getNames().get(0), retry, log);
+        break;
+      case CREATE_RULE:
+        createRule(client, proxy, name, planRule(rules, step), retry, log);
+        break;
+      case UPDATE_RULE:
+        updateRule(client, proxy, name, planRule(rules, step), log);
+        break;
+      default:
+        throw new CfnInternalFailureException(
+            new IllegalStateException("Unknown update step " + step.getAction()));
+    }
+  }
+
+  // The desired model doesn't change between callbacks, so every rule in the plan is in it
+  private static ArchiveRule planRule(Map<String, ArchiveRule> rules, UpdateStep step) {
+    val rule = rules.get(step.getNames().get(0));
+    if (rule == null) {
+      throw new CfnInternalFailureException(new IllegalStateException(
+          "Archive rule " + step.getNames().get(0) + " is not in the desired model"));
+    }
+    return rule;
+  }
+
+  /**
+   * True if the fingerprint tag has to go before the slice runs.  While the rules change, the
+   * tag would still match the snapshots other containers took of the old rules, so it goes
+   * before the first rule step and {@link #updateFingerprint} puts it back at the end.  And
+   * when the user's tags fill every slot, it would make TagResource fail with one tag too many,
+   * so it goes whether or not the setting is still on.
+   */
+  private static boolean dropsFingerprint(Settings settings, List<UpdateStep> plan,
+      List<Integer> slice, Set<Integer> completed, boolean changesRules, int userTags) {
+    if (settings.isRulesFingerprint() && changesRules
+        && UpdatePlan.startsRules(plan, slice, completed)) {
+      return true;
+    }
+    return !RuleFingerprint.fits(userTags) && UpdatePlan.addsTags(plan, slice);
+  }
+
+  /**
+   * Points the fingerprint tag, which {@link #dropsFingerprint} removed before the rules
+   * changed, at the new rules if there is room for it.
+   */
+  private static void updateFingerprint(AccessAnalyzerClient client,
+      AmazonWebServicesClientProxy proxy, String arn, String name, List<ArchiveRule> rules,
+      int userTags, HandlerLogger log) {
+    if (!RuleFingerprint.fits(userTags)) {
+      return;
+    }
+    val fingerprint = RuleFingerprint.of(rules);
+    tagAnalyzer(client, proxy, arn, name,
+        Collections.singletonMap(RuleFingerprint.TAG_KEY, fingerprint), log);
+    RuleFingerprint.global().remember(arn, fingerprint, rules);
+  }
+
+  private static void untagAnalyzer(AccessAnalyzerClient client,
+      AmazonWebServicesClientProxy proxy, String arn, String name, List<String> tagKeysToRemove,
+      HandlerLogger log) {
+    log.item("UntagResource", () -> String
+        .format("Deleting %d tags for analyzer %s", tagKeysToRemove.size(), name));
+    val deleteTagsRequest = UntagResourceRequest.builder().resourceArn(arn)
+        .tagKeys(tagKeysToRemove).build();
+    proxy.injectCredentialsAndInvokeV2(deleteTagsRequest, client::untagResource);
+  }
+
+  private static void tagAnalyzer(AccessAnalyzerClient client, AmazonWebServicesClientProxy proxy,
+      String arn, String name, Map<String, String> tagsToAdd, HandlerLogger log) {
+    log.item("TagResource",
+        () -> String.format("Adding %d tags for analyzer %s", tagsToAdd.size(), name));
+    val addTagsRequest = TagResourceRequest.builder().resourceArn(arn)
+        .tags(tagsToAdd).build();
+    proxy.injectCredentialsAndInvokeV2(addTagsRequest, client::tagResource);
+  }
+
+  private static void deleteRule(AccessAnalyzerClient client, AmazonWebServicesClientProxy proxy,
+      String name, String ruleName, boolean retry, HandlerLogger log) {
+    log.item("DeleteArchiveRule",
+        () -> String.format("Deleting archive rule %s for analyzer %s", ruleName, name));
+    val deleteRuleRequest = DeleteArchiveRuleRequest.builder().analyzerName(name)
+        .ruleName(ruleName).build();
+    try {
+      proxy.injectCredentialsAndInvokeV2(deleteRuleRequest, client::deleteArchiveRule);
+    } catch (ResourceNotFoundException ex) {
+      if (!retry) {
+        throw ex;
+      }
+      log.item("ArchiveRuleAlreadyDeleted", () -> String
+          .format("Archive rule %s for analyzer %s already deleted", ruleName, name));
+    }
+  }
+
+  private static void createRule(AccessAnalyzerClient client, AmazonWebServicesClientProxy proxy,
+      String name, ArchiveRule rule, boolean retry, HandlerLogger log) {
+    log.item("CreateArchiveRule", () ->
+        String.format("Adding archive rule %s for analyzer %s", Util.ruleName(rule), name));
+    val inline = Util.inlineArchiveRuleFromArchiveRule(rule);
+    val createRuleRequest = CreateArchiveRuleRequest.builder().analyzerName(name)
+        .ruleName(inline.ruleName()).filter(inline.filter()).build();
+    try {
+      proxy.injectCredentialsAndInvokeV2(createRuleRequest, client::createArchiveRule);
+    } catch (ConflictException ex) {
+      if (!retry) {
+        throw ex;
+      }
+      // Created by an earlier attempt, but make sure it has the filter we want
+      updateRule(client, proxy, name, rule, log);
+    }
+  }
+
+  private static void updateRule(AccessAnalyzerClient client, AmazonWebServicesClientProxy proxy,
+      String name, ArchiveRule rule, HandlerLogger log) {
+    log.item("UpdateArchiveRule", () ->
+        String.format("Updating archive rule %s for analyzer %s", Util.ruleName(rule), name));
+    val inline = Util.inlineArchiveRuleFromArchiveRule(rule);
+    val updateRuleRequest = UpdateArchiveRuleRequest.builder().analyzerName(name)
+        .ruleName(inline.ruleName()).filter(inline.filter()).build();
+    proxy.injectCredentialsAndInvokeV2(updateRuleRequest, client::updateArchiveRule);
+  }
 }
@@ -0,0 +1,110 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import com.amazonaws.accessanalyzer.analyzer.CallbackContext.UpdateAction;
+import com.amazonaws.accessanalyzer.analyzer.CallbackContext.UpdateStep;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import lombok.val;
+
+/**
+ * Turns the tag and rule changes of an update into an ordered list of steps, one per call.  Tag
+ * steps come first, then rule deletes, then rule creates and updates, which is also the order
+ * the slices of a long update are taken in.
+ */
+class UpdatePlan {
+
+  private UpdatePlan() {
+  }
+
+  static List<UpdateStep> of(ModelDiff.TagChanges tags, ModelDiff.RuleChanges rules) {
+    val steps = new ArrayList<UpdateStep>(2 + rules.getNamesToRemove().size()
+        + rules.getRulesToAdd().size() + rules.getRulesToUpdate().size());
+    if (!tags.getKeysToRemove().isEmpty()) {
+      steps.add(new UpdateStep(UpdateAction.UNTAG, new ArrayList<>(tags.getKeysToRemove())));
+    }
+    if (!tags.getTagsToAdd().isEmpty()) {
+      val keys = new ArrayList<String>(tags.getTagsToAdd().size());
+      for (val tag : tags.getTagsToAdd()) {
+        keys.add(tag.getKey());
+      }
+      steps.add(new UpdateStep(UpdateAction.TAG, keys));
+    }
+    for (val ruleName : rules.getNamesToRemove()) {
+      steps.add(new UpdateStep(UpdateAction.DELETE_RULE, Collections.singletonList(ruleName)));
+    }
+    for (val rule : rules.getRulesToAdd()) {
+      steps.add(new UpdateStep(UpdateAction.CREATE_RULE,
+          Collections.singletonList(Util.ruleName(rule))));
+    }
+    for (val rule : rules.getRulesToUpdate()) {
+      steps.add(new UpdateStep(UpdateAction.UPDATE_RULE,
+          Collections.singletonList(Util.ruleName(rule))));
+    }
+    return steps;
+  }
+
+  /**
+   * The indices of the first {@code limit} steps not yet completed, or of all of them if
+   * {@code limit} is not positive.
+   */
+  static List<Integer> nextSlice(List<UpdateStep> plan, Collection<Integer> completed,
+      int limit) {
+    val slice = new ArrayList<Integer>();
+    for (int i = 0; i < plan.size() && (limit <= 0 || slice.size() < limit); i++) {
+      if (!completed.contains(i)) {
+        slice.add(i);
+      }
+    }
+    return slice;
+  }
+
+  /**
+   * The API calls the plan makes, which is one per step.
+   */
+  static int calls(List<UpdateStep> plan) {
+    return plan.size();
+  }
+
+  static boolean changesRules(List<UpdateStep> plan) {
+    for (val step : plan) {
+      if (!isTagStep(step)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * True if {@code slice} holds the first rule step of the plan to run, which is before any
+   * rule has been changed.
+   */
+  static boolean startsRules(List<UpdateStep> plan, Collection<Integer> slice,
+      Collection<Integer> completed) {
+    for (val index : completed) {
+      if (!isTagStep(plan.get(index))) {
+        return false;
+      }
+    }
+    for (val index : slice) {
+      if (!isTagStep(plan.get(index))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static boolean addsTags(List<UpdateStep> plan, Collection<Integer> slice) {
+    for (val index : slice) {
+      if (plan.get(index).getAction() == UpdateAction.TAG) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static boolean isTagStep(UpdateStep step) {
+    return step.getAction() == UpdateAction.UNTAG || step.getAction() == UpdateAction.TAG;
+  }
+}
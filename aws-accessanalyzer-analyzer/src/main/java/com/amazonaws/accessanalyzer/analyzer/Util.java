@@ -1,16 +1,18 @@
 package com.amazonaws.accessanalyzer.analyzer;
 
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import lombok.val;
 import software.amazon.awssdk.arns.Arn;
 import software.amazon.awssdk.services.accessanalyzer.model.AnalyzerSummary;
@@ -24,34 +26,62 @@ class Util {
 
   static final int SERVICE_VALIDATION_STATUS_CODE = 400;
 
+  // The helpers below are plain loops into presized collections rather than stream pipelines.
+  // They run on every invocation, including the first one of a cold container.
+
   static <A, B> List<B> map(Collection<A> xs, Function<A, B> f) {
-    return Optional.ofNullable(xs).orElse(Collections.emptyList()).stream().map(f)
-        .collect(Collectors.toList());
+    if (xs == null) {
+      return new ArrayList<>();
+    }
+    val ys = new ArrayList<B>(xs.size());
+    for (val x : xs) {
+      ys.add(f.apply(x));
+    }
+    return ys;
   }
 
   static <A> List<A> concat(Collection<A> xs, Collection<A> ys) {
-    return Stream.concat(
-        Optional.ofNullable(xs).orElse(Collections.emptyList()).stream(),
-        Optional.ofNullable(ys).orElse(Collections.emptyList()).stream()
-    ).collect(Collectors.toList());
+    val zs = new ArrayList<A>((xs == null ? 0 : xs.size()) + (ys == null ? 0 : ys.size()));
+    if (xs != null) {
+      zs.addAll(xs);
+    }
+    if (ys != null) {
+      zs.addAll(ys);
+    }
+    return zs;
   }
 
   static <A, B> Set<B> setMap(Collection<A> xs, Function<A, B> f) {
-    return Optional.ofNullable(xs).orElse(Collections.emptySet()).stream().map(f)
-        .collect(Collectors.toSet());
+    if (xs == null) {
+      return new HashSet<>();
+    }
+    val ys = Sets.<B>newHashSetWithExpectedSize(xs.size());
+    for (val x : xs) {
+      ys.add(f.apply(x));
+    }
+    return ys;
   }
 
   static <A> List<A> filter(Collection<A> xs, Predicate<A> p) {
-    return Optional.ofNullable(xs).orElse(Collections.emptyList()).stream().filter(p)
-        .collect(Collectors.toList());
+    val ys = new ArrayList<A>();
+    if (xs != null) {
+      for (val x : xs) {
+        if (p.test(x)) {
+          ys.add(x);
+        }
+      }
+    }
+    return ys;
   }
 
   static Set<Tag> resourceTags(ResourceModel m) {
-    return Optional.ofNullable(m.getTags()).orElse(Collections.emptySet());
+    val tags = m.getTags();
+    return tags == null ? Collections.emptySet() : tags;
   }
 
   static List<ArchiveRule> resourceRules(ResourceModel m) {
-    return Optional.ofNullable(m.getArchiveRules()).orElse(Collections.emptyList());
+    val rules = m.getArchiveRules();
+    return rules == null ? Collections.emptyList() : rules;
   }
 
   static String arnToAnalyzerName(String arnStr) {
@@ -69,10 +99,26 @@ class Util {
         .analyzerName(summary.name())
         .type(summary.typeAsString())
         .arn(summary.arn())
-        .tags(mapToTags(Optional.ofNullable(summary.tags()).orElse(Collections.emptyMap())))
+        .tags(analyzerTags(summary.tags()))
         .build();
   }
 
+  /**
+   * The tags of an analyzer as the user sees them, without {@link RuleFingerprint#TAG_KEY}.
+   */
+  static Set<Tag> analyzerTags(Map<String, String> m) {
+    if (m == null) {
+      return new HashSet<>();
+    }
+    val tags = Sets.<Tag>newHashSetWithExpectedSize(m.size());
+    for (val e : m.entrySet()) {
+      if (!RuleFingerprint.TAG_KEY.equals(e.getKey())) {
+        tags.add(new Tag(e.getKey(), e.getValue()));
+      }
+    }
+    return tags;
+  }
+
   static String ruleName(ArchiveRule rule) {
     return rule.getRuleName();
   }
@@ -89,51 +135,84 @@ class Util {
   }
 
   static InlineArchiveRule inlineArchiveRuleFromArchiveRule(ArchiveRule rule) {
+    val filters = rule.getFilter();
+    val criteria = Maps.<String, Criterion>newHashMapWithExpectedSize(filters.size());
+    for (val f : filters) {
+      val criterion = Criterion.builder()
+          .eq(f.getEq())
+          .neq(f.getNeq())
+          .exists(f.getExists())
+          .contains(f.getContains())
+          .build();
+      if (criteria.putIfAbsent(f.getProperty(), criterion) != null) {
+        throw duplicateKey(f.getProperty());
+      }
+    }
     return InlineArchiveRule.builder()
         .ruleName(ruleName(rule))
-        .filter(
-            rule.getFilter().stream().collect(Collectors.toMap(
-                Filter::getProperty,
-                f -> Criterion.builder()
-                    .eq(f.getEq())
-                    .neq(f.getNeq())
-                    .exists(f.getExists())
-                    .contains(f.getContains())
-                    .build()
-            ))
-        )
+        .filter(criteria)
         .build();
   }
 
+  static List<InlineArchiveRule> inlineArchiveRules(Collection<ArchiveRule> rules) {
+    val inline = new ArrayList<InlineArchiveRule>(rules.size());
+    for (val rule : rules) {
+      inline.add(inlineArchiveRuleFromArchiveRule(rule));
+    }
+    return inline;
+  }
+
+  /**
+   * The rule in {@link CanonicalRules canonical} form, since the service's filter order means
+   * nothing.
+   */
   static ArchiveRule archiveRuleFromSummary(ArchiveRuleSummary summary) {
-    return ArchiveRule.builder()
-        .ruleName(summary.ruleName())
-        .filter(
-            summary
-                .filter()
-                .entrySet()
-                .stream()
-                .map(e ->
-                    Filter.builder()
-                        .property(e.getKey())
-                        .contains(e.getValue().contains())
-                        .eq(e.getValue().eq())
-                        .neq(e.getValue().neq())
-                        .exists(e.getValue().exists())
-                        .build())
-                .collect(Collectors.toList())
-        )
-        .build();
+    val criteria = summary.filter();
+    val filters = new ArrayList<Filter>(criteria.size());
+    for (val e : criteria.entrySet()) {
+      filters.add(CanonicalRules.filter(e.getKey(), e.getValue().eq(), e.getValue().neq(),
+          e.getValue().contains(), e.getValue().exists()));
+    }
+    return CanonicalRules.rule(summary.ruleName(), filters);
+  }
+
+  static List<ArchiveRule> archiveRulesFromSummaries(Collection<ArchiveRuleSummary> summaries) {
+    val rules = new ArrayList<ArchiveRule>(summaries.size());
+    for (val summary : summaries) {
+      rules.add(archiveRuleFromSummary(summary));
+    }
+    return rules;
   }
 
+  /**
+   * Throws {@link IllegalStateException} on duplicate keys and {@link NullPointerException} on
+   * null values, as {@code Collectors.toMap} did.
+   */
   static Map<String, String> tagsToMap(Collection<Tag> tags) {
-    return Optional.ofNullable(tags).orElse(Collections.emptyList()).stream()
-        .collect(Collectors.toMap(Tag::getKey, Tag::getValue));
+    if (tags == null) {
+      return new HashMap<>();
+    }
+    val m = Maps.<String, String>newHashMapWithExpectedSize(tags.size());
+    for (val tag : tags) {
+      if (m.putIfAbsent(tag.getKey(), Objects.requireNonNull(tag.getValue())) != null) {
+        throw duplicateKey(tag.getKey());
+      }
+    }
+    return m;
   }
 
   static Set<Tag> mapToTags(Map<String, String> m) {
-    return Optional.ofNullable(m).orElse(Collections.emptyMap()).entrySet().stream()
-        .map(e -> new Tag(e.getKey(), e.getValue()))
-        .collect(Collectors.toSet());
+    if (m == null) {
+      return new HashSet<>();
+    }
+    val tags = Sets.<Tag>newHashSetWithExpectedSize(m.size());
+    for (val e : m.entrySet()) {
+      tags.add(new Tag(e.getKey(), e.getValue()));
+    }
+    return tags;
+  }
+
+  private static IllegalStateException duplicateKey(String key) {
+    return new IllegalStateException("Duplicate key " + key);
   }
 }
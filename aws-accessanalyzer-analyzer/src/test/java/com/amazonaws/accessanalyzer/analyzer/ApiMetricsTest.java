@@ -0,0 +1,162 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.val;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
+import software.amazon.awssdk.services.accessanalyzer.model.CreateAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.ListAnalyzersRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.accessanalyzer.model.Type;
+import software.amazon.cloudformation.proxy.Logger;
+
+class ApiMetricsTest {
+
+  @Test
+  void testOneLinePerOperation() {
+    val calls = ImmutableList.of(
+        call("GetAnalyzer", 1, null),
+        call("ListArchiveRules", 1, null),
+        call("GetAnalyzer", 3, "ThrottlingException"));
+    List<String> lines = ApiMetrics.emfLines(calls, 1234L);
+    assertThat(lines).hasSize(2);
+
+    val get = new JSONObject(lines.get(0));
+    val directive = get.getJSONObject("_aws").getJSONArray("CloudWatchMetrics").getJSONObject(0);
+    assertThat(get.getJSONObject("_aws").getLong("Timestamp")).isEqualTo(1234L);
+    assertThat(directive.getString("Namespace")).isEqualTo(ApiMetrics.NAMESPACE);
+    assertThat(directive.getJSONArray("Dimensions").getJSONArray(0).getString(0))
+        .isEqualTo("Operation");
+    assertThat(get.getString("Operation")).isEqualTo("GetAnalyzer");
+    assertThat(get.getJSONArray("Latency").length()).isEqualTo(2);
+    assertThat(get.getJSONArray("Attempts").getInt(1)).isEqualTo(3);
+    assertThat(get.getJSONArray("AttemptLatency").length()).isEqualTo(4);
+    assertThat(get.getJSONArray("Errors").getInt(0)).isEqualTo(0);
+    assertThat(get.getJSONArray("Errors").getInt(1)).isEqualTo(1);
+    assertThat(new JSONObject(lines.get(1)).getString("Operation")).isEqualTo("ListArchiveRules");
+  }
+
+  @Test
+  void testLinesStayWithinValueLimit() {
+    val calls = new ArrayList<ApiMetrics.ApiCall>();
+    for (int i = 0; i < 150; i++) {
+      calls.add(call("CreateArchiveRule", 1, null));
+    }
+    for (int i = 0; i < 30; i++) {
+      calls.add(call("DeleteArchiveRule", 4, null));
+    }
+    List<String> lines = ApiMetrics.emfLines(calls, 0L);
+    assertThat(lines).hasSize(4);
+    for (val line : lines) {
+      val json = new JSONObject(line);
+      assertThat(json.getJSONArray("Latency").length()).isLessThanOrEqualTo(ApiMetrics.MAX_VALUES);
+      assertThat(json.getJSONArray("AttemptLatency").length())
+          .isLessThanOrEqualTo(ApiMetrics.MAX_VALUES);
+    }
+  }
+
+  @Test
+  void testFlushLogsOnce() {
+    val metrics = new ApiMetrics();
+    val logger = mock(Logger.class);
+    metrics.record(call("GetAnalyzer", 1, null));
+    metrics.flush(logger);
+    metrics.flush(logger);
+    verify(logger, times(1)).log(anyString());
+  }
+
+  @Test
+  void testInterceptorRecordsCalls() throws IOException {
+    val metrics = new ApiMetrics();
+    // Replacing the override configuration leaves out the interceptor of the invocation
+    try (LocalAccessAnalyzerServer server = LocalAccessAnalyzerServer
+        .start(new InMemoryAccessAnalyzer("us-west-2", "111111111111"));
+        AccessAnalyzerClient client = ClientBuilder
+            .builder(Settings.builder().endpoint(server.endpoint()).build())
+            .region(Region.US_WEST_2)
+            .credentialsProvider(
+                StaticCredentialsProvider.create(AwsBasicCredentials.create("KEY", "SECRET")))
+            .overrideConfiguration(
+                c -> c.addExecutionInterceptor(new ApiMetricsInterceptor(metrics)))
+            .build()) {
+      client.createAnalyzer(
+          CreateAnalyzerRequest.builder().analyzerName("metered").type(Type.ACCOUNT).build());
+      assertThatThrownBy(() -> client.getAnalyzer(
+          GetAnalyzerRequest.builder().analyzerName("missing").build()))
+          .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    val calls = metrics.drain();
+    assertThat(calls).extracting(ApiMetrics.ApiCall::getOperation)
+        .containsExactly("CreateAnalyzer", "GetAnalyzer");
+    val create = calls.get(0);
+    assertThat(create.getError()).isNull();
+    assertThat(create.getAttemptMillis()).hasSize(1);
+    assertThat(create.getLatencyMillis()).isGreaterThanOrEqualTo(create.getAttemptMillis().get(0));
+    assertThat(create.getRequestBytes()).isPositive();
+    assertThat(create.getResponseBytes()).isPositive();
+    assertThat(calls.get(1).getError()).isEqualTo("ResourceNotFoundException");
+  }
+
+  @Test
+  void testCallsRecordIntoTheirInvocation() throws Exception {
+    try (LocalAccessAnalyzerServer server = LocalAccessAnalyzerServer
+        .start(new InMemoryAccessAnalyzer("us-west-2", "111111111111"));
+        AccessAnalyzerClient client = ClientBuilder
+            .builder(Settings.builder().endpoint(server.endpoint()).build())
+            .region(Region.US_WEST_2)
+            .credentialsProvider(
+                StaticCredentialsProvider.create(AwsBasicCredentials.create("KEY", "SECRET")))
+            .build()) {
+      // Outside an invocation nothing is kept
+      client.createAnalyzer(
+          CreateAnalyzerRequest.builder().analyzerName("outside").type(Type.ACCOUNT).build());
+      assertThat(ApiMetrics.current()).isNull();
+
+      // A call the invocation hands to the pool is still its own
+      val first = ApiMetrics.open();
+      BoundedExecutor.join(BoundedExecutor.supplyAsync(() -> client.getAnalyzer(
+          GetAnalyzerRequest.builder().analyzerName("outside").build())));
+      first.close();
+      assertThat(ApiMetrics.current()).isNull();
+
+      // Another invocation, running next to it on another thread, keeps its calls apart
+      val second = new AtomicReference<ApiMetrics>();
+      Thread thread = new Thread(() -> {
+        ApiMetrics metrics = ApiMetrics.open();
+        client.listAnalyzers(ListAnalyzersRequest.builder().build());
+        metrics.close();
+        second.set(metrics);
+      });
+      thread.start();
+      thread.join();
+
+      assertThat(first.drain()).extracting(ApiMetrics.ApiCall::getOperation)
+          .containsExactly("GetAnalyzer");
+      assertThat(second.get().drain()).extracting(ApiMetrics.ApiCall::getOperation)
+          .containsExactly("ListAnalyzers");
+    }
+  }
+
+  private static ApiMetrics.ApiCall call(String operation, int attempts, String error) {
+    return new ApiMetrics.ApiCall(operation, 10.0 * attempts,
+        new ArrayList<>(Collections.nCopies(attempts, 10.0)), 100, 200, error);
+  }
+}
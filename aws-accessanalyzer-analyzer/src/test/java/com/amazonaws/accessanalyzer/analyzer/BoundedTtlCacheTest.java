@@ -0,0 +1,51 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+class BoundedTtlCacheTest {
+
+  @Test
+  void testLeastRecentlyUsedGoesFirst() {
+    val cache = new BoundedTtlCache<String, Integer>(2, 1000);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    assertThat(cache.get("a")).isEqualTo(1);
+    cache.put("c", 3);
+    assertThat(cache.get("b")).isNull();
+    assertThat(cache.get("a")).isEqualTo(1);
+    assertThat(cache.get("c")).isEqualTo(3);
+    assertThat(cache.stats()).isEqualTo(new BoundedTtlCache.Stats(3, 1, 1, 2));
+  }
+
+  @Test
+  void testEntriesExpire() {
+    val now = new AtomicLong();
+    val cache = new BoundedTtlCache<String, Integer>(10, 100, now::get);
+    cache.put("a", 1);
+    now.set(99);
+    assertThat(cache.get("a")).isEqualTo(1);
+    now.set(100);
+    assertThat(cache.get("a")).isNull();
+    assertThat(cache.stats()).isEqualTo(new BoundedTtlCache.Stats(1, 1, 1, 0));
+  }
+
+  @Test
+  void testInvalidate() {
+    val cache = new BoundedTtlCache<String, Integer>(10, 1000);
+    cache.put("a", 1);
+    cache.invalidate("a");
+    assertThat(cache.get("a")).isNull();
+  }
+
+  @Test
+  void testZeroSizeCachesNothing() {
+    val cache = new BoundedTtlCache<String, Integer>(0, 1000);
+    cache.put("a", 1);
+    assertThat(cache.get("a")).isNull();
+    assertThat(cache.stats().getSize()).isZero();
+  }
+}
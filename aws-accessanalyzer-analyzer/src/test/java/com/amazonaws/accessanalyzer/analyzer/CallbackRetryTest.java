@@ -0,0 +1,98 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.ApiCallAttemptTimeoutException;
+import software.amazon.awssdk.core.retry.RetryPolicyContext;
+import software.amazon.awssdk.services.accessanalyzer.model.AccessAnalyzerException;
+import software.amazon.awssdk.services.accessanalyzer.model.CreateAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.ThrottlingException;
+import software.amazon.awssdk.services.accessanalyzer.model.ValidationException;
+import software.amazon.cloudformation.proxy.Logger;
+import software.amazon.cloudformation.proxy.OperationStatus;
+
+class CallbackRetryTest {
+
+  private static final Settings CALLBACK_RETRIES = Settings.builder()
+      .retryMode(Settings.RetryMode.CALLBACK)
+      .callbackRetries(3)
+      .build();
+
+  private final Logger logger = mock(Logger.class);
+  private final ResourceModel model = ResourceModel.builder().analyzerName("a").build();
+
+  @Test
+  void testTransientFailures() {
+    assertThat(CallbackRetry.isTransient(ThrottlingException.builder().build())).isTrue();
+    assertThat(CallbackRetry.isTransient(
+        AccessAnalyzerException.builder().statusCode(503).build())).isTrue();
+    assertThat(CallbackRetry.isTransient(
+        ApiCallAttemptTimeoutException.builder().message("timed out").build())).isTrue();
+    assertThat(CallbackRetry.isTransient(
+        ValidationException.builder().statusCode(400).build())).isFalse();
+    assertThat(CallbackRetry.isTransient(new IllegalStateException())).isFalse();
+  }
+
+  @Test
+  void testBackoffGrowsToCap() {
+    assertThat(CallbackRetry.backoffSeconds(0)).isEqualTo(CallbackRetry.BASE_DELAY_SECONDS);
+    assertThat(CallbackRetry.backoffSeconds(1)).isEqualTo(2 * CallbackRetry.BASE_DELAY_SECONDS);
+    assertThat(CallbackRetry.backoffSeconds(40)).isEqualTo(CallbackRetry.MAX_DELAY_SECONDS);
+  }
+
+  @Test
+  void testRetriesUntilUsedUp() {
+    CallbackContext context = null;
+    for (int i = 0; i < CALLBACK_RETRIES.getCallbackRetries(); i++) {
+      val event = CallbackRetry.retryLater(CALLBACK_RETRIES, model, context,
+          ThrottlingException.builder().build(), logger);
+      assertThat(event.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+      assertThat(event.getResourceModel()).isSameAs(model);
+      val backoff = CallbackRetry.backoffSeconds(i);
+      assertThat(event.getCallbackDelaySeconds())
+          .isBetween(Math.max(CallbackRetry.MIN_DELAY_SECONDS, backoff / 2), backoff);
+      context = event.getCallbackContext();
+      assertThat(context.getRetryAttempt()).isEqualTo(i + 1);
+    }
+    assertThat(CallbackRetry.retryLater(CALLBACK_RETRIES, model, context,
+        ThrottlingException.builder().build(), logger)).isNull();
+  }
+
+  @Test
+  void testDelaysAreNeverSleptInTheInvocation() {
+    for (int round = 0; round < 20; round++) {
+      CallbackContext context = null;
+      for (int i = 0; i < CALLBACK_RETRIES.getCallbackRetries(); i++) {
+        val event = CallbackRetry.retryLater(CALLBACK_RETRIES, model, context,
+            ThrottlingException.builder().build(), logger);
+        // The wrapper sleeps in the invocation for delays under a minute
+        assertThat(event.getCallbackDelaySeconds()).isGreaterThanOrEqualTo(60);
+        context = event.getCallbackContext();
+      }
+    }
+  }
+
+  @Test
+  void testNoCallbacksInSdkMode() {
+    assertThat(CallbackRetry.retryLater(Settings.builder().build(), model, null,
+        ThrottlingException.builder().build(), logger)).isNull();
+  }
+
+  @Test
+  void testSdkOnlyRetriesReads() {
+    val throttled = ThrottlingException.builder().statusCode(429).build();
+    val condition = CallbackRetry.retryPolicy(CALLBACK_RETRIES).retryCondition();
+    assertThat(condition.shouldRetry(RetryPolicyContext.builder()
+        .originalRequest(GetAnalyzerRequest.builder().analyzerName("a").build())
+        .exception(throttled)
+        .build())).isTrue();
+    assertThat(condition.shouldRetry(RetryPolicyContext.builder()
+        .originalRequest(CreateAnalyzerRequest.builder().analyzerName("a").build())
+        .exception(throttled)
+        .build())).isFalse();
+  }
+}
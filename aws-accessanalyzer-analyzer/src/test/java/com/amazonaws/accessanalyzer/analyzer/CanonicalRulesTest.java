@@ -0,0 +1,73 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Collections;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+class CanonicalRulesTest {
+
+  @Test
+  void testOrderDoesNotMatter() {
+    val rule = ArchiveRule.builder().ruleName("r")
+        .filter(ImmutableList.of(
+            Filter.builder().property("b").eq(ImmutableList.of("2", "1")).build(),
+            Filter.builder().property("a").contains(ImmutableList.of("x")).build()))
+        .build();
+    val reordered = ArchiveRule.builder().ruleName("r")
+        .filter(ImmutableList.of(
+            Filter.builder().property("a").contains(ImmutableList.of("x"))
+                .neq(Collections.emptyList()).build(),
+            Filter.builder().property("b").eq(ImmutableList.of("1", "2", "1")).build()))
+        .build();
+    assertThat(rule).isNotEqualTo(reordered);
+    assertThat(CanonicalRules.equivalent(rule, reordered)).isTrue();
+    assertThat(CanonicalRules.canonical(rule)).isEqualTo(CanonicalRules.canonical(reordered));
+  }
+
+  @Test
+  void testCanonicalForm() {
+    val rule = ArchiveRule.builder().ruleName("r")
+        .filter(ImmutableList.of(
+            Filter.builder().property("b").eq(ImmutableList.of("2", "1")).build(),
+            Filter.builder().property("a").exists(true).neq(Collections.emptyList()).build()))
+        .build();
+    val canonical = CanonicalRules.canonical(rule);
+    assertThat(Util.map(canonical.getFilter(), Filter::getProperty)).containsExactly("a", "b");
+    assertThat(canonical.getFilter().get(0).getNeq()).isNull();
+    assertThat(canonical.getFilter().get(0).getExists()).isTrue();
+    assertThat(canonical.getFilter().get(1).getEq()).containsExactly("1", "2");
+  }
+
+  @Test
+  void testDifferentValuesDiffer() {
+    val rule = ArchiveRule.builder().ruleName("r")
+        .filter(ImmutableList.of(Filter.builder().property("a").eq(ImmutableList.of("1")).build()))
+        .build();
+    val changed = ArchiveRule.builder().ruleName("r")
+        .filter(ImmutableList.of(Filter.builder().property("a").neq(ImmutableList.of("1")).build()))
+        .build();
+    assertThat(CanonicalRules.equivalent(rule, changed)).isFalse();
+  }
+
+  @Test
+  void testRulesSortByName() {
+    val rules = CanonicalRules.canonical(ImmutableList.of(
+        ArchiveRule.builder().ruleName("b").filter(Collections.emptyList()).build(),
+        ArchiveRule.builder().ruleName("a").filter(Collections.emptyList()).build()));
+    assertThat(Util.map(rules, Util::ruleName)).containsExactly("a", "b");
+  }
+
+  @Test
+  void testMissingPropertiesSortFirst() {
+    val rule = CanonicalRules.canonical(ArchiveRule.builder().ruleName("r")
+        .filter(ImmutableList.of(
+            Filter.builder().property("a").exists(true).build(),
+            Filter.builder().exists(false).build(),
+            Filter.builder().exists(true).build()))
+        .build());
+    assertThat(Util.map(rule.getFilter(), Filter::getProperty)).containsExactly(null, null, "a");
+  }
+}
@@ -0,0 +1,125 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import lombok.val;
+import org.json.JSONObject;
+
+/**
+ * The training run of the class-data sharing archive: a cold JVM that runs Create, Read, List,
+ * Update and Delete once each through {@link LambdaBootstrap} and the generated
+ * {@code HandlerWrapper}, against a {@link LocalAccessAnalyzerServer} instead of the service.
+ * The {@code cds} profile runs it with {@code -XX:DumpLoadedClassList}, and the archive is dumped
+ * from the classes it loaded, which are the classes a container loads for its first request.
+ *
+ * <p>The events are the {@code sam-tests} ones, chained so that each finds the analyzer the
+ * previous one created, and sent to {@code handleRequest} in the form CloudFormation sends them,
+ * so the archive holds what production loads: request validation, the wrapper's own clients and
+ * its re-invocation of an update that is checkpointed.  The handlers build their clients from
+ * the environment, so {@code ACCESS_ANALYZER_ENDPOINT} must name the local port the stand-in
+ * listens on, as the {@code cds} profile sets it.  The wrapper's metrics and progress calls go
+ * to the regional endpoints with the training credentials and fail, which the wrapper logs and
+ * carries on from.  Any status other than SUCCESS fails the run, so a broken jar can't produce
+ * an archive.
+ */
+public class CdsTraining {
+
+  // The account and region of the ARNs in the sam-tests events
+  private static final String REGION = "us-east-1";
+  private static final String ACCOUNT = "196433972733";
+
+  private final Path dir;
+  private final HandlerWrapper wrapper = new HandlerWrapper();
+  // Only printed when an event fails
+  private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+  private CdsTraining(Path dir) {
+    this.dir = dir;
+  }
+
+  public static void main(String[] args) throws IOException {
+    val endpoint = Settings.current().getEndpoint();
+    if (endpoint == null || endpoint.getPort() < 0) {
+      throw new IllegalStateException("Set " + Settings.ENDPOINT_ENV
+          + " to http://localhost:<port>, or run through mvn -P cds package");
+    }
+    try (LocalAccessAnalyzerServer server = LocalAccessAnalyzerServer
+        .start(new InMemoryAccessAnalyzer(REGION, ACCOUNT), endpoint.getPort())) {
+      new CdsTraining(Paths.get(args.length > 0 ? args[0] : "sam-tests")).run();
+      System.out.println("Trained on " + server.requestsServed() + " AccessAnalyzer requests");
+    }
+  }
+
+  private void run() throws IOException {
+    val created = invoke(event("create")).getJSONObject("resourceModel");
+    val arn = new JSONObject().put("Arn", created.getString("Arn"));
+
+    invoke(request(event("read"), "desiredResourceState", arn));
+    invoke(event("list"));
+    invoke(request(event("update"), "previousResourceState", created));
+    invoke(request(event("delete"), "desiredResourceState", arn));
+  }
+
+  private JSONObject event(String name) throws IOException {
+    return new JSONObject(new String(Files.readAllBytes(dir.resolve(name + ".json")),
+        StandardCharsets.UTF_8));
+  }
+
+  // The event with one property of its request replaced
+  private static JSONObject request(JSONObject event, String key, JSONObject value) {
+    event.getJSONObject("request").put(key, value);
+    return event;
+  }
+
+  // Sends the event to handleRequest, which serves the callbacks of a checkpointed update
+  // itself, and returns its response
+  private JSONObject invoke(JSONObject event) throws IOException {
+    val request = handlerRequest(event);
+    val bytes = LambdaBootstrap.invokeLocal(wrapper, false,
+        new ByteArrayInputStream(request.toString().getBytes(StandardCharsets.UTF_8)),
+        new PrintStream(log, true, StandardCharsets.UTF_8.name()));
+    val response = new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+    if (!"SUCCESS".equals(response.optString("operationStatus"))) {
+      System.err.print(new String(log.toByteArray(), StandardCharsets.UTF_8));
+      throw new IllegalStateException("Training " + event.getString("action") + " ended with "
+          + response);
+    }
+    return response;
+  }
+
+  // The request CloudFormation would send for a sam-tests event.  The local server doesn't check
+  // the credentials.
+  private static JSONObject handlerRequest(JSONObject event) {
+    val request = event.getJSONObject("request");
+    val requestData = new JSONObject()
+        .put("callerCredentials", credentials())
+        .put("platformCredentials", credentials())
+        .put("logicalResourceId", request.optString("logicalResourceIdentifier", "Training"))
+        .put("resourceProperties", request.opt("desiredResourceState"))
+        .put("previousResourceProperties", request.opt("previousResourceState"));
+    return new JSONObject()
+        .put("awsAccountId", ACCOUNT)
+        .put("region", REGION)
+        .put("action", event.getString("action"))
+        .put("resourceType", ResourceModel.TYPE_NAME)
+        .put("bearerToken", UUID.randomUUID().toString())
+        .put("responseEndpoint", "https://cloudformation." + REGION + ".amazonaws.com")
+        .put("stackId", "arn:aws:cloudformation:" + REGION + ":" + ACCOUNT
+            + ":stack/CdsTraining/" + UUID.randomUUID())
+        .put("requestData", requestData);
+  }
+
+  private static JSONObject credentials() {
+    return new JSONObject()
+        .put("accessKeyId", "TRAINING_KEY")
+        .put("secretAccessKey", "TRAINING_SECRET")
+        .put("sessionToken", "TRAINING_SESSION");
+  }
+}
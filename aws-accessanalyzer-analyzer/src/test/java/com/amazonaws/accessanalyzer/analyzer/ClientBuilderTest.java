@@ -0,0 +1,166 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.util.ArrayList;
+import lombok.val;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
+import software.amazon.awssdk.services.accessanalyzer.model.CreateAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.ListAnalyzersRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.Type;
+import software.amazon.cloudformation.Action;
+import software.amazon.cloudformation.proxy.Logger;
+
+class ClientBuilderTest {
+
+  @Mock
+  private Logger logger;
+
+  @BeforeEach
+  void setup() {
+    logger = mock(Logger.class);
+    // An explicit region and credentials, so nothing depends on the AWS config of the machine
+    ClientBuilder.setClientFactory(() -> ClientBuilder.builder(Settings.builder().build())
+        .region(Region.US_WEST_2)
+        .credentialsProvider(
+            StaticCredentialsProvider.create(AwsBasicCredentials.create("KEY", "SECRET")))
+        .build(), logger);
+  }
+
+  @AfterEach
+  void tearDown() {
+    ClientBuilder.setClientFactory(ClientBuilder::getClient, logger);
+  }
+
+  @Test
+  void testClientIsReusedAcrossInvocations() {
+    AccessAnalyzerClient first = ClientBuilder.withSharedClient(logger, client -> client);
+    AccessAnalyzerClient second = ClientBuilder.withSharedClient(logger, client -> client);
+    assertThat(second).isSameAs(first);
+    assertThat(ClientBuilder.invocationsServed()).isEqualTo(2);
+  }
+
+  @Test
+  void testResetBuildsNewClient() {
+    AccessAnalyzerClient first = ClientBuilder.withSharedClient(logger, client -> client);
+    val generation = ClientBuilder.clientGeneration();
+    ClientBuilder.resetClient(logger);
+    assertThat(ClientBuilder.invocationsServed()).isEqualTo(0);
+    AccessAnalyzerClient second = ClientBuilder.withSharedClient(logger, client -> client);
+    assertThat(second).isNotSameAs(first);
+    assertThat(ClientBuilder.clientGeneration()).isEqualTo(generation + 1);
+    assertThat(ClientBuilder.invocationsServed()).isEqualTo(1);
+  }
+
+  @Test
+  void testEscapingExceptionDiscardsClient() {
+    AccessAnalyzerClient first = ClientBuilder.withSharedClient(logger, client -> client);
+    assertThatThrownBy(() -> ClientBuilder.withSharedClient(logger, client -> {
+      throw new IllegalStateException("Connection pool shut down");
+    })).isInstanceOf(IllegalStateException.class);
+    AccessAnalyzerClient second = ClientBuilder.withSharedClient(logger, client -> client);
+    assertThat(second).isNotSameAs(first);
+  }
+
+  @Test
+  void testOtherExceptionKeepsClient() {
+    AccessAnalyzerClient first = ClientBuilder.withSharedClient(logger, client -> client);
+    assertThatThrownBy(() -> ClientBuilder.withSharedClient(logger, client -> {
+      throw new NullPointerException("no model");
+    })).isInstanceOf(NullPointerException.class);
+    AccessAnalyzerClient second = ClientBuilder.withSharedClient(logger, client -> client);
+    assertThat(second).isSameAs(first);
+  }
+
+  @Test
+  void testDiscardedClientClosesAfterLastUser() {
+    val client = mock(AccessAnalyzerClient.class);
+    ClientBuilder.setClientFactory(() -> client, logger);
+    ClientBuilder.withSharedClient(logger, outer -> {
+      // Another invocation fails with the client while this one is still using it
+      assertThatThrownBy(() -> ClientBuilder.withSharedClient(logger, inner -> {
+        throw SdkClientException.create("Unable to execute HTTP request");
+      })).isInstanceOf(SdkClientException.class);
+      verify(client, never()).close();
+      return outer;
+    });
+    verify(client).close();
+    assertThat(ClientBuilder.clientGeneration()).isEqualTo(0);
+  }
+
+  @Test
+  void testMetricsAreWrittenAtErrorLevel() throws IOException {
+    try (LocalAccessAnalyzerServer server = LocalAccessAnalyzerServer
+        .start(new InMemoryAccessAnalyzer("us-west-2", "111111111111"))) {
+      ClientBuilder.setClientFactory(() -> ClientBuilder
+          .builder(Settings.builder().endpoint(server.endpoint()).build())
+          .region(Region.US_WEST_2)
+          .credentialsProvider(
+              StaticCredentialsProvider.create(AwsBasicCredentials.create("KEY", "SECRET")))
+          .build(), logger);
+      val lines = new ArrayList<String>();
+      val handlerLogger = HandlerLogger.forInvocation(lines::add, Action.LIST,
+          Settings.builder().logLevel(HandlerLogger.Level.ERROR).build());
+
+      ClientBuilder.withSharedClient(handlerLogger, client -> {
+        handlerLogger.info(() -> "listing");
+        return client.listAnalyzers(ListAnalyzersRequest.builder().build());
+      });
+
+      // The INFO message is dropped with the buffer, the metrics line is not
+      assertThat(lines).noneMatch("listing"::equals);
+      assertThat(lines).anyMatch(line -> line.contains("\"Operation\":\"ListAnalyzers\""));
+    }
+  }
+
+  @Test
+  void testEveryHttpClientReachesEndpoint() throws IOException {
+    try (LocalAccessAnalyzerServer server = LocalAccessAnalyzerServer
+        .start(new InMemoryAccessAnalyzer("us-west-2", "111111111111"))) {
+      for (val type : Settings.HttpClientType.values()) {
+        val settings = Settings.builder().endpoint(server.endpoint()).httpClient(type).build();
+        try (AccessAnalyzerClient client = ClientBuilder.builder(settings)
+            .region(Region.US_WEST_2)
+            .credentialsProvider(
+                StaticCredentialsProvider.create(AwsBasicCredentials.create("KEY", "SECRET")))
+            .build()) {
+          val name = "analyzer-" + type;
+          client.createAnalyzer(
+              CreateAnalyzerRequest.builder().analyzerName(name).type(Type.ACCOUNT).build());
+          assertThat(client.getAnalyzer(GetAnalyzerRequest.builder().analyzerName(name).build())
+              .analyzer().name()).isEqualTo(name);
+        }
+        // Closing the AccessAnalyzer client leaves the shared HTTP client open
+        assertThat(HttpClients.get(settings)).isSameAs(HttpClients.get(settings));
+      }
+    }
+  }
+
+  @Test
+  void testHttpClientFromEnvironment() {
+    assertThat(Settings.fromEnvironment(
+        ImmutableMap.of(Settings.HTTP_CLIENT_ENV, "url-connection")).getHttpClient())
+        .isEqualTo(Settings.HttpClientType.URL_CONNECTION);
+    assertThat(Settings.fromEnvironment(
+        ImmutableMap.of(Settings.HTTP_CLIENT_ENV, "Apache")).getHttpClient())
+        .isEqualTo(Settings.HttpClientType.APACHE);
+    assertThat(Settings.fromEnvironment(
+        ImmutableMap.of(Settings.HTTP_CLIENT_ENV, "crt")).getHttpClient())
+        .isEqualTo(Settings.HttpClientType.WRAPPER);
+  }
+}
@@ -12,9 +12,13 @@ import lombok.val;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
 import software.amazon.awssdk.services.accessanalyzer.model.DeleteAnalyzerRequest;
 import software.amazon.awssdk.services.accessanalyzer.model.DeleteAnalyzerResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.InternalServerException;
+import software.amazon.awssdk.services.accessanalyzer.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.accessanalyzer.model.ServiceQuotaExceededException;
+import software.amazon.awssdk.services.accessanalyzer.model.ThrottlingException;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
@@ -123,6 +127,59 @@ class DeleteHandlerTest {
     assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.ServiceInternalError);
   }
 
+  @Test
+  void testThrottlingFailsWithSdkRetries() {
+    doThrow(ThrottlingException.builder().message("slow down").build()).when(proxy)
+        .injectCredentialsAndInvokeV2(any(), any());
+    val response = invokeWithSettings(new CallbackContext(), Settings.builder().build());
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+    assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.Throttling);
+  }
+
+  @Test
+  void testThrottlingCallsBack() {
+    doThrow(ThrottlingException.builder().message("slow down").build()).when(proxy)
+        .injectCredentialsAndInvokeV2(any(), any());
+    val response = invokeWithSettings(new CallbackContext(), CALLBACK_RETRIES);
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+    assertThat(response.getCallbackContext().getRetryAttempt()).isEqualTo(1);
+    assertThat(response.getCallbackContext().getBackoffSeconds())
+        .isEqualTo(CallbackRetry.BASE_DELAY_SECONDS);
+    assertThat(response.getCallbackDelaySeconds())
+        .isBetween(CallbackRetry.MIN_DELAY_SECONDS, CallbackRetry.BASE_DELAY_SECONDS);
+  }
+
+  @Test
+  void testCallbackRetriesRunOut() {
+    doThrow(InternalServerException.builder().message("internal failure").build()).when(proxy)
+        .injectCredentialsAndInvokeV2(any(), any());
+    val context = CallbackContext.builder()
+        .retryAttempt(CALLBACK_RETRIES.getCallbackRetries())
+        .build();
+    val response = invokeWithSettings(context, CALLBACK_RETRIES);
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+    assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.ServiceInternalError);
+  }
+
+  @Test
+  void testNotFoundAfterCallbackIsSuccess() {
+    doThrow(ResourceNotFoundException.builder().message("gone").build()).when(proxy)
+        .injectCredentialsAndInvokeV2(any(), any());
+    val response = invokeWithSettings(CallbackContext.builder().retryAttempt(1).build(),
+        CALLBACK_RETRIES);
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+  }
+
+  private static final Settings CALLBACK_RETRIES = Settings.builder()
+      .retryMode(Settings.RetryMode.CALLBACK)
+      .build();
+
+  private ProgressEvent<ResourceModel, CallbackContext> invokeWithSettings(
+      CallbackContext context, Settings settings) {
+    return DeleteHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy,
+        prepareHandlerRequest(), context, logger, settings);
+  }
+
   private ResourceHandlerRequest<ResourceModel> prepareHandlerRequest() {
     val model = ResourceModel.builder()
         .arn(ANALYZER_ARN)
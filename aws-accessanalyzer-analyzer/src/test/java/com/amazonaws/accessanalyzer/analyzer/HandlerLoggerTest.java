@@ -0,0 +1,121 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.val;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.cloudformation.Action;
+import software.amazon.cloudformation.proxy.Logger;
+
+class HandlerLoggerTest {
+
+  private List<String> lines;
+  private Logger sink;
+
+  @BeforeEach
+  void setup() {
+    lines = new ArrayList<>();
+    sink = lines::add;
+  }
+
+  @Test
+  void testMessagesBelowLevelAreNotBuilt() {
+    val log = logger(HandlerLogger.Level.INFO);
+    val built = new AtomicInteger();
+    log.debug(() -> "debug " + built.incrementAndGet());
+    log.info(() -> "info");
+    log.flush();
+    assertThat(built.get()).isEqualTo(0);
+    assertThat(lines).hasSize(2);
+    assertThat(lines.get(0)).isEqualTo("info");
+    val summary = new JSONObject(lines.get(1));
+    assertThat(summary.getString("handler")).isEqualTo("UPDATE");
+    assertThat(summary.getBoolean("failed")).isFalse();
+    assertThat(summary.getInt("buffered")).isEqualTo(1);
+  }
+
+  @Test
+  void testItemsAreCountedAndSampled() {
+    val log = logger(HandlerLogger.Level.INFO);
+    for (int i = 0; i < 10; i++) {
+      val rule = "rule-" + i;
+      log.item("DeleteArchiveRule", () -> "Deleting archive rule " + rule);
+    }
+    log.item("CreateArchiveRule", () -> "Adding archive rule new");
+    log.flush();
+    assertThat(lines).hasSize(1);
+    val summary = new JSONObject(lines.get(0));
+    assertThat(summary.getJSONObject("events").getInt("DeleteArchiveRule")).isEqualTo(10);
+    assertThat(summary.getJSONObject("events").getInt("CreateArchiveRule")).isEqualTo(1);
+    val samples = summary.getJSONObject("samples").getJSONArray("DeleteArchiveRule");
+    assertThat(samples.length()).isEqualTo(3);
+    assertThat(samples.getString(2)).isEqualTo("Deleting archive rule rule-2");
+  }
+
+  @Test
+  void testErrorWritesBufferInFull() {
+    val log = logger(HandlerLogger.Level.INFO);
+    log.debug(() -> "before");
+    log.item("DeleteArchiveRule", () -> "Deleting archive rule a");
+    log.error(() -> "failed");
+    log.flush();
+    assertThat(lines).hasSize(4);
+    assertThat(lines.subList(0, 3))
+        .containsExactly("failed", "before", "Deleting archive rule a");
+    assertThat(new JSONObject(lines.get(3)).getBoolean("failed")).isTrue();
+  }
+
+  @Test
+  void testEscapedFailureWritesBufferInFull() {
+    val log = logger(HandlerLogger.Level.INFO);
+    log.debug(() -> "before");
+    log.failed();
+    log.flush();
+    log.flush();
+    assertThat(lines).hasSize(2);
+    assertThat(lines.get(0)).isEqualTo("before");
+  }
+
+  @Test
+  void testDebugLevelWritesEverything() {
+    val log = logger(HandlerLogger.Level.DEBUG);
+    log.debug(() -> "debug");
+    log.item("DeleteArchiveRule", () -> "Deleting archive rule a");
+    assertThat(lines).containsExactly("debug", "Deleting archive rule a");
+  }
+
+  @Test
+  void testBufferIsBounded() {
+    val log = logger(HandlerLogger.Level.ERROR);
+    for (int i = 0; i < HandlerLogger.MAX_BUFFERED + 5; i++) {
+      log.log("info");
+    }
+    log.flush();
+    val summary = new JSONObject(lines.get(0));
+    assertThat(summary.getInt("buffered")).isEqualTo(HandlerLogger.MAX_BUFFERED);
+    assertThat(summary.getInt("dropped")).isEqualTo(5);
+  }
+
+  @Test
+  void testWrappedLoggerIsUnbuffered() {
+    val logger = mock(Logger.class);
+    val log = HandlerLogger.of(logger);
+    assertThat(HandlerLogger.of(log)).isSameAs(log);
+    log.debug(() -> "debug");
+    log.failed();
+    log.flush();
+    verifyZeroInteractions(logger);
+  }
+
+  private HandlerLogger logger(HandlerLogger.Level level) {
+    return HandlerLogger.forInvocation(sink, Action.UPDATE,
+        Settings.builder().logLevel(level).logSamplesPerEvent(3).build());
+  }
+}
@@ -0,0 +1,284 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Value;
+import lombok.val;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.accessanalyzer.model.AnalyzerSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.ArchiveRuleSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.ConflictException;
+import software.amazon.awssdk.services.accessanalyzer.model.Criterion;
+import software.amazon.awssdk.services.accessanalyzer.model.InternalServerException;
+import software.amazon.awssdk.services.accessanalyzer.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.accessanalyzer.model.ThrottlingException;
+import software.amazon.awssdk.services.accessanalyzer.model.Type;
+import software.amazon.awssdk.services.accessanalyzer.model.ValidationException;
+
+/**
+ * The analyzers, archive rules and tags of one account in one region.  Failures are thrown as the
+ * SDK exceptions the service would send, so stand-ins can either serialize them or rethrow them.
+ */
+class InMemoryAccessAnalyzer {
+
+  static final int DEFAULT_PAGE_SIZE = 100;
+
+  @Value
+  static class Page<T> {
+
+    List<T> items;
+    String nextToken; // Null on the last page
+  }
+
+  private static class Analyzer {
+
+    private final String arn;
+    private final String name;
+    private final String type;
+    private final String clientToken;
+    private final Instant createdAt = Instant.now();
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private final Map<String, ArchiveRuleSummary> rules = new LinkedHashMap<>();
+
+    private Analyzer(String arn, String name, String type, String clientToken) {
+      this.arn = arn;
+      this.name = name;
+      this.type = type;
+      this.clientToken = clientToken;
+    }
+
+    private AnalyzerSummary summary() {
+      return AnalyzerSummary.builder()
+          .arn(arn)
+          .name(name)
+          .type(type)
+          .createdAt(createdAt)
+          .tags(new LinkedHashMap<>(tags))
+          .build();
+    }
+  }
+
+  private final String region;
+  private final String account;
+  private final int pageSize;
+  private final Map<String, Analyzer> analyzers = new LinkedHashMap<>();
+
+  InMemoryAccessAnalyzer(String region, String account) {
+    this(region, account, DEFAULT_PAGE_SIZE);
+  }
+
+  InMemoryAccessAnalyzer(String region, String account, int pageSize) {
+    this.region = region;
+    this.account = account;
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * Creates an analyzer with its archive rules and tags.  Repeating a create with the same client
+   * token returns the existing analyzer, as the service does for retried requests.
+   */
+  synchronized String createAnalyzer(String name, String type, Map<String, String> tags,
+      Map<String, Map<String, Criterion>> rules, String clientToken) {
+    if (name == null || name.isEmpty()) {
+      throw validation("analyzerName is required");
+    }
+    val parsedType = type == null ? null : Type.fromValue(type);
+    if (parsedType == null || parsedType == Type.UNKNOWN_TO_SDK_VERSION) {
+      throw validation("Invalid type: " + type);
+    }
+    val existing = analyzers.get(name);
+    if (existing != null) {
+      if (clientToken != null && clientToken.equals(existing.clientToken)) {
+        return existing.arn;
+      }
+      throw conflict("Analyzer " + name + " already exists");
+    }
+    val arn = String.format("arn:aws:access-analyzer:%s:%s:analyzer/%s", region, account, name);
+    val analyzer = new Analyzer(arn, name, type, clientToken);
+    if (tags != null) {
+      analyzer.tags.putAll(tags);
+    }
+    if (rules != null) {
+      for (val rule : rules.entrySet()) {
+        analyzer.rules.put(rule.getKey(), rule(rule.getKey(), rule.getValue(), null));
+      }
+    }
+    analyzers.put(name, analyzer);
+    return arn;
+  }
+
+  synchronized AnalyzerSummary getAnalyzer(String name) {
+    return analyzer(name).summary();
+  }
+
+  synchronized void deleteAnalyzer(String name) {
+    if (analyzers.remove(name) == null) {
+      throw notFound("Analyzer " + name + " not found");
+    }
+  }
+
+  synchronized Page<AnalyzerSummary> listAnalyzers(String type, Integer maxResults,
+      String nextToken) {
+    val summaries = new ArrayList<AnalyzerSummary>(analyzers.size());
+    for (val analyzer : analyzers.values()) {
+      if (type == null || type.equals(analyzer.type)) {
+        summaries.add(analyzer.summary());
+      }
+    }
+    return page(summaries, maxResults, nextToken);
+  }
+
+  synchronized void createArchiveRule(String analyzerName, String ruleName,
+      Map<String, Criterion> filter) {
+    val analyzer = analyzer(analyzerName);
+    if (analyzer.rules.containsKey(ruleName)) {
+      throw conflict("Archive rule " + ruleName + " already exists");
+    }
+    analyzer.rules.put(ruleName, rule(ruleName, filter, null));
+  }
+
+  synchronized void updateArchiveRule(String analyzerName, String ruleName,
+      Map<String, Criterion> filter) {
+    val analyzer = analyzer(analyzerName);
+    val existing = analyzer.rules.get(ruleName);
+    if (existing == null) {
+      throw notFound("Archive rule " + ruleName + " not found");
+    }
+    analyzer.rules.put(ruleName, rule(ruleName, filter, existing.createdAt()));
+  }
+
+  synchronized void deleteArchiveRule(String analyzerName, String ruleName) {
+    if (analyzer(analyzerName).rules.remove(ruleName) == null) {
+      throw notFound("Archive rule " + ruleName + " not found");
+    }
+  }
+
+  synchronized ArchiveRuleSummary getArchiveRule(String analyzerName, String ruleName) {
+    val rule = analyzer(analyzerName).rules.get(ruleName);
+    if (rule == null) {
+      throw notFound("Archive rule " + ruleName + " not found");
+    }
+    return rule;
+  }
+
+  synchronized Page<ArchiveRuleSummary> listArchiveRules(String analyzerName,
+      Integer maxResults, String nextToken) {
+    return page(new ArrayList<>(analyzer(analyzerName).rules.values()), maxResults, nextToken);
+  }
+
+  synchronized void tagResource(String arn, Map<String, String> tags) {
+    analyzerByArn(arn).tags.putAll(tags);
+  }
+
+  synchronized void untagResource(String arn, Collection<String> tagKeys) {
+    analyzerByArn(arn).tags.keySet().removeAll(tagKeys);
+  }
+
+  synchronized Map<String, String> listTagsForResource(String arn) {
+    return new LinkedHashMap<>(analyzerByArn(arn).tags);
+  }
+
+  synchronized int analyzerCount() {
+    return analyzers.size();
+  }
+
+  private Analyzer analyzer(String name) {
+    val analyzer = analyzers.get(name);
+    if (analyzer == null) {
+      throw notFound("Analyzer " + name + " not found");
+    }
+    return analyzer;
+  }
+
+  private Analyzer analyzerByArn(String arn) {
+    for (val analyzer : analyzers.values()) {
+      if (analyzer.arn.equals(arn)) {
+        return analyzer;
+      }
+    }
+    throw notFound("Resource " + arn + " not found");
+  }
+
+  private static ArchiveRuleSummary rule(String ruleName, Map<String, Criterion> filter,
+      Instant createdAt) {
+    if (filter == null || filter.isEmpty()) {
+      throw validation("Archive rule " + ruleName + " has no filter");
+    }
+    val now = Instant.now();
+    return ArchiveRuleSummary.builder()
+        .ruleName(ruleName)
+        .filter(new LinkedHashMap<>(filter))
+        .createdAt(createdAt == null ? now : createdAt)
+        .updatedAt(now)
+        .build();
+  }
+
+  // The next token is the offset of the page
+  private <T> Page<T> page(List<T> items, Integer maxResults, String nextToken) {
+    int from;
+    try {
+      from = nextToken == null ? 0 : Integer.parseInt(nextToken);
+    } catch (NumberFormatException ex) {
+      throw validation("Invalid nextToken: " + nextToken);
+    }
+    if (from < 0 || from > items.size()) {
+      throw validation("Invalid nextToken: " + nextToken);
+    }
+    val size = maxResults == null ? pageSize : Math.min(maxResults, pageSize);
+    val to = Math.min(items.size(), from + size);
+    return new Page<>(new ArrayList<>(items.subList(from, to)),
+        to < items.size() ? Integer.toString(to) : null);
+  }
+
+  static ResourceNotFoundException notFound(String message) {
+    return ResourceNotFoundException.builder()
+        .message(message)
+        .statusCode(404)
+        .awsErrorDetails(details("ResourceNotFoundException", message))
+        .build();
+  }
+
+  static ConflictException conflict(String message) {
+    return ConflictException.builder()
+        .message(message)
+        .statusCode(409)
+        .awsErrorDetails(details("ConflictException", message))
+        .build();
+  }
+
+  static ValidationException validation(String message) {
+    return ValidationException.builder()
+        .message(message)
+        .statusCode(400)
+        .awsErrorDetails(details("ValidationException", message))
+        .build();
+  }
+
+  static ThrottlingException throttling(String message) {
+    return ThrottlingException.builder()
+        .message(message)
+        .statusCode(429)
+        .awsErrorDetails(details("ThrottlingException", message))
+        .build();
+  }
+
+  static InternalServerException internalError(String message) {
+    return InternalServerException.builder()
+        .message(message)
+        .statusCode(500)
+        .awsErrorDetails(details("InternalServerException", message))
+        .build();
+  }
+
+  private static AwsErrorDetails details(String errorCode, String message) {
+    return AwsErrorDetails.builder()
+        .errorCode(errorCode)
+        .errorMessage(message)
+        .serviceName("AccessAnalyzer")
+        .build();
+  }
+}
@@ -0,0 +1,139 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.val;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// Runs the bootstrap loop against a stand-in for the Lambda runtime API
+class LambdaBootstrapTest {
+
+  private static final String RUNTIME_API = "/2018-06-01/runtime";
+  private static final String FUNCTION_ARN =
+      "arn:aws:lambda:us-east-1:111111111111:function:analyzer";
+
+  // The events /invocation/next hands out, and the paths and bodies posted back
+  private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+  private final BlockingQueue<String> posted = new LinkedBlockingQueue<>();
+  private final AtomicInteger requestIds = new AtomicInteger();
+  private HttpServer server;
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "runtime-api");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.createContext(RUNTIME_API, this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+    // Ends the /invocation/next that the loop is waiting on
+    executor.shutdownNow();
+  }
+
+  @Test
+  void testServesInvocationsUntilStopped() throws Exception {
+    RequestStreamHandler handler = (in, out, context) -> {
+      val event = new String(read(in), StandardCharsets.UTF_8);
+      if ("fail".equals(event)) {
+        throw new IllegalStateException("failed " + context.getAwsRequestId());
+      }
+      assertThat(context.getInvokedFunctionArn()).isEqualTo(FUNCTION_ARN);
+      assertThat(context.getRemainingTimeInMillis()).isPositive();
+      context.getLogger().log("handled " + event);
+      out.write(event.toUpperCase().getBytes(StandardCharsets.UTF_8));
+    };
+    events.add("create");
+    events.add("fail");
+    events.add("read");
+
+    Thread loop = new Thread(() -> {
+      try {
+        LambdaBootstrap.serve("http://localhost:" + server.getAddress().getPort() + RUNTIME_API,
+            handler);
+      } catch (IOException ex) {
+        // The stand-in stopped
+      }
+    }, "bootstrap");
+    loop.setDaemon(true);
+    loop.start();
+
+    assertThat(posted.poll(10, TimeUnit.SECONDS))
+        .isEqualTo(RUNTIME_API + "/invocation/request-1/response CREATE");
+    val error = posted.poll(10, TimeUnit.SECONDS);
+    assertThat(error).startsWith(RUNTIME_API + "/invocation/request-2/error ");
+    val body = new JSONObject(error.substring(error.indexOf(' ') + 1));
+    assertThat(body.getString("errorType")).isEqualTo(IllegalStateException.class.getName());
+    assertThat(body.getString("errorMessage")).isEqualTo("failed request-2");
+    // A failed invocation doesn't end the loop
+    assertThat(posted.poll(10, TimeUnit.SECONDS))
+        .isEqualTo(RUNTIME_API + "/invocation/request-3/response READ");
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      val path = exchange.getRequestURI().getPath();
+      if (path.endsWith("/invocation/next")) {
+        val event = events.take().getBytes(StandardCharsets.UTF_8);
+        val headers = exchange.getResponseHeaders();
+        headers.add("Lambda-Runtime-Aws-Request-Id", "request-" + requestIds.incrementAndGet());
+        headers.add("Lambda-Runtime-Invoked-Function-Arn", FUNCTION_ARN);
+        headers.add("Lambda-Runtime-Deadline-Ms",
+            Long.toString(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1)));
+        respond(exchange, 200, event);
+      } else {
+        posted.add(path + " " + new String(read(exchange.getRequestBody()),
+            StandardCharsets.UTF_8));
+        respond(exchange, 202, "{\"status\":\"OK\"}".getBytes(StandardCharsets.UTF_8));
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      exchange.close();
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int status, byte[] body)
+      throws IOException {
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private static byte[] read(InputStream in) throws IOException {
+    val out = new ByteArrayOutputStream();
+    val buffer = new byte[8192];
+    int count;
+    while ((count = in.read(buffer)) > 0) {
+      out.write(buffer, 0, count);
+    }
+    return out.toByteArray();
+  }
+}
@@ -173,19 +173,26 @@ class ListHandlerTest {
     val summaries1 = Util.map(TEST_NAMES, ListHandlerTest::summaryFromName);
     val summaries2 = Util.map(TEST_NAMES2, ListHandlerTest::summaryFromName);
     val client = new PaginationClient(summaries1, summaries2);
-    val response = invokeListHandler(client);
-    assertThat(response).isNotNull();
-    assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
-    assertThat(response.getCallbackContext()).isNull();
-    assertThat(response.getResourceModels()).isNotNull();
-    assertThat(response.getResourceModel()).isNull();
-    assertThat(response.getMessage()).isNull();
-    assertThat(response.getErrorCode()).isNull();
-    assertThat(response.getNextToken()).isNull();
-    verifyAgainstExpectedSummaries(Util.concat(summaries1, summaries2),
-        response.getResourceModels().stream()
-            .map(ResourceModel::getAnalyzerName)
-            .collect(Collectors.toList()));
+
+    // Each call returns a single page, and the token for the next one
+    val response1 = invokeListHandler(client);
+    assertThat(response1).isNotNull();
+    assertThat(response1.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(response1.getCallbackContext()).isNull();
+    assertThat(response1.getResourceModel()).isNull();
+    assertThat(response1.getMessage()).isNull();
+    assertThat(response1.getErrorCode()).isNull();
+    assertThat(response1.getNextToken()).isEqualTo("foo");
+    verifyAgainstExpectedSummaries(summaries1, response1.getResourceModels().stream()
+        .map(ResourceModel::getAnalyzerName)
+        .collect(Collectors.toList()));
+
+    val response2 = invokeListHandler(client, response1.getNextToken());
+    assertThat(response2.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(response2.getNextToken()).isNull();
+    verifyAgainstExpectedSummaries(summaries2, response2.getResourceModels().stream()
+        .map(ResourceModel::getAnalyzerName)
+        .collect(Collectors.toList()));
   }
 
   @Test
@@ -202,10 +209,16 @@ class ListHandlerTest {
 
   private ProgressEvent<ResourceModel, CallbackContext> invokeListHandler(
       AccessAnalyzerClient client) {
+    return invokeListHandler(client, null);
+  }
+
+  private ProgressEvent<ResourceModel, CallbackContext> invokeListHandler(
+      AccessAnalyzerClient client, String nextToken) {
     val model = ResourceModel.builder().build();
     val context = new CallbackContext();
     ResourceHandlerRequest<ResourceModel> request = ResourceHandlerRequest.<ResourceModel>builder()
         .desiredResourceState(model)
+        .nextToken(nextToken)
         .build();
     return ListHandler.handleRequestWithClient(client, proxy, request, context, logger);
   }
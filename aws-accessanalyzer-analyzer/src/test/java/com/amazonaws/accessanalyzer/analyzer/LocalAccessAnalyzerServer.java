@@ -0,0 +1,383 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.val;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.accessanalyzer.model.AnalyzerSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.ArchiveRuleSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.Criterion;
+
+/**
+ * Serves the AccessAnalyzer REST/JSON protocol for analyzers, archive rules and tags from an
+ * {@link InMemoryAccessAnalyzer}, so handlers can run end to end through the real SDK client,
+ * marshalling, signing and HTTP included, without an account.  Point a client at
+ * {@link #endpoint()}, or set {@code ACCESS_ANALYZER_ENDPOINT} to it for the handler functions.
+ * Signatures are not checked.
+ */
+class LocalAccessAnalyzerServer implements AutoCloseable {
+
+  private static final String ANALYZER = "analyzer";
+  private static final String ARCHIVE_RULE = "archive-rule";
+  private static final String TAGS = "tags";
+
+  private final InMemoryAccessAnalyzer state;
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final AtomicLong requests = new AtomicLong();
+
+  private LocalAccessAnalyzerServer(InMemoryAccessAnalyzer state, HttpServer server,
+      ExecutorService executor) {
+    this.state = state;
+    this.server = server;
+    this.executor = executor;
+  }
+
+  /**
+   * Starts serving {@code state} on an ephemeral port of the loopback interface.
+   */
+  static LocalAccessAnalyzerServer start(InMemoryAccessAnalyzer state) throws IOException {
+    return start(state, 0);
+  }
+
+  /**
+   * Starts serving {@code state} on {@code port} of the loopback interface, for callers that
+   * set {@code ACCESS_ANALYZER_ENDPOINT} before the JVM starts.  Port 0 picks an ephemeral one.
+   */
+  static LocalAccessAnalyzerServer start(InMemoryAccessAnalyzer state, int port)
+      throws IOException {
+    val server =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    val threads = new AtomicInteger();
+    ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "local-access-analyzer-" + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    val local = new LocalAccessAnalyzerServer(state, server, executor);
+    server.createContext("/", local::handle);
+    server.setExecutor(executor);
+    server.start();
+    return local;
+  }
+
+  /**
+   * Serves an empty account until killed, for processes that run the handlers on their own:
+   * {@code [port [region account]]}, by default 8787 in us-east-1 like the sam-tests events.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    val port = args.length > 0 ? Integer.parseInt(args[0]) : 8787;
+    val state = args.length > 2 ? new InMemoryAccessAnalyzer(args[1], args[2])
+        : new InMemoryAccessAnalyzer("us-east-1", "196433972733");
+    val server = start(state, port);
+    System.out.println("Serving AccessAnalyzer on " + server.endpoint());
+    Thread.currentThread().join();
+  }
+
+  URI endpoint() {
+    val address = server.getAddress();
+    return URI.create(String.format("http://%s:%d", address.getHostString(), address.getPort()));
+  }
+
+  InMemoryAccessAnalyzer state() {
+    return state;
+  }
+
+  long requestsServed() {
+    return requests.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    try {
+      val body = readBody(exchange.getRequestBody());
+      val path = pathSegments(exchange.getRequestURI().getRawPath());
+      val query = queryParameters(exchange.getRequestURI().getRawQuery());
+      respond(exchange, 200, route(exchange.getRequestMethod(), path, query, body), null);
+    } catch (AwsServiceException ex) {
+      val errorType = ex.awsErrorDetails() == null
+          ? "InternalServerException" : ex.awsErrorDetails().errorCode();
+      respond(exchange, ex.statusCode(), new JSONObject().put("message", ex.getMessage()),
+          errorType);
+    } catch (JSONException | IllegalArgumentException ex) {
+      respond(exchange, 400, new JSONObject().put("message", ex.getMessage()),
+          "ValidationException");
+    } catch (RuntimeException ex) {
+      respond(exchange, 500, new JSONObject().put("message", ex.toString()),
+          "InternalServerException");
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private JSONObject route(String method, List<String> path, Map<String, List<String>> query,
+      JSONObject body) {
+    if (path.size() == 2 && TAGS.equals(path.get(0))) {
+      return routeTags(method, path.get(1), query, body);
+    }
+    if (path.isEmpty() || !ANALYZER.equals(path.get(0))) {
+      throw unknownRoute(method, path);
+    }
+    switch (path.size()) {
+      case 1:
+        if ("PUT".equals(method)) {
+          val arn = state.createAnalyzer(body.optString("analyzerName", null),
+              body.optString("type", null), stringMap(body.optJSONObject("tags")),
+              rules(body.optJSONArray("archiveRules")), body.optString("clientToken", null));
+          return new JSONObject().put("arn", arn);
+        } else if ("GET".equals(method)) {
+          val page = state.listAnalyzers(first(query, "type"), maxResults(query),
+              first(query, "nextToken"));
+          val analyzers = new JSONArray();
+          for (val summary : page.getItems()) {
+            analyzers.put(analyzerJson(summary));
+          }
+          return new JSONObject().put("analyzers", analyzers)
+              .putOpt("nextToken", page.getNextToken());
+        }
+        break;
+      case 2:
+        if ("GET".equals(method)) {
+          return new JSONObject().put("analyzer", analyzerJson(state.getAnalyzer(path.get(1))));
+        } else if ("DELETE".equals(method)) {
+          state.deleteAnalyzer(path.get(1));
+          return new JSONObject();
+        }
+        break;
+      case 3:
+        if (!ARCHIVE_RULE.equals(path.get(2))) {
+          break;
+        }
+        if ("PUT".equals(method)) {
+          state.createArchiveRule(path.get(1), body.optString("ruleName", null),
+              criteria(body.optJSONObject("filter")));
+          return new JSONObject();
+        } else if ("GET".equals(method)) {
+          val page = state.listArchiveRules(path.get(1), maxResults(query),
+              first(query, "nextToken"));
+          val rules = new JSONArray();
+          for (val rule : page.getItems()) {
+            rules.put(ruleJson(rule));
+          }
+          return new JSONObject().put("archiveRules", rules)
+              .putOpt("nextToken", page.getNextToken());
+        }
+        break;
+      case 4:
+        if (!ARCHIVE_RULE.equals(path.get(2))) {
+          break;
+        }
+        if ("PUT".equals(method)) {
+          state.updateArchiveRule(path.get(1), path.get(3), criteria(body.optJSONObject("filter")));
+          return new JSONObject();
+        } else if ("GET".equals(method)) {
+          return new JSONObject()
+              .put("archiveRule", ruleJson(state.getArchiveRule(path.get(1), path.get(3))));
+        } else if ("DELETE".equals(method)) {
+          state.deleteArchiveRule(path.get(1), path.get(3));
+          return new JSONObject();
+        }
+        break;
+      default:
+        break;
+    }
+    throw unknownRoute(method, path);
+  }
+
+  private JSONObject routeTags(String method, String arn, Map<String, List<String>> query,
+      JSONObject body) {
+    switch (method) {
+      case "POST":
+        state.tagResource(arn, stringMap(body.optJSONObject("tags")));
+        return new JSONObject();
+      case "DELETE":
+        state.untagResource(arn, query.getOrDefault("tagKeys", Collections.emptyList()));
+        return new JSONObject();
+      case "GET":
+        return new JSONObject().put("tags", new JSONObject(state.listTagsForResource(arn)));
+      default:
+        throw unknownRoute(method, Collections.singletonList(TAGS));
+    }
+  }
+
+  private static JSONObject analyzerJson(AnalyzerSummary summary) {
+    return new JSONObject()
+        .put("arn", summary.arn())
+        .put("name", summary.name())
+        .put("type", summary.typeAsString())
+        .put("createdAt", summary.createdAt().toString())
+        .put("tags", new JSONObject(summary.tags()));
+  }
+
+  private static JSONObject ruleJson(ArchiveRuleSummary rule) {
+    val filter = new JSONObject();
+    for (val entry : rule.filter().entrySet()) {
+      val criterion = entry.getValue();
+      filter.put(entry.getKey(), new JSONObject()
+          .putOpt("eq", stringArray(criterion.eq()))
+          .putOpt("neq", stringArray(criterion.neq()))
+          .putOpt("contains", stringArray(criterion.contains()))
+          .putOpt("exists", criterion.exists()));
+    }
+    return new JSONObject()
+        .put("ruleName", rule.ruleName())
+        .put("filter", filter)
+        .put("createdAt", rule.createdAt().toString())
+        .put("updatedAt", rule.updatedAt().toString());
+  }
+
+  private static Map<String, Map<String, Criterion>> rules(JSONArray json) {
+    val rules = new LinkedHashMap<String, Map<String, Criterion>>();
+    if (json != null) {
+      for (int i = 0; i < json.length(); i++) {
+        val rule = json.getJSONObject(i);
+        rules.put(rule.getString("ruleName"), criteria(rule.optJSONObject("filter")));
+      }
+    }
+    return rules;
+  }
+
+  private static Map<String, Criterion> criteria(JSONObject json) {
+    val criteria = new LinkedHashMap<String, Criterion>();
+    if (json != null) {
+      for (val property : json.keySet()) {
+        val criterion = json.getJSONObject(property);
+        criteria.put(property, Criterion.builder()
+            .eq(stringList(criterion.optJSONArray("eq")))
+            .neq(stringList(criterion.optJSONArray("neq")))
+            .contains(stringList(criterion.optJSONArray("contains")))
+            .exists(criterion.has("exists") ? criterion.getBoolean("exists") : null)
+            .build());
+      }
+    }
+    return criteria;
+  }
+
+  // Null rather than empty, so the SDK model keeps telling "absent" from "empty"
+  private static List<String> stringList(JSONArray json) {
+    if (json == null) {
+      return null;
+    }
+    val values = new ArrayList<String>(json.length());
+    for (int i = 0; i < json.length(); i++) {
+      values.add(json.getString(i));
+    }
+    return values;
+  }
+
+  // Unset lists come back from the SDK model as empty, and are left out like the SDK does
+  private static JSONArray stringArray(List<String> values) {
+    return values == null || values.isEmpty() ? null : new JSONArray(values);
+  }
+
+  private static Map<String, String> stringMap(JSONObject json) {
+    val map = new LinkedHashMap<String, String>();
+    if (json != null) {
+      for (val key : json.keySet()) {
+        map.put(key, json.getString(key));
+      }
+    }
+    return map;
+  }
+
+  private static Integer maxResults(Map<String, List<String>> query) {
+    val value = first(query, "maxResults");
+    return value == null ? null : Integer.valueOf(value);
+  }
+
+  private static String first(Map<String, List<String>> query, String name) {
+    val values = query.get(name);
+    return values == null || values.isEmpty() ? null : values.get(0);
+  }
+
+  private static JSONObject readBody(InputStream in) throws IOException {
+    val out = new ByteArrayOutputStream();
+    val buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    val text = new String(out.toByteArray(), StandardCharsets.UTF_8).trim();
+    return text.isEmpty() ? new JSONObject() : new JSONObject(text);
+  }
+
+  // The SDK percent-encodes path labels, so ARNs arrive as one segment
+  private static List<String> pathSegments(String rawPath) {
+    val segments = new ArrayList<String>();
+    for (val segment : rawPath.split("/")) {
+      if (!segment.isEmpty()) {
+        segments.add(decode(segment));
+      }
+    }
+    return segments;
+  }
+
+  private static Map<String, List<String>> queryParameters(String rawQuery) {
+    val parameters = new LinkedHashMap<String, List<String>>();
+    if (rawQuery != null) {
+      for (val pair : rawQuery.split("&")) {
+        if (pair.isEmpty()) {
+          continue;
+        }
+        val equals = pair.indexOf('=');
+        val name = decode(equals < 0 ? pair : pair.substring(0, equals));
+        val value = equals < 0 ? "" : decode(pair.substring(equals + 1));
+        parameters.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+      }
+    }
+    return parameters;
+  }
+
+  private static String decode(String value) {
+    try {
+      return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+    } catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static IllegalArgumentException unknownRoute(String method, List<String> path) {
+    return new IllegalArgumentException(
+        "No operation for " + method + " /" + String.join("/", path));
+  }
+
+  private static void respond(HttpExchange exchange, int status, JSONObject body,
+      String errorType) throws IOException {
+    val bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+    val headers = exchange.getResponseHeaders();
+    headers.set("Content-Type", "application/json");
+    headers.set("x-amzn-RequestId", Long.toString(System.nanoTime()));
+    if (errorType != null) {
+      headers.set("x-amzn-ErrorType", errorType);
+    }
+    exchange.sendResponseHeaders(status, bytes.length);
+    exchange.getResponseBody().write(bytes);
+  }
+}
@@ -0,0 +1,168 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static com.amazonaws.accessanalyzer.analyzer.TestUtil.CLIENT_REQUEST_TOKEN;
+import static com.amazonaws.accessanalyzer.analyzer.TestUtil.LOGICAL_RESOURCE_ID;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import lombok.val;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.Credentials;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
+import software.amazon.cloudformation.proxy.Logger;
+import software.amazon.cloudformation.proxy.LoggerProxy;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+// Runs the handlers through the real SDK client against LocalAccessAnalyzerServer
+class LocalAccessAnalyzerServerTest {
+
+  private static Credentials PROXY_CREDS = new Credentials("PROXY_KEY", "PROXY_SECRET", "PROXY_SESSION");
+
+  private LocalAccessAnalyzerServer server;
+  private AccessAnalyzerClient client;
+  private AmazonWebServicesClientProxy proxy = new AmazonWebServicesClientProxy(new LoggerProxy(),
+      PROXY_CREDS, () -> 10L);
+  private Logger logger = new LoggerProxy();
+
+  @BeforeEach
+  void setup() throws IOException {
+    // Small pages so that paging goes over the wire too
+    server = LocalAccessAnalyzerServer
+        .start(new InMemoryAccessAnalyzer("us-west-2", "111111111111", 2));
+    client = ClientBuilder.builder(Settings.builder().endpoint(server.endpoint()).build())
+        .region(Region.US_WEST_2)
+        .build();
+  }
+
+  @AfterEach
+  void teardown() {
+    client.close();
+    server.close();
+  }
+
+  @Test
+  void testLifecycle() {
+    val created = CreateHandler.handleRequestWithClient(client, proxy,
+        request(model(null, ImmutableSet.of(tag("a", "1"), tag("b", "2")),
+            ImmutableList.of(rule("r1", "p1"), rule("r2", "p2"), rule("r3", "p3")))),
+        null, logger);
+    assertThat(created.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    val arn = created.getResourceModel().getArn();
+    assertThat(arn).startsWith("arn:aws:access-analyzer:us-west-2:111111111111:analyzer/");
+
+    val read = ReadHandler.handleRequestWithClient(client, proxy,
+        request(ResourceModel.builder().arn(arn).build()), null, logger);
+    assertThat(read.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(read.getResourceModel().getTags()).containsExactlyInAnyOrder(tag("a", "1"),
+        tag("b", "2"));
+    assertThat(Util.map(read.getResourceModel().getArchiveRules(),
+        LocalAccessAnalyzerServerTest::describe)).containsExactly("r1 p1", "r2 p2", "r3 p3");
+
+    val previous = read.getResourceModel();
+    val desired = model(previous.getAnalyzerName(), ImmutableSet.of(tag("a", "1"), tag("c", "3")),
+        ImmutableList.of(rule("r2", "changed"), rule("r3", "p3"), rule("r4", "p4")));
+    val updated = UpdateHandler.handleRequestWithClient(client, proxy,
+        ResourceHandlerRequest.<ResourceModel>builder()
+            .previousResourceState(previous)
+            .desiredResourceState(desired)
+            .build(), null, logger);
+    assertThat(updated.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(server.state().listTagsForResource(arn))
+        .isEqualTo(ImmutableMap.of("a", "1", "c", "3"));
+    val rules = server.state().listArchiveRules(previous.getAnalyzerName(), 10, null).getItems();
+    assertThat(Util.map(Util.map(rules, Util::archiveRuleFromSummary),
+        LocalAccessAnalyzerServerTest::describe))
+        .containsExactlyInAnyOrder("r2 changed", "r3 p3", "r4 p4");
+
+    val deleted = DeleteHandler.handleRequestWithClient(client, proxy,
+        request(ResourceModel.builder().arn(arn).build()), null, logger);
+    assertThat(deleted.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+
+    // The error type header must map back to ResourceNotFoundException
+    val gone = ReadHandler.handleRequestWithClient(client, proxy,
+        request(ResourceModel.builder().arn(arn).build()), null, logger);
+    assertThat(gone.getStatus()).isEqualTo(OperationStatus.FAILED);
+    assertThat(gone.getErrorCode()).isEqualTo(HandlerErrorCode.NotFound);
+    assertThat(server.state().analyzerCount()).isZero();
+  }
+
+  @Test
+  void testListPages() {
+    for (int i = 0; i < 5; i++) {
+      server.state().createAnalyzer("analyzer" + i, "ACCOUNT", null, null, null);
+    }
+    val names = new ArrayList<String>();
+    String nextToken = null;
+    do {
+      val page = ListHandler.handleRequestWithClient(client, proxy,
+          ResourceHandlerRequest.<ResourceModel>builder()
+              .desiredResourceState(ResourceModel.builder().build())
+              .nextToken(nextToken)
+              .build(), null, logger);
+      assertThat(page.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+      for (val model : page.getResourceModels()) {
+        names.add(model.getAnalyzerName());
+      }
+      nextToken = page.getNextToken();
+    } while (nextToken != null);
+    assertThat(names).containsExactly("analyzer0", "analyzer1", "analyzer2", "analyzer3",
+        "analyzer4");
+  }
+
+  @Test
+  void testCreateConflictFails() {
+    server.state().createAnalyzer("taken", "ACCOUNT", null, null, null);
+    val created = CreateHandler.handleRequestWithClient(client, proxy,
+        request(model("taken", ImmutableSet.of(), ImmutableList.of())), null, logger);
+    assertThat(created.getStatus()).isEqualTo(OperationStatus.FAILED);
+    assertThat(server.state().analyzerCount()).isEqualTo(1);
+    assertThat(server.requestsServed()).isEqualTo(1);
+  }
+
+  private static ResourceHandlerRequest<ResourceModel> request(ResourceModel model) {
+    return ResourceHandlerRequest.<ResourceModel>builder()
+        .clientRequestToken(CLIENT_REQUEST_TOKEN)
+        .logicalResourceIdentifier(LOGICAL_RESOURCE_ID)
+        .desiredResourceState(model)
+        .build();
+  }
+
+  private static ResourceModel model(String name, Set<Tag> tags,
+      List<ArchiveRule> rules) {
+    return ResourceModel.builder()
+        .analyzerName(name)
+        .type("ACCOUNT")
+        .tags(tags)
+        .archiveRules(rules)
+        .build();
+  }
+
+  // Unset filter lists come back empty rather than null, so compare the parts we set
+  private static String describe(ArchiveRule rule) {
+    return rule.getRuleName() + " " + String.join(",", rule.getFilter().get(0).getEq());
+  }
+
+  private static Tag tag(String key, String value) {
+    return Tag.builder().key(key).value(value).build();
+  }
+
+  private static ArchiveRule rule(String name, String account) {
+    return ArchiveRule.builder()
+        .ruleName(name)
+        .filter(ImmutableList.of(
+            Filter.builder().property("principal.AWS").eq(ImmutableList.of(account)).build()))
+        .build();
+  }
+}
@@ -0,0 +1,109 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+class ModelDiffTest {
+
+  private static final int MANY_RULES = 20_000;
+
+  @Test
+  void testTags() {
+    val oldTags = ImmutableSet.of(tag("a", "1"), tag("b", "7"), tag("z", "5"));
+    val newTags = ImmutableSet.of(tag("c", "3"), tag("b", "2"), tag("a", "1"));
+    val changes = ModelDiff.diffTags(oldTags, newTags);
+    assertThat(changes.getKeysToRemove()).containsExactly("z");
+    assertThat(changes.getTagsToAdd()).containsExactly(tag("c", "3"), tag("b", "2"));
+    assertThat(changes.isEmpty()).isFalse();
+  }
+
+  @Test
+  void testUnchangedTags() {
+    val tags = ImmutableSet.of(tag("a", "1"), tag("b", "2"));
+    assertThat(ModelDiff.diffTags(tags, tags).isEmpty()).isTrue();
+    assertThat(ModelDiff.diffTags(Collections.emptySet(), Collections.emptySet()).isEmpty())
+        .isTrue();
+  }
+
+  @Test
+  void testRules() {
+    val oldRules = ImmutableList.of(rule("a", "1"), rule("b", "7"), rule("z", "5"));
+    val newRules = ImmutableList.of(rule("c", "3"), rule("b", "2"), rule("a", "1"));
+    val changes = ModelDiff.diffRules(oldRules, newRules);
+    assertThat(changes.getNamesToRemove()).containsExactly("z");
+    assertThat(changes.getRulesToAdd()).containsExactly(rule("c", "3"));
+    assertThat(changes.getRulesToUpdate()).containsExactly(rule("b", "2"));
+  }
+
+  @Test
+  void testUnchangedRules() {
+    val rules = ImmutableList.of(rule("a", "1"), rule("b", "2"));
+    assertThat(ModelDiff.diffRules(rules, rules).isEmpty()).isTrue();
+  }
+
+  @Test
+  void testReorderedRulesAreUnchanged() {
+    val oldRule = rule("a", "1");
+    val reversed = new ArrayList<Filter>(oldRule.getFilter());
+    Collections.reverse(reversed);
+    val newRule = ArchiveRule.builder().ruleName("a").filter(reversed).build();
+    assertThat(ModelDiff.diffRules(ImmutableList.of(oldRule), ImmutableList.of(newRule)).isEmpty())
+        .isTrue();
+  }
+
+  @Test
+  void testManyRules() {
+    // Old rules 0..19999; new rules drop the first quarter, change the second quarter and add
+    // a quarter of new ones
+    val oldRules = new ArrayList<ArchiveRule>(MANY_RULES);
+    val newRules = new ArrayList<ArchiveRule>(MANY_RULES);
+    for (int i = 0; i < MANY_RULES; i++) {
+      oldRules.add(rule("rule" + i, "p" + i));
+    }
+    for (int i = MANY_RULES / 4; i < MANY_RULES + MANY_RULES / 4; i++) {
+      val changed = i < MANY_RULES / 2;
+      newRules.add(rule("rule" + i, changed ? "changed" + i : "p" + i));
+    }
+    ModelDiff.RuleChanges changes = assertTimeout(Duration.ofSeconds(5),
+        () -> ModelDiff.diffRules(oldRules, newRules));
+    assertThat(changes.getNamesToRemove()).hasSize(MANY_RULES / 4);
+    assertThat(changes.getRulesToAdd()).hasSize(MANY_RULES / 4);
+    assertThat(changes.getRulesToUpdate()).hasSize(MANY_RULES / 4);
+    assertThat(changes.getNamesToRemove().get(0)).isEqualTo("rule0");
+    assertThat(changes.getRulesToAdd().get(0).getRuleName()).isEqualTo("rule" + MANY_RULES);
+  }
+
+  @Test
+  void testManyTags() {
+    val oldTags = new ArrayList<Tag>(MANY_RULES);
+    val newTags = new ArrayList<Tag>(MANY_RULES);
+    for (int i = 0; i < MANY_RULES; i++) {
+      oldTags.add(tag("k" + i, "v" + i));
+      newTags.add(tag("k" + (i + 1), "v" + (i + 1)));
+    }
+    ModelDiff.TagChanges changes = assertTimeout(Duration.ofSeconds(5),
+        () -> ModelDiff.diffTags(oldTags, newTags));
+    assertThat(changes.getKeysToRemove()).containsExactly("k0");
+    assertThat(changes.getTagsToAdd()).containsExactly(tag("k" + MANY_RULES, "v" + MANY_RULES));
+  }
+
+  private static Tag tag(String key, String value) {
+    return Tag.builder().key(key).value(value).build();
+  }
+
+  private static ArchiveRule rule(String name, String property) {
+    List<Filter> filters = ImmutableList.of(
+        Filter.builder().property(property).eq(ImmutableList.of("a", "b")).build(),
+        Filter.builder().property("resourceType").neq(ImmutableList.of("AWS::S3::Bucket")).build());
+    return ArchiveRule.builder().ruleName(name).filter(filters).build();
+  }
+}
@@ -0,0 +1,147 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
+import software.amazon.awssdk.services.accessanalyzer.model.AccessDeniedException;
+import software.amazon.awssdk.services.accessanalyzer.model.AnalyzerSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.ListAnalyzersRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.ListAnalyzersResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.Type;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.Credentials;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
+import software.amazon.cloudformation.proxy.Logger;
+import software.amazon.cloudformation.proxy.LoggerProxy;
+
+class MultiRegionInventoryTest {
+
+  private static Credentials PROXY_CREDS = new Credentials("PROXY_KEY", "PROXY_SECRET", "PROXY_SESSION");
+
+  // Each region has its own stub; every page holds one analyzer
+  private static class RegionClient implements AccessAnalyzerClient {
+
+    private final String region;
+    private final int pages;
+    private volatile boolean closed;
+
+    RegionClient(String region, int pages) {
+      this.region = region;
+      this.pages = pages;
+    }
+
+    @Override
+    public ListAnalyzersResponse listAnalyzers(ListAnalyzersRequest listAnalyzersRequest)
+        throws AwsServiceException, SdkClientException {
+      if (closed) {
+        throw new IllegalStateException("Connection pool shut down");
+      }
+      if (pages < 0) {
+        throw AccessDeniedException.builder().message("not enabled in " + region).build();
+      }
+      val page = listAnalyzersRequest.nextToken() == null
+          ? 1 : Integer.parseInt(listAnalyzersRequest.nextToken());
+      val summary = AnalyzerSummary.builder().name(region + "-" + page).type(Type.ACCOUNT)
+          .build();
+      return ListAnalyzersResponse.builder()
+          .analyzers(summary)
+          .nextToken(page < pages ? Integer.toString(page + 1) : null)
+          .build();
+    }
+
+    @Override
+    public String serviceName() {
+      return "region-access-analyzer";
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  private AmazonWebServicesClientProxy proxy = new AmazonWebServicesClientProxy(new LoggerProxy(),
+      PROXY_CREDS, () -> 10L);
+  private Logger logger = new LoggerProxy();
+
+  private static RegionalClientPool pool(int maxSize, Map<String, Integer> pages) {
+    return new RegionalClientPool(maxSize,
+        key -> new RegionClient(key.getRegion(), pages.get(key.getRegion())));
+  }
+
+  @Test
+  void testListsEveryRegion() {
+    Map<String, Integer> pages = ImmutableMap.of("us-east-1", 3, "eu-west-1", 1, "ap-south-1", 2);
+    MultiRegionInventory inventory = new MultiRegionInventory(pool(16, pages),
+        ImmutableList.copyOf(pages.keySet()));
+    val models = new ArrayList<MultiRegionInventory.RegionalModel>();
+
+    List<MultiRegionInventory.RegionReport> reports = inventory.list(proxy, logger, models::add);
+
+    assertThat(reports).extracting(MultiRegionInventory.RegionReport::getRegion)
+        .containsExactly("us-east-1", "eu-west-1", "ap-south-1");
+    assertThat(reports).allMatch(MultiRegionInventory.RegionReport::isSuccess);
+    assertThat(reports).extracting(MultiRegionInventory.RegionReport::getAnalyzers)
+        .containsExactly(3, 1, 2);
+    assertThat(models).hasSize(6);
+    for (val model : models) {
+      assertThat(model.getModel().getAnalyzerName()).startsWith(model.getRegion());
+    }
+  }
+
+  @Test
+  void testMoreRegionsThanPooledClients() {
+    // Every region pages while the others push its client out of the pool
+    Map<String, Integer> pages = ImmutableMap.of("us-east-1", 20, "eu-west-1", 20,
+        "ap-south-1", 20, "sa-east-1", 20);
+    MultiRegionInventory inventory = new MultiRegionInventory(pool(1, pages),
+        ImmutableList.copyOf(pages.keySet()));
+
+    List<MultiRegionInventory.RegionReport> reports = inventory.list(proxy, logger, model -> {
+    });
+
+    assertThat(reports).allMatch(MultiRegionInventory.RegionReport::isSuccess);
+    assertThat(reports).extracting(MultiRegionInventory.RegionReport::getAnalyzers)
+        .containsOnly(20);
+  }
+
+  @Test
+  void testFailedRegionDoesNotFailListing() {
+    Map<String, Integer> pages = ImmutableMap.of("us-east-1", 2, "me-south-1", -1);
+    MultiRegionInventory inventory = new MultiRegionInventory(pool(16, pages),
+        ImmutableList.copyOf(pages.keySet()));
+    List<MultiRegionInventory.RegionalModel> models = new ArrayList<>();
+
+    List<MultiRegionInventory.RegionReport> reports = inventory.list(proxy, logger, models::add);
+
+    assertThat(reports.get(0).isSuccess()).isTrue();
+    assertThat(reports.get(0).getAnalyzers()).isEqualTo(2);
+    assertThat(reports.get(1).isSuccess()).isFalse();
+    assertThat(reports.get(1).getErrorCode()).isEqualTo(HandlerErrorCode.ServiceInternalError);
+    assertThat(reports.get(1).getMessage()).startsWith("not enabled in me-south-1");
+    assertThat(models).extracting(MultiRegionInventory.RegionalModel::getRegion)
+        .containsOnly("us-east-1");
+  }
+
+  @Test
+  void testClientFailure() {
+    MultiRegionInventory inventory = new MultiRegionInventory(new RegionalClientPool(16, key -> {
+      throw SdkClientException.create("Unable to load region");
+    }), ImmutableList.of("xx-nowhere-1"));
+
+    List<MultiRegionInventory.RegionReport> reports = inventory.list(proxy, logger, model -> {
+    });
+
+    assertThat(reports).hasSize(1);
+    assertThat(reports.get(0).getErrorCode()).isEqualTo(HandlerErrorCode.InternalFailure);
+  }
+}
@@ -0,0 +1,27 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.awscore.AwsResponse;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.Credentials;
+import software.amazon.cloudformation.proxy.LoggerProxy;
+
+/**
+ * Hands every request straight to the client, as the mocked proxies of the handler tests do, but
+ * without recording the invocations, so it can serve thousands of them.
+ */
+class PassThroughProxy extends AmazonWebServicesClientProxy {
+
+  PassThroughProxy() {
+    super(new LoggerProxy(), new Credentials("KEY", "SECRET", "SESSION"),
+        () -> TimeUnit.MINUTES.toMillis(15));
+  }
+
+  @Override
+  public <RequestT extends AwsRequest, ResultT extends AwsResponse> ResultT
+      injectCredentialsAndInvokeV2(RequestT request, Function<RequestT, ResultT> requestFunction) {
+    return requestFunction.apply(request);
+  }
+}
@@ -4,27 +4,40 @@ import static com.amazonaws.accessanalyzer.analyzer.TestUtil.ANALYZER_ARN;
 import static com.amazonaws.accessanalyzer.analyzer.TestUtil.ANALYZER_NAME;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import com.amazonaws.AmazonServiceException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import lombok.val;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
 import software.amazon.awssdk.services.accessanalyzer.model.AnalyzerSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.ArchiveRuleSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.Criterion;
 import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerRequest;
 import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerResponse;
 import software.amazon.awssdk.services.accessanalyzer.model.ListArchiveRulesRequest;
 import software.amazon.awssdk.services.accessanalyzer.model.ListArchiveRulesResponse;
 import software.amazon.awssdk.services.accessanalyzer.model.ResourceNotFoundException;
+import software.amazon.cloudformation.Action;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 
 class ReadHandlerTest {
@@ -66,6 +79,69 @@ class ReadHandlerTest {
     assertThat(response.getErrorCode()).isNull();
   }
 
+  @Test
+  void testGetAndListRunConcurrently() {
+    // GetAnalyzer can only finish once ListArchiveRules has started
+    val listStarted = new CountDownLatch(1);
+    val getResponse = GetAnalyzerResponse.builder().analyzer(AnalyzerSummary.builder().arn(ANALYZER_ARN).build()).build();
+    doAnswer(invocation -> {
+      if (!listStarted.await(5, TimeUnit.SECONDS)) {
+        throw new IllegalStateException("ListArchiveRules never started");
+      }
+      return getResponse;
+    }).when(proxy).injectCredentialsAndInvokeV2(any(GetAnalyzerRequest.class), any());
+    doAnswer(invocation -> {
+      listStarted.countDown();
+      return ListArchiveRulesResponse.builder().archiveRules(Collections.emptyList()).build();
+    }).when(proxy).injectCredentialsAndInvokeV2(any(ListArchiveRulesRequest.class), any());
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(ResourceModel.builder().arn(ANALYZER_ARN).build())
+        .build();
+    val response = new ReadHandler().handleRequest(proxy, request, new CallbackContext(), logger);
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(response.getResourceModel().getArn()).isEqualTo(ANALYZER_ARN);
+  }
+
+  @Test
+  void testArchiveRulePagination() {
+    val getResponse = GetAnalyzerResponse.builder().analyzer(AnalyzerSummary.builder().arn(ANALYZER_ARN).build()).build();
+    doReturn(getResponse)
+        .when(proxy)
+        .injectCredentialsAndInvokeV2(any(GetAnalyzerRequest.class), any());
+    doReturn(ListArchiveRulesResponse.builder()
+        .archiveRules(ArchiveRuleSummary.builder().ruleName("a").build()).nextToken("next").build())
+        .doReturn(ListArchiveRulesResponse.builder()
+            .archiveRules(ArchiveRuleSummary.builder().ruleName("b").build()).build())
+        .when(proxy)
+        .injectCredentialsAndInvokeV2(any(ListArchiveRulesRequest.class), any());
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(ResourceModel.builder().arn(ANALYZER_ARN).build())
+        .build();
+    val response = new ReadHandler().handleRequest(proxy, request, new CallbackContext(), logger);
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(Util.map(response.getResourceModel().getArchiveRules(), Util::ruleName))
+        .containsExactly("a", "b");
+  }
+
+  @Test
+  void testArchiveRulesOfNonExistentAnalyzer() {
+    val getResponse = GetAnalyzerResponse.builder().analyzer(AnalyzerSummary.builder().arn(ANALYZER_ARN).build()).build();
+    doReturn(getResponse)
+        .when(proxy)
+        .injectCredentialsAndInvokeV2(any(GetAnalyzerRequest.class), any());
+    doThrow(ResourceNotFoundException.builder().message("").build())
+        .when(proxy)
+        .injectCredentialsAndInvokeV2(any(ListArchiveRulesRequest.class), any());
+    val model = ResourceModel.builder().arn(ANALYZER_ARN).build();
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(model)
+        .build();
+    val response = new ReadHandler().handleRequest(proxy, request, new CallbackContext(), logger);
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+    assertThat(response.getMessage()).startsWith(ReadHandler.NO_ANALYZER_MESSAGE_PREFIX);
+    assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.NotFound);
+  }
+
   @Test
   void testNameIsNull() {
     val model = ResourceModel.builder().analyzerName(null).build();
@@ -132,4 +208,90 @@ class ReadHandlerTest {
     assertThat(response.getMessage()).startsWith("internal failure");
     assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.ServiceInternalError);
   }
+
+  @Test
+  void testCacheServesRepeatedReads() {
+    stubReads();
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(ResourceModel.builder().arn(ANALYZER_ARN).build())
+        .build();
+    val hits = AnalyzerCache.global().stats().getHits();
+
+    val first = readWithCache(request);
+    val second = readWithCache(request);
+
+    assertThat(second.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(second.getResourceModel()).isEqualTo(first.getResourceModel());
+    verify(proxy, times(1)).injectCredentialsAndInvokeV2(any(GetAnalyzerRequest.class), any());
+    verify(proxy, times(1))
+        .injectCredentialsAndInvokeV2(any(ListArchiveRulesRequest.class), any());
+    assertThat(AnalyzerCache.global().stats().getHits()).isEqualTo(hits + 1);
+  }
+
+  @Test
+  void testDeleteInvalidatesCache() {
+    stubReads();
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(ResourceModel.builder().arn(ANALYZER_ARN).build())
+        .build();
+
+    readWithCache(request);
+    DeleteHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy, request,
+        new CallbackContext(), logger);
+    readWithCache(request);
+
+    verify(proxy, times(2)).injectCredentialsAndInvokeV2(any(GetAnalyzerRequest.class), any());
+  }
+
+  @Test
+  void testFingerprintSkipsListArchiveRules() {
+    RuleFingerprint.global().forget(ANALYZER_ARN);
+    val summaries = ImmutableList.of(ArchiveRuleSummary.builder().ruleName("a")
+        .filter(ImmutableMap.of("p", Criterion.builder().eq("1").build())).build());
+    val fingerprint = RuleFingerprint.of(Util.archiveRulesFromSummaries(summaries));
+    doReturn(GetAnalyzerResponse.builder()
+        .analyzer(AnalyzerSummary.builder().arn(ANALYZER_ARN)
+            .tags(ImmutableMap.of("k", "v", RuleFingerprint.TAG_KEY, fingerprint)).build())
+        .build())
+        .when(proxy)
+        .injectCredentialsAndInvokeV2(any(GetAnalyzerRequest.class), any());
+    doReturn(ListArchiveRulesResponse.builder().archiveRules(summaries).build())
+        .when(proxy)
+        .injectCredentialsAndInvokeV2(any(ListArchiveRulesRequest.class), any());
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(ResourceModel.builder().arn(ANALYZER_ARN).build())
+        .build();
+    val settings = Settings.builder().rulesFingerprint(true).build();
+
+    val first = ReadHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy,
+        request, new CallbackContext(), logger, settings);
+    val second = ReadHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy,
+        request, new CallbackContext(), logger, settings);
+
+    assertThat(second.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(second.getResourceModel()).isEqualTo(first.getResourceModel());
+    assertThat(second.getResourceModel().getTags()).containsExactly(new Tag("k", "v"));
+    verify(proxy, times(2)).injectCredentialsAndInvokeV2(any(GetAnalyzerRequest.class), any());
+    verify(proxy, times(1))
+        .injectCredentialsAndInvokeV2(any(ListArchiveRulesRequest.class), any());
+  }
+
+  private void stubReads() {
+    AnalyzerCache.global().clear();
+    doReturn(GetAnalyzerResponse.builder()
+        .analyzer(AnalyzerSummary.builder().arn(ANALYZER_ARN).build()).build())
+        .when(proxy)
+        .injectCredentialsAndInvokeV2(any(GetAnalyzerRequest.class), any());
+    doReturn(ListArchiveRulesResponse.builder()
+        .archiveRules(ArchiveRuleSummary.builder().ruleName("a").build()).build())
+        .when(proxy)
+        .injectCredentialsAndInvokeV2(any(ListArchiveRulesRequest.class), any());
+  }
+
+  private ProgressEvent<ResourceModel, CallbackContext> readWithCache(
+      ResourceHandlerRequest<ResourceModel> request) {
+    return ReadHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy, request,
+        new CallbackContext(), logger,
+        Settings.builder().cachedActions(EnumSet.of(Action.READ)).build());
+  }
 }
@@ -0,0 +1,113 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
+
+class RegionalClientPoolTest {
+
+  private final List<RegionalClientPool.Key> built = new ArrayList<>();
+
+  private RegionalClientPool pool(int maxSize) {
+    return new RegionalClientPool(maxSize, key -> {
+      built.add(key);
+      return mock(AccessAnalyzerClient.class);
+    });
+  }
+
+  // The client of a lease that is released straight away
+  private static AccessAnalyzerClient client(RegionalClientPool pool, String region) {
+    return client(pool, region, null);
+  }
+
+  private static AccessAnalyzerClient client(RegionalClientPool pool, String region,
+      URI endpoint) {
+    try (RegionalClientPool.Lease lease = pool.lease(region, endpoint)) {
+      return lease.client();
+    }
+  }
+
+  @Test
+  void testReusesClients() {
+    val pool = pool(4);
+    val client = client(pool, "us-east-1");
+    assertThat(client(pool, "us-east-1")).isSameAs(client);
+    assertThat(client(pool, "eu-west-1")).isNotSameAs(client);
+    assertThat(pool.stats()).isEqualTo(new RegionalClientPool.Stats(1, 2, 0, 2));
+  }
+
+  @Test
+  void testEndpointIsPartOfKey() {
+    val pool = pool(4);
+    val regional = client(pool, "us-east-1");
+    val local = client(pool, "us-east-1", URI.create("http://localhost:8080"));
+    assertThat(local).isNotSameAs(regional);
+    assertThat(built).containsExactly(new RegionalClientPool.Key("us-east-1", null),
+        new RegionalClientPool.Key("us-east-1", URI.create("http://localhost:8080")));
+  }
+
+  @Test
+  void testEvictsLeastRecentlyUsed() {
+    val pool = pool(2);
+    val east = client(pool, "us-east-1");
+    val west = client(pool, "us-west-2");
+    client(pool, "us-east-1");
+    client(pool, "eu-west-1");
+
+    verify(west).close();
+    verify(east, never()).close();
+    assertThat(client(pool, "us-east-1")).isSameAs(east);
+    assertThat(pool.stats().getEvictions()).isEqualTo(1);
+    assertThat(pool.stats().getSize()).isEqualTo(2);
+  }
+
+  @Test
+  void testEvictedClientClosesWhenReleased() {
+    val pool = pool(1);
+    val east = pool.lease("us-east-1");
+    val west = pool.lease("us-west-2");
+
+    // us-east-1 is out of the pool, but still paging
+    verify(east.client(), never()).close();
+    assertThat(pool.stats().getEvictions()).isEqualTo(1);
+    assertThat(pool.stats().getSize()).isEqualTo(1);
+
+    east.close();
+    verify(east.client()).close();
+    east.close();
+    verify(east.client()).close();
+
+    west.close();
+    verify(west.client(), never()).close();
+    assertThat(client(pool, "us-west-2")).isSameAs(west.client());
+  }
+
+  @Test
+  void testCloseWaitsForLeases() {
+    val pool = pool(4);
+    val east = pool.lease("us-east-1");
+    pool.close();
+    verify(east.client(), never()).close();
+    east.close();
+    verify(east.client()).close();
+  }
+
+  @Test
+  void testCloseClosesEveryClient() {
+    val pool = pool(4);
+    val east = client(pool, "us-east-1");
+    val west = client(pool, "us-west-2");
+    pool.close();
+    verify(east).close();
+    verify(west).close();
+    assertThat(pool.stats().getSize()).isZero();
+  }
+}
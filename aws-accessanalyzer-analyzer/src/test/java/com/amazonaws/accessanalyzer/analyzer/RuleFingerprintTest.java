@@ -0,0 +1,80 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.Collections;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+class RuleFingerprintTest {
+
+  private static final String ARN =
+      "arn:aws:access-analyzer:us-west-2:111111111111:analyzer/Fingerprinted";
+
+  @Test
+  void testIgnoresOrder() {
+    val a = rule("a", filter("p", "1", "2"), filter("q", "3"));
+    val b = rule("b", filter("r", "4"));
+    val reordered = rule("a", filter("q", "3"), filter("p", "2", "1"));
+    assertThat(RuleFingerprint.of(ImmutableList.of(a, b)))
+        .isEqualTo(RuleFingerprint.of(ImmutableList.of(b, reordered)));
+  }
+
+  @Test
+  void testEmptyValuesAreAbsent() {
+    val absent = ArchiveRule.builder().ruleName("a")
+        .filter(ImmutableList.of(Filter.builder().property("p").exists(true).build())).build();
+    val empty = ArchiveRule.builder().ruleName("a")
+        .filter(ImmutableList.of(Filter.builder().property("p").exists(true)
+            .eq(Collections.emptyList()).neq(Collections.emptyList()).build())).build();
+    assertThat(RuleFingerprint.of(ImmutableList.of(absent)))
+        .isEqualTo(RuleFingerprint.of(ImmutableList.of(empty)));
+  }
+
+  @Test
+  void testDifferentRulesDiffer() {
+    val base = fingerprint(rule("a", filter("p", "1")));
+    assertThat(fingerprint(rule("a", filter("p", "2")))).isNotEqualTo(base);
+    assertThat(fingerprint(rule("b", filter("p", "1")))).isNotEqualTo(base);
+    assertThat(fingerprint(rule("a", filter("p", "1", "")))).isNotEqualTo(base);
+    assertThat(fingerprint(rule("a", filter("p", "1")), rule("b"))).isNotEqualTo(base);
+    assertThat(base).hasSize(64);
+  }
+
+  @Test
+  void testSnapshotNeedsMatchingTag() {
+    val fingerprints = RuleFingerprint.global();
+    val rules = ImmutableList.of(rule("a", filter("p", "1")));
+    val fingerprint = RuleFingerprint.of(rules);
+    fingerprints.remember(ARN, fingerprint, rules);
+
+    assertThat(fingerprints.rules(ARN, ImmutableMap.of(RuleFingerprint.TAG_KEY, fingerprint)))
+        .isEqualTo(rules);
+    assertThat(fingerprints.rules(ARN, ImmutableMap.of(RuleFingerprint.TAG_KEY, "stale")))
+        .isNull();
+    assertThat(fingerprints.rules(ARN, Collections.emptyMap())).isNull();
+
+    fingerprints.forget(ARN);
+    assertThat(fingerprints.hasSnapshot(ARN)).isFalse();
+  }
+
+  @Test
+  void testTagIsHidden() {
+    val tags = Util.analyzerTags(ImmutableMap.of("k", "v", RuleFingerprint.TAG_KEY, "hash"));
+    assertThat(tags).containsExactly(new Tag("k", "v"));
+  }
+
+  private static String fingerprint(ArchiveRule... rules) {
+    return RuleFingerprint.of(ImmutableList.copyOf(rules));
+  }
+
+  private static ArchiveRule rule(String name, Filter... filters) {
+    return ArchiveRule.builder().ruleName(name).filter(ImmutableList.copyOf(filters)).build();
+  }
+
+  private static Filter filter(String property, String... eq) {
+    return Filter.builder().property(property).eq(ImmutableList.copyOf(eq)).build();
+  }
+}
@@ -0,0 +1,35 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+import software.amazon.cloudformation.resource.Serializer;
+
+class SerializerWarmUpTest {
+
+  @Test
+  void testRoundTripKeepsTheModel() throws IOException {
+    // Anything lost on the way would be a property the warm-up never reached
+    assertThat(SerializerWarmUp.roundTrip(new Serializer(), SerializerWarmUp.sampleModel()))
+        .isEqualTo(SerializerWarmUp.sampleModel());
+  }
+
+  @Test
+  void testRunsOncePerContainer() {
+    // Loading any handler has already run it
+    new ReadHandler();
+    assertThat(SerializerWarmUp.ensure(Settings.builder().build())).isFalse();
+  }
+
+  @Test
+  void testCanBeTurnedOff() {
+    assertThat(Settings.builder().build().isSerializerWarmUp()).isTrue();
+    assertThat(Settings.fromEnvironment(
+        ImmutableMap.of(Settings.SERIALIZER_WARM_UP_ENV, "false")).isSerializerWarmUp())
+        .isFalse();
+    assertThat(SerializerWarmUp.ensure(Settings.builder().serializerWarmUp(false).build()))
+        .isFalse();
+  }
+}
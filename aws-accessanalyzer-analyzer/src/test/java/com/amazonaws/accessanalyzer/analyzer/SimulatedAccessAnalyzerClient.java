@@ -0,0 +1,335 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.Builder;
+import lombok.Value;
+import lombok.val;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
+import software.amazon.awssdk.services.accessanalyzer.model.AnalyzerSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.ArchiveRuleSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.CreateAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.CreateAnalyzerResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.CreateArchiveRuleRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.CreateArchiveRuleResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.Criterion;
+import software.amazon.awssdk.services.accessanalyzer.model.DeleteAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.DeleteAnalyzerResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.DeleteArchiveRuleRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.DeleteArchiveRuleResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.GetArchiveRuleRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.GetArchiveRuleResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.ListAnalyzersRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.ListAnalyzersResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.ListArchiveRulesRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.ListArchiveRulesResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.ListTagsForResourceResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.TagResourceRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.TagResourceResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.UntagResourceRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.UntagResourceResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.UpdateArchiveRuleRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.UpdateArchiveRuleResponse;
+
+/**
+ * An {@link AccessAnalyzerClient} over an {@link InMemoryAccessAnalyzer} that behaves like a
+ * remote service: every call waits for a latency drawn from a log-normal distribution of its
+ * operation, and may be throttled or fail with a 500 instead of reaching the state.  The first
+ * call can pay the long first-use latency AccessAnalyzer shows for a new account.
+ *
+ * <p>Every draw comes from the seed, the operation and how many calls of that operation came
+ * before, so a run that makes the same calls in the same order sees the same latencies and
+ * faults.  {@link Profile#getTimeScale()} shrinks the waits, so thousands of invocations with
+ * realistic latencies finish in seconds.
+ *
+ * <p>Nothing is retried unless {@link Profile#getRetries()} says so, in which case a throttled or
+ * failed attempt is retried after an exponential backoff like the SDK's.
+ */
+class SimulatedAccessAnalyzerClient implements AccessAnalyzerClient {
+
+  // The z-score of the 99th percentile of a standard normal distribution
+  private static final double Z_99 = 2.3263;
+  private static final double BACKOFF_BASE_MILLIS = 100;
+
+  @Value
+  @Builder
+  static class OperationProfile {
+
+    double medianMillis;
+    double p99Millis;
+    double throttleRate;
+    double errorRate;
+
+    // Log-normal with the given median and 99th percentile
+    double latencyMillis(Random random) {
+      if (medianMillis <= 0) {
+        return 0;
+      }
+      val sigma = p99Millis > medianMillis ? Math.log(p99Millis / medianMillis) / Z_99 : 0;
+      return medianMillis * Math.exp(sigma * random.nextGaussian());
+    }
+  }
+
+  @Value
+  @Builder(toBuilder = true)
+  static class Profile {
+
+    long seed;
+
+    /**
+     * For operations missing from {@link #operations}.
+     */
+    @Builder.Default
+    OperationProfile defaults = OperationProfile.builder().medianMillis(40).p99Millis(250)
+        .build();
+
+    /**
+     * By operation name, e.g. {@code ListArchiveRules}.
+     */
+    @Builder.Default
+    Map<String, OperationProfile> operations = Collections.emptyMap();
+
+    /**
+     * Added to the very first call.
+     */
+    double firstUseMillis;
+
+    /**
+     * Every wait is multiplied by this; 0 doesn't wait at all.
+     */
+    @Builder.Default
+    double timeScale = 1.0;
+
+    @Builder.Default
+    int retries = 0;
+
+    OperationProfile operation(String operation) {
+      return operations.getOrDefault(operation, defaults);
+    }
+  }
+
+  private final InMemoryAccessAnalyzer state;
+  private final Profile profile;
+  private final AtomicBoolean used = new AtomicBoolean();
+  private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+  private final Map<String, AtomicLong> attempts = new ConcurrentHashMap<>();
+  private final Map<String, AtomicLong> faults = new ConcurrentHashMap<>();
+
+  SimulatedAccessAnalyzerClient(InMemoryAccessAnalyzer state, Profile profile) {
+    this.state = state;
+    this.profile = profile;
+  }
+
+  InMemoryAccessAnalyzer state() {
+    return state;
+  }
+
+  /**
+   * Calls made, by operation, retries not included.
+   */
+  Map<String, Long> calls() {
+    return snapshot(calls);
+  }
+
+  /**
+   * Attempts made, by operation, retries included.
+   */
+  Map<String, Long> attempts() {
+    return snapshot(attempts);
+  }
+
+  /**
+   * Injected throttles and failures, by exception, e.g. {@code ThrottlingException}.
+   */
+  Map<String, Long> faults() {
+    return snapshot(faults);
+  }
+
+  void resetStats() {
+    calls.clear();
+    attempts.clear();
+    faults.clear();
+  }
+
+  @Override
+  public String serviceName() {
+    return SERVICE_NAME;
+  }
+
+  @Override
+  public void close() {
+  }
+
+  @Override
+  public CreateAnalyzerResponse createAnalyzer(CreateAnalyzerRequest request) {
+    return call("CreateAnalyzer", () -> {
+      Map<String, Map<String, Criterion>> rules = new LinkedHashMap<>();
+      request.archiveRules().forEach(rule -> rules.put(rule.ruleName(), rule.filter()));
+      String arn = state.createAnalyzer(request.analyzerName(), request.typeAsString(),
+          request.tags(), rules, request.clientToken());
+      return CreateAnalyzerResponse.builder().arn(arn).build();
+    });
+  }
+
+  @Override
+  public GetAnalyzerResponse getAnalyzer(GetAnalyzerRequest request) {
+    return call("GetAnalyzer", () -> GetAnalyzerResponse.builder()
+        .analyzer(state.getAnalyzer(request.analyzerName())).build());
+  }
+
+  @Override
+  public DeleteAnalyzerResponse deleteAnalyzer(DeleteAnalyzerRequest request) {
+    return call("DeleteAnalyzer", () -> {
+      state.deleteAnalyzer(request.analyzerName());
+      return DeleteAnalyzerResponse.builder().build();
+    });
+  }
+
+  @Override
+  public ListAnalyzersResponse listAnalyzers(ListAnalyzersRequest request) {
+    return call("ListAnalyzers", () -> {
+      InMemoryAccessAnalyzer.Page<AnalyzerSummary> page = state.listAnalyzers(
+          request.typeAsString(), request.maxResults(), request.nextToken());
+      return ListAnalyzersResponse.builder()
+          .analyzers(page.getItems())
+          .nextToken(page.getNextToken())
+          .build();
+    });
+  }
+
+  @Override
+  public ListArchiveRulesResponse listArchiveRules(ListArchiveRulesRequest request) {
+    return call("ListArchiveRules", () -> {
+      InMemoryAccessAnalyzer.Page<ArchiveRuleSummary> page = state.listArchiveRules(
+          request.analyzerName(), request.maxResults(), request.nextToken());
+      return ListArchiveRulesResponse.builder()
+          .archiveRules(page.getItems())
+          .nextToken(page.getNextToken())
+          .build();
+    });
+  }
+
+  @Override
+  public GetArchiveRuleResponse getArchiveRule(GetArchiveRuleRequest request) {
+    return call("GetArchiveRule", () -> GetArchiveRuleResponse.builder()
+        .archiveRule(state.getArchiveRule(request.analyzerName(), request.ruleName())).build());
+  }
+
+  @Override
+  public CreateArchiveRuleResponse createArchiveRule(CreateArchiveRuleRequest request) {
+    return call("CreateArchiveRule", () -> {
+      state.createArchiveRule(request.analyzerName(), request.ruleName(), request.filter());
+      return CreateArchiveRuleResponse.builder().build();
+    });
+  }
+
+  @Override
+  public UpdateArchiveRuleResponse updateArchiveRule(UpdateArchiveRuleRequest request) {
+    return call("UpdateArchiveRule", () -> {
+      state.updateArchiveRule(request.analyzerName(), request.ruleName(), request.filter());
+      return UpdateArchiveRuleResponse.builder().build();
+    });
+  }
+
+  @Override
+  public DeleteArchiveRuleResponse deleteArchiveRule(DeleteArchiveRuleRequest request) {
+    return call("DeleteArchiveRule", () -> {
+      state.deleteArchiveRule(request.analyzerName(), request.ruleName());
+      return DeleteArchiveRuleResponse.builder().build();
+    });
+  }
+
+  @Override
+  public TagResourceResponse tagResource(TagResourceRequest request) {
+    return call("TagResource", () -> {
+      state.tagResource(request.resourceArn(), request.tags());
+      return TagResourceResponse.builder().build();
+    });
+  }
+
+  @Override
+  public UntagResourceResponse untagResource(UntagResourceRequest request) {
+    return call("UntagResource", () -> {
+      state.untagResource(request.resourceArn(), request.tagKeys());
+      return UntagResourceResponse.builder().build();
+    });
+  }
+
+  @Override
+  public ListTagsForResourceResponse listTagsForResource(ListTagsForResourceRequest request) {
+    return call("ListTagsForResource", () -> ListTagsForResourceResponse.builder()
+        .tags(state.listTagsForResource(request.resourceArn())).build());
+  }
+
+  private <T> T call(String operation, Supplier<T> body) {
+    val index = counter(calls, operation).getAndIncrement();
+    val random = new Random(mix(profile.getSeed() ^ mix(operation.hashCode()) + index));
+    val operationProfile = profile.operation(operation);
+    if (!used.getAndSet(true)) {
+      sleep(profile.getFirstUseMillis());
+    }
+    for (int attempt = 0; ; attempt++) {
+      counter(attempts, operation).incrementAndGet();
+      sleep(operationProfile.latencyMillis(random));
+      SdkServiceException fault = null;
+      val draw = random.nextDouble();
+      if (draw < operationProfile.getThrottleRate()) {
+        fault = InMemoryAccessAnalyzer.throttling("Rate exceeded");
+      } else if (draw < operationProfile.getThrottleRate() + operationProfile.getErrorRate()) {
+        fault = InMemoryAccessAnalyzer.internalError("Simulated internal error");
+      }
+      if (fault == null) {
+        return body.get();
+      }
+      counter(faults, fault.getClass().getSimpleName()).incrementAndGet();
+      if (attempt >= profile.getRetries()) {
+        throw fault;
+      }
+      // Full jitter, as the SDK's default backoff strategy
+      sleep(random.nextDouble() * BACKOFF_BASE_MILLIS * (1 << Math.min(attempt, 10)));
+    }
+  }
+
+  private void sleep(double millis) {
+    val nanos = (long) (millis * profile.getTimeScale() * 1_000_000);
+    if (nanos <= 0) {
+      return;
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw SdkClientException.create("Interrupted", ex);
+    }
+  }
+
+  private static AtomicLong counter(Map<String, AtomicLong> counters, String key) {
+    return counters.computeIfAbsent(key, k -> new AtomicLong());
+  }
+
+  private static Map<String, Long> snapshot(Map<String, AtomicLong> counters) {
+    Map<String, Long> snapshot = new TreeMap<>();
+    counters.forEach((key, count) -> snapshot.put(key, count.get()));
+    return snapshot;
+  }
+
+  // The SplitMix64 finalizer, so that neighbouring seeds draw unrelated sequences
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -0,0 +1,123 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.InternalServerException;
+import software.amazon.awssdk.services.accessanalyzer.model.ThrottlingException;
+import software.amazon.cloudformation.proxy.LoggerProxy;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+
+class SimulatedAccessAnalyzerClientTest {
+
+  private static final String NAME = "simulated";
+
+  @Test
+  void testSameSeedSameFaults() {
+    val first = outcomes(7L, 0.3);
+    assertThat(outcomes(7L, 0.3)).isEqualTo(first);
+    assertThat(outcomes(8L, 0.3)).isNotEqualTo(first);
+  }
+
+  @Test
+  void testThrottleRate() {
+    val outcomes = outcomes(1L, 0.2);
+    long throttled = outcomes.stream().filter(outcome -> outcome).count();
+    assertThat(throttled).isBetween(300L, 500L);
+  }
+
+  @Test
+  void testRetriesUntilGivingUp() {
+    val client = client(SimulatedAccessAnalyzerClient.Profile.builder()
+        .defaults(SimulatedAccessAnalyzerClient.OperationProfile.builder().errorRate(1.0).build())
+        .retries(3)
+        .timeScale(0)
+        .build());
+    assertThatThrownBy(() -> client.getAnalyzer(request()))
+        .isInstanceOf(InternalServerException.class);
+    assertThat(client.calls()).containsExactly(entry("GetAnalyzer", 1L));
+    assertThat(client.attempts()).containsExactly(entry("GetAnalyzer", 4L));
+    assertThat(client.faults()).containsExactly(entry("InternalServerException", 4L));
+  }
+
+  @Test
+  void testOperationProfileOverridesDefaults() {
+    val client = client(SimulatedAccessAnalyzerClient.Profile.builder()
+        .operations(ImmutableMap.of("GetAnalyzer",
+            SimulatedAccessAnalyzerClient.OperationProfile.builder().throttleRate(1.0).build()))
+        .timeScale(0)
+        .build());
+    assertThatThrownBy(() -> client.getAnalyzer(request()))
+        .isInstanceOf(ThrottlingException.class);
+    assertThat(client.listAnalyzers(b -> { }).analyzers()).hasSize(1);
+  }
+
+  @Test
+  void testHandlersRunAgainstSimulator() {
+    val client = client(SimulatedAccessAnalyzerClient.Profile.builder().timeScale(0).build());
+    val model = ResourceModel.builder()
+        .analyzerName("created")
+        .type("ACCOUNT")
+        .archiveRules(ImmutableList.of(rule("a"), rule("b"), rule("c")))
+        .build();
+    val request = ResourceHandlerRequest.<ResourceModel>builder().desiredResourceState(model)
+        .build();
+    val logger = new LoggerProxy();
+    val created = CreateHandler.handleRequestWithClient(client, new PassThroughProxy(), request,
+        null, logger);
+    assertThat(created.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    val read = ReadHandler.handleRequestWithClient(client, new PassThroughProxy(),
+        ResourceHandlerRequest.<ResourceModel>builder()
+            .desiredResourceState(ResourceModel.builder().arn(model.getArn()).build()).build(),
+        null, logger);
+    assertThat(read.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(read.getResourceModel().getArchiveRules()).hasSize(3);
+    assertThat(client.calls()).containsKeys("CreateAnalyzer", "GetAnalyzer", "ListArchiveRules");
+  }
+
+  // True for each throttled call of 2000
+  private static List<Boolean> outcomes(long seed, double throttleRate) {
+    val client = client(SimulatedAccessAnalyzerClient.Profile.builder()
+        .seed(seed)
+        .defaults(SimulatedAccessAnalyzerClient.OperationProfile.builder()
+            .throttleRate(throttleRate).build())
+        .timeScale(0)
+        .build());
+    val outcomes = new ArrayList<Boolean>();
+    for (int i = 0; i < 2000; i++) {
+      try {
+        client.getAnalyzer(request());
+        outcomes.add(false);
+      } catch (ThrottlingException ex) {
+        outcomes.add(true);
+      }
+    }
+    return outcomes;
+  }
+
+  private static SimulatedAccessAnalyzerClient client(
+      SimulatedAccessAnalyzerClient.Profile profile) {
+    val state = new InMemoryAccessAnalyzer("us-west-2", "111111111111");
+    state.createAnalyzer(NAME, "ACCOUNT", null, null, null);
+    return new SimulatedAccessAnalyzerClient(state, profile);
+  }
+
+  private static ArchiveRule rule(String name) {
+    return ArchiveRule.builder().ruleName(name).filter(ImmutableList.of(
+        Filter.builder().property("resourceType").eq(ImmutableList.of("AWS::S3::Bucket")).build()))
+        .build();
+  }
+
+  private static GetAnalyzerRequest request() {
+    return GetAnalyzerRequest.builder().analyzerName(NAME).build();
+  }
+}
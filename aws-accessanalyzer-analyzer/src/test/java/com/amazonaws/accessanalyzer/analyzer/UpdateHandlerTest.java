@@ -3,7 +3,9 @@ package com.amazonaws.accessanalyzer.analyzer;
 import static com.amazonaws.accessanalyzer.analyzer.TestUtil.ANALYZER_ARN;
 import static com.amazonaws.accessanalyzer.analyzer.TestUtil.ANALYZER_NAME;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -12,20 +14,37 @@ import com.amazonaws.AmazonServiceException;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.val;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.services.accessanalyzer.AccessAnalyzerClient;
+import software.amazon.awssdk.services.accessanalyzer.model.AnalyzerSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.ArchiveRuleSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.ConflictException;
 import software.amazon.awssdk.services.accessanalyzer.model.CreateArchiveRuleRequest;
 import software.amazon.awssdk.services.accessanalyzer.model.CreateArchiveRuleResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.Criterion;
 import software.amazon.awssdk.services.accessanalyzer.model.DeleteArchiveRuleRequest;
 import software.amazon.awssdk.services.accessanalyzer.model.DeleteArchiveRuleResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.GetAnalyzerResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.ListArchiveRulesRequest;
+import software.amazon.awssdk.services.accessanalyzer.model.ListArchiveRulesResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.accessanalyzer.model.ServiceQuotaExceededException;
 import software.amazon.awssdk.services.accessanalyzer.model.TagResourceRequest;
 import software.amazon.awssdk.services.accessanalyzer.model.TagResourceResponse;
+import software.amazon.awssdk.services.accessanalyzer.model.ThrottlingException;
 import software.amazon.awssdk.services.accessanalyzer.model.UntagResourceRequest;
 import software.amazon.awssdk.services.accessanalyzer.model.UntagResourceResponse;
 import software.amazon.awssdk.services.accessanalyzer.model.UpdateArchiveRuleRequest;
@@ -212,6 +231,382 @@ class UpdateHandlerTest {
     assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.ServiceInternalError);
   }
 
+  @Test
+  void testConcurrentRulesDeleteBeforeCreate() {
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(modelWithRules("new", 20))
+        .previousResourceState(modelWithRules("old", 20))
+        .build();
+    val calls = Collections.synchronizedList(new ArrayList<AwsRequest>());
+    doAnswer(invocation -> {
+      calls.add(invocation.getArgument(0));
+      return null;
+    }).when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+    val response = invokeConcurrently(request);
+
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(calls.size()).isEqualTo(42);
+    int lastDelete = -1;
+    int firstCreate = calls.size();
+    for (int i = 0; i < calls.size(); i++) {
+      if (calls.get(i) instanceof DeleteArchiveRuleRequest) {
+        lastDelete = i;
+      } else if (calls.get(i) instanceof CreateArchiveRuleRequest) {
+        firstCreate = Math.min(firstCreate, i);
+      }
+    }
+    assertThat(lastDelete).isLessThan(firstCreate);
+  }
+
+  @Test
+  void testConcurrentFailureKeepsErrorMapping() {
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(modelWithRules("new", 20))
+        .previousResourceState(modelWithRules("old", 20))
+        .build();
+    doAnswer(invocation -> {
+      if (invocation.getArgument(0) instanceof CreateArchiveRuleRequest) {
+        throw ServiceQuotaExceededException.builder().message("too many archive rules").build();
+      }
+      return null;
+    }).when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+    val response = invokeConcurrently(request);
+
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+    assertThat(response.getMessage()).startsWith("too many archive rules");
+    assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.ServiceLimitExceeded);
+  }
+
+  @Test
+  void testFailureWaitsForRunningTagCalls() throws Exception {
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(modelWithRules("new", 1))
+        .previousResourceState(modelWithRules("old", 1))
+        .build();
+    val deleted = new CountDownLatch(1);
+    val tagged = new AtomicBoolean();
+    doAnswer(invocation -> {
+      if (invocation.getArgument(0) instanceof DeleteArchiveRuleRequest) {
+        deleted.countDown();
+        throw ResourceNotFoundException.builder().message("no rule old0").build();
+      }
+      if (invocation.getArgument(0) instanceof TagResourceRequest) {
+        // Still tagging when the delete fails
+        deleted.await(10, TimeUnit.SECONDS);
+        Thread.sleep(200);
+        tagged.set(true);
+      }
+      return null;
+    }).when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+    val response = invokeConcurrently(request);
+
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+    assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.NotFound);
+    assertThat(tagged.get()).isTrue();
+  }
+
+  @Test
+  void testCallbackRetryToleratesEarlierAttempt() {
+    // The first attempt deleted old0 and created new0 before it was throttled
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(modelWithRules("new", 1))
+        .previousResourceState(modelWithRules("old", 1))
+        .build();
+    val calls = new ArrayList<AwsRequest>();
+    doAnswer(invocation -> {
+      calls.add(invocation.getArgument(0));
+      if (invocation.getArgument(0) instanceof DeleteArchiveRuleRequest) {
+        throw ResourceNotFoundException.builder().message("no rule old0").build();
+      }
+      if (invocation.getArgument(0) instanceof CreateArchiveRuleRequest) {
+        throw ConflictException.builder().message("rule new0 exists").build();
+      }
+      return null;
+    }).when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+    val response = UpdateHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy,
+        request, CallbackContext.builder().retryAttempt(1).build(), logger,
+        Settings.builder().retryMode(Settings.RetryMode.CALLBACK).build());
+
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(calls.get(calls.size() - 1)).isInstanceOf(UpdateArchiveRuleRequest.class);
+  }
+
+  @Test
+  void testThrottlingCallsBack() {
+    doThrow(ThrottlingException.builder().message("slow down").build())
+        .when(proxy).injectCredentialsAndInvokeV2(any(), any());
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(modelWithRules("new", 1))
+        .previousResourceState(modelWithRules("old", 1))
+        .build();
+
+    val response = UpdateHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy,
+        request, new CallbackContext(), logger,
+        Settings.builder().retryMode(Settings.RetryMode.CALLBACK).build());
+
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+    assertThat(response.getCallbackContext().getRetryAttempt()).isEqualTo(1);
+    assertThat(response.getCallbackDelaySeconds())
+        .isGreaterThanOrEqualTo(CallbackRetry.MIN_DELAY_SECONDS);
+    assertThat(response.getResourceModel()).isEqualTo(request.getDesiredResourceState());
+  }
+
+  @Test
+  void testSlicesResumeWhereTheyStopped() {
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(modelWithRules("new", 20))
+        .previousResourceState(modelWithRules("old", 20))
+        .build();
+    val calls = new ArrayList<AwsRequest>();
+    doAnswer(invocation -> {
+      calls.add(invocation.getArgument(0));
+      return null;
+    }).when(proxy).injectCredentialsAndInvokeV2(any(), any());
+    val settings = Settings.builder().updateStepsPerInvocation(5).build();
+
+    CallbackContext context = null;
+    ProgressEvent<ResourceModel, CallbackContext> response;
+    int invocations = 0;
+    do {
+      response = UpdateHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy,
+          request, context, logger, settings);
+      context = response.getCallbackContext();
+      invocations++;
+      if (response.getStatus() == OperationStatus.IN_PROGRESS) {
+        // The next slice runs straight away, in the same invocation while time remains
+        assertThat(response.getCallbackDelaySeconds())
+            .isEqualTo(UpdateHandler.CHECKPOINT_DELAY_SECONDS).isZero();
+      }
+    } while (response.getStatus() == OperationStatus.IN_PROGRESS);
+
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    // 2 tag calls, 20 deletes and 20 creates, 5 at a time
+    assertThat(invocations).isEqualTo(9);
+    assertThat(calls).hasSize(42);
+    assertThat(new HashSet<>(calls)).hasSize(42);
+  }
+
+  @Test
+  void testThrottledSliceKeepsCompletedSteps() {
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(modelWithRules("new", 3))
+        .previousResourceState(modelWithRules("old", 3))
+        .build();
+    doAnswer(invocation -> {
+      if (invocation.getArgument(0) instanceof CreateArchiveRuleRequest) {
+        throw ThrottlingException.builder().message("slow down").build();
+      }
+      return null;
+    }).when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+    val response = UpdateHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy,
+        request, new CallbackContext(), logger,
+        Settings.builder().retryMode(Settings.RetryMode.CALLBACK).build());
+
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+    val context = response.getCallbackContext();
+    assertThat(context.getRetryAttempt()).isEqualTo(1);
+    // The tag calls and the deletes, but not the throttled create
+    assertThat(context.getUpdatePlan()).hasSize(8);
+    assertThat(context.getCompletedSteps()).containsExactly(0, 1, 2, 3, 4);
+  }
+
+  @Test
+  void testFingerprintFollowsRuleChanges() {
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(modelWithRules("new", 2))
+        .previousResourceState(modelWithRules("old", 2))
+        .build();
+    val calls = new ArrayList<AwsRequest>();
+    doAnswer(invocation -> {
+      calls.add(invocation.getArgument(0));
+      return null;
+    }).when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+    val response = UpdateHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy,
+        request, new CallbackContext(), logger, Settings.builder().rulesFingerprint(true).build());
+
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    // Off before the first rule changes, so no container serves the old rules meanwhile
+    val first = calls.get(0);
+    assertThat(first).isInstanceOf(UntagResourceRequest.class);
+    assertThat(((UntagResourceRequest) first).tagKeys()).containsExactly(RuleFingerprint.TAG_KEY);
+    val last = calls.get(calls.size() - 1);
+    assertThat(last).isInstanceOf(TagResourceRequest.class);
+    assertThat(((TagResourceRequest) last).tags()).containsExactly(entry(RuleFingerprint.TAG_KEY,
+        RuleFingerprint.of(request.getDesiredResourceState().getArchiveRules())));
+  }
+
+  @Test
+  void testFingerprintStaysOffWhenRulesStopHalfWay() {
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(modelWithRules("new", 2))
+        .previousResourceState(modelWithRules("old", 2))
+        .build();
+    val calls = new ArrayList<AwsRequest>();
+    doAnswer(invocation -> {
+      AwsRequest call = invocation.getArgument(0);
+      if (call instanceof CreateArchiveRuleRequest) {
+        throw ThrottlingException.builder().message("slow down").build();
+      }
+      calls.add(call);
+      return null;
+    }).when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+    val response = UpdateHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy,
+        request, new CallbackContext(), logger, Settings.builder().rulesFingerprint(true)
+            .retryMode(Settings.RetryMode.CALLBACK).callbackRetries(3).build());
+
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+    assertThat(calls.get(0)).isInstanceOf(UntagResourceRequest.class);
+    for (val call : calls) {
+      if (call instanceof TagResourceRequest) {
+        assertThat(((TagResourceRequest) call).tags()).doesNotContainKey(RuleFingerprint.TAG_KEY);
+      }
+    }
+  }
+
+  @Test
+  void testFiftiethTagDropsFingerprint() {
+    // A tag-only update: the rules, and so the fingerprint, stay as they are
+    val previousModel = modelWithTags(49);
+    val desiredModel = modelWithTags(50);
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(desiredModel)
+        .previousResourceState(previousModel)
+        .build();
+    val calls = new ArrayList<AwsRequest>();
+    doAnswer(invocation -> {
+      calls.add(invocation.getArgument(0));
+      return null;
+    }).when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+    val response = UpdateHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy,
+        request, new CallbackContext(), logger, Settings.builder().rulesFingerprint(true).build());
+
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(calls).hasSize(2);
+    assertThat(((UntagResourceRequest) calls.get(0)).tagKeys())
+        .containsExactly(RuleFingerprint.TAG_KEY);
+    assertThat(((TagResourceRequest) calls.get(1)).tags()).containsOnlyKeys("k49");
+  }
+
+  @Test
+  void testFewerTagsKeepFingerprint() {
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(modelWithTags(49))
+        .previousResourceState(modelWithTags(48))
+        .build();
+    val calls = new ArrayList<AwsRequest>();
+    doAnswer(invocation -> {
+      calls.add(invocation.getArgument(0));
+      return null;
+    }).when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+    UpdateHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy, request,
+        new CallbackContext(), logger, Settings.builder().rulesFingerprint(true).build());
+
+    assertThat(calls).hasSize(1);
+    assertThat(calls.get(0)).isInstanceOf(TagResourceRequest.class);
+  }
+
+  @Test
+  void testReconcileSkipsAppliedChanges() {
+    // An earlier update already tagged the analyzer and replaced old0 with new0
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(modelWithRules("new", 1))
+        .previousResourceState(modelWithRules("old", 1))
+        .build();
+    val mutations = new ArrayList<AwsRequest>();
+    doAnswer(invocation -> {
+      AwsRequest call = invocation.getArgument(0);
+      if (call instanceof GetAnalyzerRequest) {
+        return GetAnalyzerResponse.builder().analyzer(AnalyzerSummary.builder()
+            .arn(ANALYZER_ARN).tags(ImmutableMap.of("new", "v")).build()).build();
+      }
+      if (call instanceof ListArchiveRulesRequest) {
+        return ListArchiveRulesResponse.builder().archiveRules(ArchiveRuleSummary.builder()
+            .ruleName("new0").filter(ImmutableMap.of("p0", Criterion.builder().build())).build())
+            .build();
+      }
+      mutations.add(call);
+      return null;
+    }).when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+    val response = UpdateHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy,
+        request, new CallbackContext(), logger, Settings.builder().reconcileUpdates(true).build());
+
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(mutations).isEmpty();
+  }
+
+  @Test
+  void testReconcileRepairsDrift() {
+    // Someone deleted new0 behind our back, so the previous model says there's nothing to do
+    val request = ResourceHandlerRequest.<ResourceModel>builder()
+        .desiredResourceState(modelWithRules("new", 1))
+        .previousResourceState(modelWithRules("new", 1))
+        .build();
+    val mutations = new ArrayList<AwsRequest>();
+    doAnswer(invocation -> {
+      AwsRequest call = invocation.getArgument(0);
+      if (call instanceof GetAnalyzerRequest) {
+        return GetAnalyzerResponse.builder().analyzer(AnalyzerSummary.builder()
+            .arn(ANALYZER_ARN).tags(ImmutableMap.of("new", "v")).build()).build();
+      }
+      if (call instanceof ListArchiveRulesRequest) {
+        return ListArchiveRulesResponse.builder().build();
+      }
+      mutations.add(call);
+      return null;
+    }).when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+    val response = UpdateHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy,
+        request, new CallbackContext(), logger, Settings.builder().reconcileUpdates(true).build());
+
+    assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+    assertThat(mutations).hasSize(1);
+    assertThat(mutations.get(0)).isInstanceOf(CreateArchiveRuleRequest.class);
+  }
+
+  private static ResourceModel modelWithRules(String prefix, int count) {
+    List<ArchiveRule> rules = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      rules.add(ArchiveRule.builder().ruleName(prefix + i)
+          .filter(ImmutableList.of(Filter.builder().property("p" + i).build())).build());
+    }
+    return ResourceModel.builder()
+        .analyzerName(ANALYZER_NAME)
+        .arn(ANALYZER_ARN)
+        .type(TestUtil.ACCOUNT)
+        .tags(Collections.singleton(Tag.builder().key(prefix).value("v").build()))
+        .archiveRules(rules)
+        .build();
+  }
+
+  private static ResourceModel modelWithTags(int count) {
+    val tags = new HashSet<Tag>();
+    for (int i = 0; i < count; i++) {
+      tags.add(Tag.builder().key("k" + i).value("v").build());
+    }
+    return ResourceModel.builder()
+        .analyzerName(ANALYZER_NAME)
+        .arn(ANALYZER_ARN)
+        .type(TestUtil.ACCOUNT)
+        .tags(tags)
+        .build();
+  }
+
+  private ProgressEvent<ResourceModel, CallbackContext> invokeConcurrently(
+      ResourceHandlerRequest<ResourceModel> request) {
+    return UpdateHandler.handleRequestWithClient(mock(AccessAnalyzerClient.class), proxy, request,
+        new CallbackContext(), logger, Settings.builder().updateConcurrency(4).build());
+  }
+
   private static ResourceModel anOldModel = ResourceModel.builder()
       .analyzerName(ANALYZER_NAME)
       .arn(ANALYZER_ARN)
@@ -0,0 +1,71 @@
+package com.amazonaws.accessanalyzer.analyzer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.amazonaws.accessanalyzer.analyzer.CallbackContext.UpdateAction;
+import com.amazonaws.accessanalyzer.analyzer.CallbackContext.UpdateStep;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.Collections;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+class UpdatePlanTest {
+
+  @Test
+  void testStepOrder() {
+    val tags = ModelDiff.diffTags(ImmutableSet.of(tag("a", "1"), tag("b", "1")),
+        ImmutableSet.of(tag("b", "2"), tag("c", "3")));
+    val rules = ModelDiff.diffRules(ImmutableList.of(rule("x", "1"), rule("y", "1")),
+        ImmutableList.of(rule("y", "2"), rule("z", "3")));
+
+    val plan = UpdatePlan.of(tags, rules);
+
+    assertThat(plan).containsExactly(
+        new UpdateStep(UpdateAction.UNTAG, ImmutableList.of("a")),
+        new UpdateStep(UpdateAction.TAG, ImmutableList.of("b", "c")),
+        new UpdateStep(UpdateAction.DELETE_RULE, ImmutableList.of("x")),
+        new UpdateStep(UpdateAction.CREATE_RULE, ImmutableList.of("z")),
+        new UpdateStep(UpdateAction.UPDATE_RULE, ImmutableList.of("y")));
+  }
+
+  @Test
+  void testNoChangesNoSteps() {
+    val tags = ImmutableSet.of(tag("a", "1"));
+    val rules = ImmutableList.of(rule("x", "1"));
+    assertThat(UpdatePlan.of(ModelDiff.diffTags(tags, tags), ModelDiff.diffRules(rules, rules)))
+        .isEmpty();
+  }
+
+  @Test
+  void testNextSliceFillsGapsFirst() {
+    val plan = Collections.nCopies(6, new UpdateStep(UpdateAction.DELETE_RULE,
+        ImmutableList.of("x")));
+    assertThat(UpdatePlan.nextSlice(plan, ImmutableSet.of(0, 2, 3), 2)).containsExactly(1, 4);
+    assertThat(UpdatePlan.nextSlice(plan, ImmutableSet.of(0, 2, 3), 0)).containsExactly(1, 4, 5);
+    assertThat(UpdatePlan.nextSlice(plan, ImmutableSet.of(0, 1, 2, 3, 4, 5), 2)).isEmpty();
+  }
+
+  @Test
+  void testStartsRulesOnlyOnce() {
+    val plan = ImmutableList.of(
+        new UpdateStep(UpdateAction.TAG, ImmutableList.of("a")),
+        new UpdateStep(UpdateAction.DELETE_RULE, ImmutableList.of("x")),
+        new UpdateStep(UpdateAction.CREATE_RULE, ImmutableList.of("y")));
+    assertThat(UpdatePlan.startsRules(plan, ImmutableList.of(0), ImmutableSet.of())).isFalse();
+    assertThat(UpdatePlan.startsRules(plan, ImmutableList.of(1), ImmutableSet.of(0))).isTrue();
+    assertThat(UpdatePlan.startsRules(plan, ImmutableList.of(2), ImmutableSet.of(0, 1)))
+        .isFalse();
+    assertThat(UpdatePlan.addsTags(plan, ImmutableList.of(0, 1))).isTrue();
+    assertThat(UpdatePlan.addsTags(plan, ImmutableList.of(1, 2))).isFalse();
+  }
+
+  private static Tag tag(String key, String value) {
+    return Tag.builder().key(key).value(value).build();
+  }
+
+  private static ArchiveRule rule(String name, String property) {
+    return ArchiveRule.builder().ruleName(name)
+        .filter(ImmutableList.of(Filter.builder().property(property).build())).build();
+  }
+}
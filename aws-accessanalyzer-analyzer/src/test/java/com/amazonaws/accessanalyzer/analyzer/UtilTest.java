@@ -1,8 +1,17 @@
 package com.amazonaws.accessanalyzer.analyzer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.LinkedHashMap;
+import lombok.val;
 import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.accessanalyzer.model.AnalyzerSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.ArchiveRuleSummary;
+import software.amazon.awssdk.services.accessanalyzer.model.Criterion;
 
 class UtilTest {
 
@@ -12,4 +21,91 @@ class UtilTest {
         "arn:aws:access-analyzer:us-west-2:111111111111:analyzer/CanaryAnalyzerTest"))
         .isEqualTo("CanaryAnalyzerTest");
   }
+
+  @Test
+  void testNullCollectionsAreEmpty() {
+    assertThat(Util.map(null, String::length)).isEmpty();
+    assertThat(Util.setMap(null, String::length)).isEmpty();
+    assertThat(Util.filter(null, String::isEmpty)).isEmpty();
+    assertThat(Util.concat(null, null)).isEmpty();
+    assertThat(Util.tagsToMap(null)).isEmpty();
+    assertThat(Util.mapToTags(null)).isEmpty();
+    assertThat(Util.resourceTags(ResourceModel.builder().build())).isEmpty();
+    assertThat(Util.resourceRules(ResourceModel.builder().build())).isEmpty();
+  }
+
+  @Test
+  void testCollectionHelpers() {
+    val xs = ImmutableList.of("a", "bb", "", "cc");
+    assertThat(Util.map(xs, String::length)).containsExactly(1, 2, 0, 2);
+    assertThat(Util.setMap(xs, String::length)).containsExactlyInAnyOrder(0, 1, 2);
+    assertThat(Util.filter(xs, String::isEmpty)).containsExactly("");
+    assertThat(Util.concat(xs, ImmutableList.of("d"))).containsExactly("a", "bb", "", "cc", "d");
+  }
+
+  @Test
+  void testTagRoundTrip() {
+    val tags = ImmutableSet.of(new Tag("a", "1"), new Tag("b", "2"));
+    val map = Util.tagsToMap(tags);
+    assertThat(map).isEqualTo(ImmutableMap.of("a", "1", "b", "2"));
+    assertThat(Util.mapToTags(map)).isEqualTo(tags);
+  }
+
+  @Test
+  void testDuplicateTagKeys() {
+    val tags = ImmutableList.of(new Tag("a", "1"), new Tag("a", "2"));
+    assertThatThrownBy(() -> Util.tagsToMap(tags)).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void testInlineArchiveRule() {
+    val rule = ArchiveRule.builder().ruleName("r")
+        .filter(ImmutableList.of(
+            Filter.builder().property("p").eq(ImmutableList.of("x")).build(),
+            Filter.builder().property("q").exists(true).build()))
+        .build();
+    val inline = Util.inlineArchiveRuleFromArchiveRule(rule);
+    assertThat(inline.ruleName()).isEqualTo("r");
+    assertThat(inline.filter()).containsOnlyKeys("p", "q");
+    assertThat(inline.filter().get("p").eq()).containsExactly("x");
+    assertThat(inline.filter().get("q").exists()).isTrue();
+    assertThat(Util.inlineArchiveRules(ImmutableList.of(rule))).containsExactly(inline);
+  }
+
+  @Test
+  void testDuplicateFilterProperties() {
+    val rule = ArchiveRule.builder().ruleName("r")
+        .filter(ImmutableList.of(
+            Filter.builder().property("p").exists(true).build(),
+            Filter.builder().property("p").exists(false).build()))
+        .build();
+    assertThatThrownBy(() -> Util.inlineArchiveRuleFromArchiveRule(rule))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void testArchiveRuleFromSummaryIsCanonical() {
+    val criteria = new LinkedHashMap<String, Criterion>();
+    criteria.put("z", Criterion.builder().neq("n2", "n1").build());
+    criteria.put("a", Criterion.builder().contains("c").build());
+    val summary = ArchiveRuleSummary.builder().ruleName("r").filter(criteria).build();
+    val rule = Util.archiveRuleFromSummary(summary);
+    assertThat(rule.getRuleName()).isEqualTo("r");
+    assertThat(Util.map(rule.getFilter(), Filter::getProperty)).containsExactly("a", "z");
+    assertThat(rule.getFilter().get(0).getContains()).containsExactly("c");
+    assertThat(rule.getFilter().get(0).getEq()).isNull();
+    assertThat(rule.getFilter().get(1).getNeq()).containsExactly("n1", "n2");
+    assertThat(Util.archiveRulesFromSummaries(ImmutableList.of(summary))).containsExactly(rule);
+  }
+
+  @Test
+  void testAnalyzerSummaryToModel() {
+    val summary = AnalyzerSummary.builder().name("n").type("ACCOUNT").arn("arn")
+        .tags(ImmutableMap.of("k", "v")).build();
+    val model = Util.analyzerSummaryToModel(summary);
+    assertThat(model.getAnalyzerName()).isEqualTo("n");
+    assertThat(model.getType()).isEqualTo("ACCOUNT");
+    assertThat(model.getArn()).isEqualTo("arn");
+    assertThat(model.getTags()).containsExactly(new Tag("k", "v"));
+  }
 }